@@ -7,11 +7,34 @@
  */
 package de.lgblaumeiser.ptm.analysis;
 
-import java.util.Collection;
+import java.util.function.IntConsumer;
 
 /**
  * Interface to be implemented for an anaylsis of the data
  */
 public interface Analysis {
-    Collection<Collection<String>> analyze(CalculationPeriod period, String user);
+    AnalysisResult analyze(CalculationPeriod period, String user);
+
+    /**
+     * Run the analysis and report its progress, by default the progress is
+     * reported when the analysis is finished
+     *
+     * @param period   The period for which the calculation should be done
+     * @param user     The user whose data is used for the analysis
+     * @param progress Informed about the progress in percent
+     * @return The result of the analysis
+     */
+    default AnalysisResult analyze(final CalculationPeriod period, final String user, final IntConsumer progress) {
+        AnalysisResult result = analyze(period, user);
+        progress.accept(100);
+        return result;
+    }
+
+    /**
+     * @return True, if the result depends on the data of the activities, not
+     *         only on the bookings
+     */
+    default boolean usesActivities() {
+        return true;
+    }
 }
@@ -0,0 +1,289 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import de.lgblaumeiser.ptm.analysis.AnalysisJobStatus.State;
+
+/**
+ * Runs analyses as jobs in the background, so that long running analyses do
+ * not block the caller. A job is submitted, its state is polled, and the
+ * result is fetched when the job is done.
+ *
+ * The jobs run on a fixed number of threads. Only a limited number of jobs of
+ * a user run at the same time, further jobs of the user wait until a running
+ * job of the user is finished. The number of waiting jobs per user and the
+ * number of unfinished jobs of all users are limited, so that the queue of the
+ * threads is bounded and a single user cannot take all places. A running job
+ * reports its progress. Finished jobs are kept for the retention time and
+ * removed afterwards. After the service is shut down, no jobs are accepted
+ * and jobs that have not started yet fail.
+ */
+public class AnalysisJobService {
+    private static final String STOPPED_ERROR = "Analysis service stopped";
+
+    private final DataAnalysisService analysisService;
+    private final ExecutorService executor;
+    private final int maxRunningJobsPerUser;
+    private final int maxQueuedJobsPerUser;
+    private final int maxUnfinishedJobs;
+    private final long retentionMillis;
+    private final LongSupplier clock;
+
+    private final Map<Long, Job> jobs = new LinkedHashMap<>();
+    private final Map<String, Queue<Job>> waitingJobs = new HashMap<>();
+    private final Map<String, Integer> runningJobs = new HashMap<>();
+    private long nextId = 1L;
+    private int unfinishedJobs;
+    private boolean stopped;
+
+    private static class Job {
+        private final Long id;
+        private final String user;
+        private final AnalysisRequest request;
+        private State state = State.QUEUED;
+        private int progress;
+        private AnalysisResult result;
+        private String error;
+        private long finishedAt;
+
+        Job(final Long id, final String user, final AnalysisRequest request) {
+            this.id = id;
+            this.user = user;
+            this.request = request;
+        }
+
+        synchronized void start() {
+            state = State.RUNNING;
+        }
+
+        synchronized void progressed(final int percent) {
+            progress = Math.max(progress, Math.min(percent, 100));
+        }
+
+        synchronized void finish(final AnalysisResult jobResult, final String jobError, final long now) {
+            state = jobResult != null ? State.DONE : State.FAILED;
+            if (jobResult != null) {
+                progress = 100;
+            }
+            result = jobResult;
+            error = jobError;
+            finishedAt = now;
+            notifyAll();
+        }
+
+        synchronized boolean isExpired(final long expiredBefore) {
+            return state.isFinished() && finishedAt < expiredBefore;
+        }
+
+        synchronized AnalysisJobStatus awaitFinished(final long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            long remaining = timeoutMillis;
+            while (!state.isFinished() && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            return status();
+        }
+
+        synchronized AnalysisResult result() {
+            assertState(state == State.DONE);
+            return result;
+        }
+
+        synchronized AnalysisJobStatus status() {
+            return AnalysisJobStatus.of(id, request.getAnalyzerId(), state, progress, error);
+        }
+    }
+
+    /**
+     * Submit an analysis to run in the background
+     *
+     * @param user    The user whose data is used for the analysis
+     * @param request The analysis to run with its period
+     * @return The state of the new job, it contains the id of the job
+     */
+    public synchronized AnalysisJobStatus submit(final String user, final AnalysisRequest request) {
+        assertState(stringHasContent(user));
+        assertState(request != null);
+        assertState(analysisService.hasAnalysis(request.getAnalyzerId()));
+        assertState(!stopped);
+        removeExpiredJobs();
+        assertState(unfinishedJobs < maxUnfinishedJobs);
+        assertState(Optional.ofNullable(waitingJobs.get(user)).map(Queue::size).orElse(0) < maxQueuedJobsPerUser);
+
+        Job job = new Job(nextId++, user, request);
+        jobs.put(job.id, job);
+        unfinishedJobs++;
+        waitingJobs.computeIfAbsent(user, u -> new ArrayDeque<>()).add(job);
+        startWaitingJobs(user);
+        return job.status();
+    }
+
+    /**
+     * @param user  The user who submitted the job
+     * @param jobId The id of the job
+     * @return The state of the job, empty if the user has no job with this id
+     */
+    public Optional<AnalysisJobStatus> getStatus(final String user, final Long jobId) {
+        return findJob(user, jobId).map(Job::status);
+    }
+
+    /**
+     * Wait until the job is finished or the timeout elapsed
+     *
+     * @param user          The user who submitted the job
+     * @param jobId         The id of the job
+     * @param timeoutMillis The maximal time to wait in milliseconds
+     * @return The state of the job after waiting, empty if the user has no job
+     *         with this id
+     */
+    public Optional<AnalysisJobStatus> awaitStatus(final String user, final Long jobId, final long timeoutMillis) {
+        Optional<Job> job = findJob(user, jobId);
+        if (!job.isPresent()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(job.get().awaitFinished(timeoutMillis));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.of(job.get().status());
+        }
+    }
+
+    /**
+     * @param user  The user who submitted the job
+     * @param jobId The id of the job, the job must be done
+     * @return The result of the job, empty if the user has no job with this id
+     */
+    public Optional<AnalysisResult> getResult(final String user, final Long jobId) {
+        return findJob(user, jobId).map(Job::result);
+    }
+
+    /**
+     * Stop the threads running the jobs, running jobs are interrupted, jobs that
+     * have not started yet fail
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        for (Runnable drained : executor.shutdownNow()) {
+            Job job = ((JobRun) drained).job;
+            runningJobs.merge(job.user, -1, Integer::sum);
+            failStopped(job);
+        }
+        runningJobs.values().removeIf(count -> count == 0);
+        waitingJobs.values().forEach(waiting -> waiting.forEach(this::failStopped));
+        waitingJobs.clear();
+    }
+
+    private void failStopped(final Job job) {
+        job.finish(null, STOPPED_ERROR, clock.getAsLong());
+        unfinishedJobs--;
+    }
+
+    private synchronized Optional<Job> findJob(final String user, final Long jobId) {
+        removeExpiredJobs();
+        return Optional.ofNullable(jobs.get(jobId)).filter(job -> job.user.equals(user));
+    }
+
+    private void startWaitingJobs(final String user) {
+        if (stopped) {
+            return;
+        }
+        Queue<Job> waiting = waitingJobs.get(user);
+        while (waiting != null && !waiting.isEmpty() && runningJobs.getOrDefault(user, 0) < maxRunningJobsPerUser) {
+            Job job = waiting.poll();
+            runningJobs.merge(user, 1, Integer::sum);
+            executor.execute(new JobRun(job));
+        }
+        if (waiting != null && waiting.isEmpty()) {
+            waitingJobs.remove(user);
+        }
+    }
+
+    /**
+     * Runs a job on a thread of the executor, jobs not run when the executor is
+     * shut down are taken from the returned runnables
+     */
+    private class JobRun implements Runnable {
+        private final Job job;
+
+        JobRun(final Job job) {
+            this.job = job;
+        }
+
+        @Override
+        public void run() {
+            job.start();
+            try {
+                job.finish(analysisService.analyze(job.request.getAnalyzerId(), job.user, job.request.getPeriod(),
+                        job::progressed), null, clock.getAsLong());
+            } catch (Throwable e) {
+                job.finish(null, e.toString(), clock.getAsLong());
+                if (e instanceof Error) {
+                    throw (Error) e;
+                }
+            } finally {
+                jobFinished(job.user);
+            }
+        }
+    }
+
+    private synchronized void jobFinished(final String user) {
+        unfinishedJobs--;
+        if (runningJobs.merge(user, -1, Integer::sum) == 0) {
+            runningJobs.remove(user);
+        }
+        startWaitingJobs(user);
+    }
+
+    private void removeExpiredJobs() {
+        long expiredBefore = clock.getAsLong() - retentionMillis;
+        for (Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext();) {
+            if (iterator.next().isExpired(expiredBefore)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    AnalysisJobService(final DataAnalysisService analysisService, final int threads,
+            final int maxRunningJobsPerUser, final int maxQueuedJobsPerUser, final int maxUnfinishedJobs,
+            final long retentionMillis, final LongSupplier clock) {
+        assertState(threads > 0 && maxRunningJobsPerUser > 0 && maxQueuedJobsPerUser > 0 && maxUnfinishedJobs > 0
+                && retentionMillis >= 0);
+        this.analysisService = analysisService;
+        this.maxRunningJobsPerUser = maxRunningJobsPerUser;
+        this.maxQueuedJobsPerUser = maxQueuedJobsPerUser;
+        this.maxUnfinishedJobs = maxUnfinishedJobs;
+        this.retentionMillis = retentionMillis;
+        this.clock = clock;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(maxUnfinishedJobs), runnable -> {
+                    Thread thread = new Thread(runnable, "ptm-analysis-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
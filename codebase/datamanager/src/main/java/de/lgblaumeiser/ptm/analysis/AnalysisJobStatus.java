@@ -0,0 +1,40 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+/**
+ * The transfer representation of the state of an analysis job. A job is queued
+ * until it is started, the result can be fetched when the job is done. The
+ * progress is given in percent, the error is only given for failed jobs.
+ */
+public class AnalysisJobStatus {
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED;
+
+        public boolean isFinished() {
+            return this == DONE || this == FAILED;
+        }
+    }
+
+    public Long id;
+    public String analyzerId;
+    public State state;
+    public int progress;
+    public String error;
+
+    static AnalysisJobStatus of(final Long id, final String analyzerId, final State state, final int progress,
+            final String error) {
+        AnalysisJobStatus status = new AnalysisJobStatus();
+        status.id = id;
+        status.analyzerId = analyzerId;
+        status.state = state;
+        status.progress = progress;
+        status.error = error;
+        return status;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static java.util.Objects.hash;
+
+import java.time.LocalDate;
+
+/**
+ * Identifies an analysis result by the analyzer, the analyzed user and the
+ * period
+ */
+final class AnalysisKey {
+    private final String analyzerId;
+    private final String user;
+    private final CalculationPeriod period;
+
+    AnalysisKey(final String analyzerId, final String user, final CalculationPeriod period) {
+        this.analyzerId = analyzerId;
+        this.user = user;
+        this.period = period;
+    }
+
+    String analyzerId() {
+        return analyzerId;
+    }
+
+    boolean isForUser(final String otherUser) {
+        return user.equals(otherUser);
+    }
+
+    boolean isForUserAndDay(final String otherUser, final LocalDate day) {
+        return user.equals(otherUser) && period.isInPeriod(day);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(analyzerId, user, period);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof AnalysisKey) {
+            AnalysisKey key = (AnalysisKey) obj;
+            return analyzerId.equals(key.analyzerId) && user.equals(key.user) && period.equals(key.period);
+        }
+        return false;
+    }
+}
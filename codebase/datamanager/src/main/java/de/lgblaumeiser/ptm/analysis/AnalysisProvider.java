@@ -7,28 +7,71 @@
  */
 package de.lgblaumeiser.ptm.analysis;
 
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
+
+import java.util.concurrent.TimeUnit;
+
 import de.lgblaumeiser.ptm.analysis.analyzer.ActivityComputer;
 import de.lgblaumeiser.ptm.analysis.analyzer.HourComputer;
+import de.lgblaumeiser.ptm.analysis.analyzer.OverlapValidator;
 import de.lgblaumeiser.ptm.analysis.analyzer.ProjectComputer;
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
 import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.store.ObservableStore;
 
 /**
- * Provider for the data analysis and the standard implementations
+ * Provider for the data analysis and the standard implementations. The analysis
+ * results are cached, if the given stores can be observed for changes.
+ *
+ * The analysis jobs are configured by system properties:
+ * ptm.analysis.jobs.threads sets the number of threads running jobs,
+ * ptm.analysis.jobs.peruser the number of jobs of a user running at the same
+ * time, ptm.analysis.jobs.queued the number of jobs of a user waiting to run,
+ * ptm.analysis.jobs.max the number of unfinished jobs and
+ * ptm.analysis.jobs.retention the minutes a finished job is kept.
  */
 public class AnalysisProvider {
+    private static final String JOB_THREADS_PROPERTY = "ptm.analysis.jobs.threads";
+    private static final String JOBS_PER_USER_PROPERTY = "ptm.analysis.jobs.peruser";
+    private static final String QUEUED_JOBS_PER_USER_PROPERTY = "ptm.analysis.jobs.queued";
+    private static final String MAX_JOBS_PROPERTY = "ptm.analysis.jobs.max";
+    private static final String JOB_RETENTION_PROPERTY = "ptm.analysis.jobs.retention";
+    private static final int DEFAULT_JOBS_PER_USER = 2;
+    private static final int DEFAULT_QUEUED_JOBS_PER_USER = 10;
+    private static final int DEFAULT_MAX_JOBS = 100;
+    private static final int DEFAULT_JOB_RETENTION_MINUTES = 10;
+
     private static final String ANALYSIS_HOURS_ID = "HOURS";
     private static final String ANALYSIS_ACTIVITIES_ID = "ACTIVITIES";
     private static final String ANALYSIS_PROJECTS_ID = "PROJECTS";
 
+    @SuppressWarnings("unchecked")
     public DataAnalysisService getAnalysisService(final ObjectStore<Activity> aStore,
             final ObjectStore<Booking> bStore) {
         HourComputer hourComputer = new HourComputer(bStore);
         ActivityComputer activityComputer = new ActivityComputer(bStore, aStore);
         ProjectComputer projectComputer = new ProjectComputer(bStore, aStore);
-        return new DataAnalysisService().addAnalysis(ANALYSIS_HOURS_ID, hourComputer)
+        DataAnalysisService service = new DataAnalysisService().addAnalysis(ANALYSIS_HOURS_ID, hourComputer)
                 .addAnalysis(ANALYSIS_ACTIVITIES_ID, activityComputer)
-                .addAnalysis(ANALYSIS_PROJECTS_ID, projectComputer);
+                .addAnalysis(ANALYSIS_PROJECTS_ID, projectComputer)
+                .setOverlapValidator(new OverlapValidator(bStore))
+                .setBookingStore(asBookingStore(bStore));
+        if (aStore instanceof ObservableStore && bStore instanceof ObservableStore) {
+            service.enableResultCache((ObservableStore<Activity>) aStore, (ObservableStore<Booking>) bStore,
+                    AnalysisResultCache.DEFAULT_SIZE);
+        }
+        return service;
+    }
+
+    public AnalysisJobService getAnalysisJobService(final DataAnalysisService analysisService) {
+        int threads = Integer.getInteger(JOB_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+        int jobsPerUser = Integer.getInteger(JOBS_PER_USER_PROPERTY, DEFAULT_JOBS_PER_USER);
+        int queuedJobsPerUser = Integer.getInteger(QUEUED_JOBS_PER_USER_PROPERTY, DEFAULT_QUEUED_JOBS_PER_USER);
+        int maxJobs = Integer.getInteger(MAX_JOBS_PROPERTY, DEFAULT_MAX_JOBS);
+        long retention = TimeUnit.MINUTES
+                .toMillis(Integer.getInteger(JOB_RETENTION_PROPERTY, DEFAULT_JOB_RETENTION_MINUTES));
+        return new AnalysisJobService(analysisService, threads, jobsPerUser, queuedJobsPerUser, maxJobs, retention,
+                System::currentTimeMillis);
     }
 }
@@ -0,0 +1,34 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
+
+/**
+ * A single analysis to run as part of a batch
+ */
+public class AnalysisRequest {
+    private final String analyzerId;
+    private final CalculationPeriod period;
+
+    public AnalysisRequest(final String analyzerId, final CalculationPeriod period) {
+        assertState(stringHasContent(analyzerId));
+        assertState(period != null);
+        this.analyzerId = analyzerId;
+        this.period = period;
+    }
+
+    public String getAnalyzerId() {
+        return analyzerId;
+    }
+
+    public CalculationPeriod getPeriod() {
+        return period;
+    }
+}
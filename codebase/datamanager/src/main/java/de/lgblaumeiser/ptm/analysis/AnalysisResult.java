@@ -0,0 +1,125 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The typed result of an analysis, a header of typed columns, rows of cells
+ * and optional totals. The cells keep their values, formatting is left to the
+ * code that renders the result, see {@link AnalysisResultFormatter} and
+ * {@link CompactAnalysisResult}. Results are immutable.
+ */
+public final class AnalysisResult {
+    private final List<Column> columns;
+    private final List<List<Object>> rows;
+    private final List<Object> totals;
+
+    /**
+     * A column of the result
+     */
+    public static final class Column {
+        private final String name;
+        private final CellType type;
+
+        public Column(final String name, final CellType type) {
+            assertState(stringHasContent(name));
+            assertState(type != null);
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public CellType getType() {
+            return type;
+        }
+    }
+
+    public static class AnalysisResultBuilder {
+        private final List<Column> columns = new ArrayList<>();
+        private final List<List<Object>> rows = new ArrayList<>();
+        private List<Object> totals = emptyList();
+
+        private AnalysisResultBuilder() {
+            // Use newAnalysisResult
+        }
+
+        public AnalysisResultBuilder addColumn(final String name, final CellType type) {
+            assertState(rows.isEmpty() && totals.isEmpty());
+            columns.add(new Column(name, type));
+            return this;
+        }
+
+        /**
+         * Add a row, the cells must match the types of the columns, empty cells
+         * are null
+         */
+        public AnalysisResultBuilder addRow(final Object... cells) {
+            rows.add(checkedCells(cells));
+            return this;
+        }
+
+        public AnalysisResultBuilder setTotals(final Object... cells) {
+            totals = checkedCells(cells);
+            return this;
+        }
+
+        private List<Object> checkedCells(final Object[] cells) {
+            assertState(cells.length == columns.size());
+            for (int i = 0; i < cells.length; i++) {
+                assertState(columns.get(i).getType().accepts(cells[i]));
+            }
+            return unmodifiableList(asList(cells.clone()));
+        }
+
+        public AnalysisResult build() {
+            assertState(!columns.isEmpty());
+            return new AnalysisResult(this);
+        }
+    }
+
+    public static AnalysisResultBuilder newAnalysisResult() {
+        return new AnalysisResultBuilder();
+    }
+
+    private AnalysisResult(final AnalysisResultBuilder builder) {
+        columns = unmodifiableList(new ArrayList<>(builder.columns));
+        rows = unmodifiableList(new ArrayList<>(builder.rows));
+        totals = builder.totals;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    public List<List<Object>> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return The totals of the result with a cell per column, empty if the
+     *         result has no totals
+     */
+    public List<Object> getTotals() {
+        return totals;
+    }
+
+    public boolean hasTotals() {
+        return !totals.isEmpty();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache for analysis results with least recently used eviction. The
+ * entries are invalidated by the owner, whenever data of the analyzed user and
+ * period changes.
+ *
+ * A result computed while an invalidation for its user happens is returned but
+ * not cached, since it may be based on outdated data. The invalidations are
+ * counted per user, so writes of other users do not keep results from being
+ * cached.
+ */
+class AnalysisResultCache {
+    static final int DEFAULT_SIZE = 256;
+
+    private final Map<AnalysisKey, AnalysisResult> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Map<String, Long> userGenerations = new HashMap<>();
+    private long clearGeneration;
+
+    AnalysisResultCache(final int maxSize) {
+        assertState(maxSize > 0);
+        entries = new LinkedHashMap<AnalysisKey, AnalysisResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<AnalysisKey, AnalysisResult> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Return the cached result, or compute and cache it
+     *
+     * @param analyzerId  The id of the analyzer
+     * @param user        The user whose data is analyzed
+     * @param period      The analyzed period
+     * @param computation Computes the result, if it is not cached
+     * @return The result
+     */
+    AnalysisResult get(final String analyzerId, final String user, final CalculationPeriod period,
+            final Supplier<AnalysisResult> computation) {
+        AnalysisKey key = new AnalysisKey(analyzerId, user, period);
+        long startGeneration;
+        long startClearGeneration;
+        synchronized (this) {
+            AnalysisResult cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            startGeneration = generationOf(user);
+            startClearGeneration = clearGeneration;
+        }
+        misses.incrementAndGet();
+        AnalysisResult result = computation.get();
+        synchronized (this) {
+            if (startGeneration == generationOf(user) && startClearGeneration == clearGeneration) {
+                entries.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove all results of a user whose period contains the given day
+     */
+    synchronized void invalidate(final String user, final LocalDate day) {
+        userGenerations.merge(user, 1L, Long::sum);
+        entries.keySet().removeIf(key -> key.isForUserAndDay(user, day));
+    }
+
+    /**
+     * Remove all results of a user computed by analyzers matching the filter
+     */
+    synchronized void invalidate(final String user, final Predicate<String> analyzerIdFilter) {
+        userGenerations.merge(user, 1L, Long::sum);
+        entries.keySet().removeIf(key -> key.isForUser(user) && analyzerIdFilter.test(key.analyzerId()));
+    }
+
+    synchronized void clear() {
+        clearGeneration++;
+        userGenerations.clear();
+        entries.clear();
+    }
+
+    private long generationOf(final String user) {
+        return userGenerations.getOrDefault(user, 0L);
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+}
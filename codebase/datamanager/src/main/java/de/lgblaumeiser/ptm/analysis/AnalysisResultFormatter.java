@@ -0,0 +1,92 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.util.Utils.emptyString;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Formats analysis results as text, used by the code that renders results as
+ * tables. Durations are shown as hours and minutes with a sign column,
+ * percentages with one decimal.
+ */
+public class AnalysisResultFormatter {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    /**
+     * Format the result as table of strings, the first line contains the names of
+     * the columns, the totals are the last line. This is the representation of
+     * analysis results before they were typed.
+     *
+     * @param result The result to format
+     * @return The formatted lines
+     */
+    public static Collection<Collection<String>> toTable(final AnalysisResult result) {
+        Collection<Collection<String>> table = new ArrayList<>();
+        List<String> headline = new ArrayList<>();
+        result.getColumns().forEach(column -> headline.add(column.getName()));
+        table.add(headline);
+        result.getRows().forEach(row -> table.add(formatLine(result, row)));
+        if (result.hasTotals()) {
+            table.add(formatLine(result, result.getTotals()));
+        }
+        return table;
+    }
+
+    private static Collection<String> formatLine(final AnalysisResult result, final List<Object> cells) {
+        List<String> line = new ArrayList<>(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            line.add(formatCell(result.getColumns().get(i).getType(), cells.get(i)));
+        }
+        return line;
+    }
+
+    /**
+     * @param type  The type of the cell
+     * @param value The value of the cell, null for an empty cell
+     * @return The formatted cell
+     */
+    public static String formatCell(final CellType type, final Object value) {
+        if (value == null) {
+            return emptyString();
+        }
+        switch (type) {
+        case DATE:
+            return ((LocalDate) value).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        case TIME:
+            return ((LocalTime) value).format(TIME_FORMAT);
+        case MINUTES:
+            return formatMinutes((Integer) value);
+        case PERCENTAGE:
+            return String.format("%2.1f", (Double) value) + "%";
+        default:
+            return (String) value;
+        }
+    }
+
+    private static String formatMinutes(final int durationMinutes) {
+        int minutes = Math.abs(durationMinutes);
+        StringBuilder formatted = new StringBuilder(8).append(durationMinutes < 0 ? '-' : ' ');
+        appendTwoDigits(formatted, minutes / 60).append(':');
+        return appendTwoDigits(formatted, minutes % 60).toString();
+    }
+
+    private static StringBuilder appendTwoDigits(final StringBuilder builder, final int value) {
+        return (value < 10 ? builder.append('0') : builder).append(value);
+    }
+
+    private AnalysisResultFormatter() {
+        // Only static methods
+    }
+}
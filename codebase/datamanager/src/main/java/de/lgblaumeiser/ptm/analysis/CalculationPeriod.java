@@ -8,34 +8,102 @@
 package de.lgblaumeiser.ptm.analysis;
 
 import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static java.lang.String.format;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.util.Objects.hash;
 
 import java.time.LocalDate;
-import java.util.ArrayList;
+import java.util.AbstractCollection;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
+/**
+ * A period of days given as half open range, from the first day up to but not
+ * including the first day after the period. Membership is checked by comparing
+ * with the bounds, the days of the period are generated while iterating.
+ */
 public class CalculationPeriod {
-    List<LocalDate> daysInPeriod = new ArrayList<>();
+    private final LocalDate firstDay;
+    private final LocalDate firstDayAfter;
 
     public CalculationPeriod(final LocalDate firstDay, final LocalDate firstDayAfter) {
         assertState(firstDay.isBefore(firstDayAfter));
-        LocalDate currentDate = firstDay;
-        while (currentDate.isBefore(firstDayAfter)) {
-            daysInPeriod.add(currentDate);
-            currentDate = currentDate.plusDays(1L);
-        }
+        this.firstDay = firstDay;
+        this.firstDayAfter = firstDayAfter;
+    }
+
+    public LocalDate firstDay() {
+        return firstDay;
+    }
+
+    public LocalDate firstDayAfter() {
+        return firstDayAfter;
     }
 
     public boolean isInPeriod(final LocalDate current) {
-        return daysInPeriod.contains(current);
+        return !current.isBefore(firstDay) && current.isBefore(firstDayAfter);
     }
 
+    /**
+     * @return An unmodifiable view on the days of the period in ascending order
+     */
     public Collection<LocalDate> days() {
-        return Collections.unmodifiableList(daysInPeriod);
+        return new AbstractCollection<LocalDate>() {
+            @Override
+            public Iterator<LocalDate> iterator() {
+                return new Iterator<LocalDate>() {
+                    private LocalDate next = firstDay;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next.isBefore(firstDayAfter);
+                    }
+
+                    @Override
+                    public LocalDate next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        LocalDate current = next;
+                        next = next.plusDays(1L);
+                        return current;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return Math.toIntExact(DAYS.between(firstDay, firstDayAfter));
+            }
+
+            @Override
+            public boolean contains(final Object object) {
+                return object instanceof LocalDate && isInPeriod((LocalDate) object);
+            }
+        };
     }
 
     public boolean isDayPeriod() {
-        return daysInPeriod.size() == 1;
+        return firstDay.plusDays(1L).equals(firstDayAfter);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(firstDay, firstDayAfter);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj instanceof CalculationPeriod) {
+            CalculationPeriod cp = (CalculationPeriod) obj;
+            return firstDay.equals(cp.firstDay) && firstDayAfter.equals(cp.firstDayAfter);
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return format("CalculationPeriod: First Day: %s, First Day After: %s", firstDay, firstDayAfter);
     }
-}
\ No newline at end of file
+}
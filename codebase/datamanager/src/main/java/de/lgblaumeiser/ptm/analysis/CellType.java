@@ -0,0 +1,38 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * The type of the cells of a column of an analysis result
+ */
+public enum CellType {
+    TEXT(String.class),
+    DATE(LocalDate.class),
+    TIME(LocalTime.class),
+    /** A duration given as Integer number of minutes */
+    MINUTES(Integer.class),
+    /** A percentage given as Double between 0 and 100 */
+    PERCENTAGE(Double.class);
+
+    private final Class<?> valueClass;
+
+    CellType(final Class<?> valueClass) {
+        this.valueClass = valueClass;
+    }
+
+    /**
+     * @return True, if the value can be used as cell of this type, empty cells
+     *         are represented by null
+     */
+    public boolean accepts(final Object value) {
+        return value == null || valueClass.isInstance(value);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.lgblaumeiser.ptm.analysis.AnalysisResult.AnalysisResultBuilder;
+
+/**
+ * The transfer representation of an analysis result. Minutes and percentages
+ * are transferred as numbers, dates in iso format and times as hours and
+ * minutes. The names and the types of the columns are given once, the rows and
+ * totals only contain the cell values, empty cells are null. The totals are
+ * null if the result has none.
+ */
+public class CompactAnalysisResult {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+    public List<String> columns = new ArrayList<>();
+    public List<CellType> types = new ArrayList<>();
+    public List<List<Object>> rows = new ArrayList<>();
+    public List<Object> totals;
+
+    public static CompactAnalysisResult of(final AnalysisResult result) {
+        CompactAnalysisResult compact = new CompactAnalysisResult();
+        result.getColumns().forEach(column -> {
+            compact.columns.add(column.getName());
+            compact.types.add(column.getType());
+        });
+        result.getRows().forEach(row -> compact.rows.add(compact.toTransfer(row)));
+        if (result.hasTotals()) {
+            compact.totals = compact.toTransfer(result.getTotals());
+        }
+        return compact;
+    }
+
+    /**
+     * @return The typed result represented by the transferred data
+     */
+    public AnalysisResult toAnalysisResult() {
+        assertState(columns.size() == types.size());
+        AnalysisResultBuilder builder = newAnalysisResult();
+        for (int i = 0; i < columns.size(); i++) {
+            builder.addColumn(columns.get(i), types.get(i));
+        }
+        rows.forEach(row -> builder.addRow(fromTransfer(row)));
+        if (totals != null) {
+            builder.setTotals(fromTransfer(totals));
+        }
+        return builder.build();
+    }
+
+    private List<Object> toTransfer(final List<Object> cells) {
+        List<Object> transfer = new ArrayList<>(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            transfer.add(toTransferValue(types.get(i), cells.get(i)));
+        }
+        return transfer;
+    }
+
+    private Object[] fromTransfer(final List<Object> cells) {
+        assertState(cells.size() == types.size());
+        Object[] values = new Object[cells.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = fromTransferValue(types.get(i), cells.get(i));
+        }
+        return values;
+    }
+
+    private static Object toTransferValue(final CellType type, final Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch (type) {
+        case DATE:
+            return ((LocalDate) value).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        case TIME:
+            return ((LocalTime) value).format(TIME_FORMAT);
+        case PERCENTAGE:
+            double percentage = (Double) value;
+            return Double.isFinite(percentage) ? Math.round(percentage * 10.0) / 10.0 : null;
+        default:
+            return value;
+        }
+    }
+
+    private static Object fromTransferValue(final CellType type, final Object value) {
+        if (value == null) {
+            return null;
+        }
+        switch (type) {
+        case DATE:
+            return LocalDate.parse((String) value, DateTimeFormatter.ISO_LOCAL_DATE);
+        case TIME:
+            return LocalTime.parse((String) value, TIME_FORMAT);
+        case MINUTES:
+            return ((Number) value).intValue();
+        case PERCENTAGE:
+            return ((Number) value).doubleValue();
+        default:
+            return value.toString();
+        }
+    }
+}
@@ -9,16 +9,49 @@ package de.lgblaumeiser.ptm.analysis;
 
 import static de.lgblaumeiser.ptm.util.Utils.assertState;
 import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
+import static java.util.stream.Collectors.toList;
 
-import java.util.Collection;
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+import de.lgblaumeiser.ptm.analysis.analyzer.OverlapValidator;
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.store.BookingStore;
+import de.lgblaumeiser.ptm.store.DayRollup;
+import de.lgblaumeiser.ptm.store.ObservableStore;
+import de.lgblaumeiser.ptm.store.StoreListener;
 
 /**
- * Service class that allows to run analysis on the data
+ * Service class that allows to run analysis on the data. If the service
+ * observes the stores, the results are cached until a booking of the user in
+ * the analyzed period or an activity of the user changes. Identical analyses
+ * requested at the same time share a single computation.
  */
 public class DataAnalysisService {
     private final Map<String, Analysis> analysisStore = new HashMap<>();
+    private final InFlightAnalyses inFlightAnalyses = new InFlightAnalyses();
+    private OverlapValidator overlapValidator;
+    private BookingStore bookingStore;
+    private AnalysisResultCache resultCache;
+    private ObservableStore<Activity> observedActivities;
+    private ObservableStore<Booking> observedBookings;
+    private ForkJoinPool analysisPool = TeamAnalysisPool.POOL;
 
     /**
      * Run an analysis with id analyzerId and the given parameters
@@ -26,16 +59,339 @@ public class DataAnalysisService {
      * @param analyzerId      The id of the analyzer to run
      * @param user            The use whose data is used for the analysis
      * @param period          The period for which the calculation should be done
-     * @return The result as an implemented analysis result interface
+     * @return The typed result of the analysis
      */
-    public Collection<Collection<String>> analyze(final String analyzerId, final String user, CalculationPeriod period) {
+    public AnalysisResult analyze(final String analyzerId, final String user, CalculationPeriod period) {
         assertState(stringHasContent(analyzerId));
         assertState(stringHasContent(user));
 
         Analysis analysis = analysisStore.get(analyzerId);
         assertState(analysis != null);
 
-        return analysis.analyze(period, user);
+        checkForReplacedContent();
+        return compute(analyzerId, user, period, () -> analysis.analyze(period, user));
+    }
+
+    /**
+     * Run an analysis with id analyzerId and report its progress
+     *
+     * @param analyzerId The id of the analyzer to run
+     * @param user       The use whose data is used for the analysis
+     * @param period     The period for which the calculation should be done
+     * @param progress   Informed about the progress in percent, 100 is reported
+     *                   when the result is available
+     * @return The typed result of the analysis
+     */
+    public AnalysisResult analyze(final String analyzerId, final String user, final CalculationPeriod period,
+            final IntConsumer progress) {
+        assertState(stringHasContent(analyzerId));
+        assertState(stringHasContent(user));
+        assertState(progress != null);
+
+        Analysis analysis = analysisStore.get(analyzerId);
+        assertState(analysis != null);
+
+        checkForReplacedContent();
+        AnalysisResult result = compute(analyzerId, user, period, () -> analysis.analyze(period, user, progress));
+        progress.accept(100);
+        return result;
+    }
+
+    /**
+     * Run several analyses for a user. The analyses working on daily rollups
+     * share a single retrieval of the rollups for the widest period of these
+     * requests.
+     *
+     * @param user     The user whose data is used for the analyses
+     * @param requests The analyses to run with their periods
+     * @return The results in the order of the requests
+     */
+    public List<AnalysisResult> analyze(final String user, final List<AnalysisRequest> requests) {
+        assertState(stringHasContent(user));
+        assertState(requests != null && !requests.isEmpty());
+
+        List<Analysis> analyses = requests.stream()
+                .map(request -> analysisStore.get(request.getAnalyzerId()))
+                .collect(toList());
+        assertState(analyses.stream().allMatch(Objects::nonNull));
+
+        checkForReplacedContent();
+        SharedRollups sharedRollups = new SharedRollups(user);
+        for (int i = 0; i < requests.size(); i++) {
+            if (usesSharedRollups(analyses.get(i))) {
+                sharedRollups.include(requests.get(i).getPeriod());
+            }
+        }
+        List<AnalysisResult> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            Analysis analysis = analyses.get(i);
+            CalculationPeriod period = requests.get(i).getPeriod();
+            Supplier<AnalysisResult> computation = usesSharedRollups(analysis)
+                    ? () -> ((RollupAnalysis) analysis).analyze(period, sharedRollups.forPeriod(period))
+                    : () -> analysis.analyze(period, user);
+            results.add(compute(requests.get(i).getAnalyzerId(), user, period, computation));
+        }
+        return results;
+    }
+
+    /**
+     * Run an analysis for all users with bookings in the period and merge the
+     * results into a summary of the team. The bookings of all users are
+     * partitioned by user in a single retrieval, the analyses of the users are
+     * computed in parallel on a fork join pool.
+     *
+     * @param analyzerId The id of the analyzer to run, it must work on rollups
+     * @param period     The period for which the calculation should be done
+     * @return The summary of the results of all users
+     */
+    public AnalysisResult analyzeTeam(final String analyzerId, final CalculationPeriod period) {
+        assertState(stringHasContent(analyzerId));
+        Analysis analysis = analysisStore.get(analyzerId);
+        assertState(usesSharedRollups(analysis));
+
+        checkForReplacedContent();
+        Map<String, SortedMap<LocalDate, DayRollup>> rollupsByUser = bookingStore
+                .retrieveRollupsByRange(period.firstDay(), period.firstDayAfter());
+        List<String> users = new ArrayList<>(rollupsByUser.keySet());
+        users.sort(null);
+        AnalysisResult[] results = new AnalysisResult[users.size()];
+        analysisPool.invoke(new UserAnalysisTask(analyzerId, (RollupAnalysis) analysis, period, users,
+                rollupsByUser, results, 0, users.size()));
+        Map<String, AnalysisResult> userResults = new LinkedHashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            userResults.put(users.get(i), results[i]);
+        }
+        return ((RollupAnalysis) analysis).summarize(period, userResults);
+    }
+
+    /**
+     * The pool of team analyses. The tasks wait for identical analyses computed
+     * by other threads, so they do not run in the common pool, where waiting
+     * tasks would hold up unrelated work. Created on first use.
+     */
+    private static final class TeamAnalysisPool {
+        private static final AtomicLong threadCounter = new AtomicLong();
+        private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                pool -> {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("ptm-team-analysis-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, null, false);
+    }
+
+    /**
+     * Computes the results of a range of users, the range is split until a single
+     * user is left
+     */
+    private class UserAnalysisTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String analyzerId;
+        private final RollupAnalysis analysis;
+        private final CalculationPeriod period;
+        private final List<String> users;
+        private final Map<String, SortedMap<LocalDate, DayRollup>> rollupsByUser;
+        private final AnalysisResult[] results;
+        private final int from;
+        private final int to;
+
+        UserAnalysisTask(final String analyzerId, final RollupAnalysis analysis, final CalculationPeriod period,
+                final List<String> users, final Map<String, SortedMap<LocalDate, DayRollup>> rollupsByUser,
+                final AnalysisResult[] results, final int from, final int to) {
+            this.analyzerId = analyzerId;
+            this.analysis = analysis;
+            this.period = period;
+            this.users = users;
+            this.rollupsByUser = rollupsByUser;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                String user = users.get(from);
+                results[from] = DataAnalysisService.this.compute(analyzerId, user, period,
+                        () -> analysis.analyze(period, rollupsByUser.get(user)));
+            } else if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(subTask(from, middle), subTask(middle, to));
+            }
+        }
+
+        private UserAnalysisTask subTask(final int subFrom, final int subTo) {
+            return new UserAnalysisTask(analyzerId, analysis, period, users, rollupsByUser, results, subFrom,
+                    subTo);
+        }
+    }
+
+    private boolean usesSharedRollups(final Analysis analysis) {
+        return bookingStore != null && analysis instanceof RollupAnalysis;
+    }
+
+    /**
+     * The rollups of a user for the widest period of the included periods, they
+     * are retrieved on first use
+     */
+    private class SharedRollups {
+        private final String user;
+        private LocalDate firstDay;
+        private LocalDate firstDayAfter;
+        private NavigableMap<LocalDate, DayRollup> rollups;
+
+        SharedRollups(final String user) {
+            this.user = user;
+        }
+
+        void include(final CalculationPeriod period) {
+            assertState(rollups == null);
+            if (firstDay == null || period.firstDay().isBefore(firstDay)) {
+                firstDay = period.firstDay();
+            }
+            if (firstDayAfter == null || period.firstDayAfter().isAfter(firstDayAfter)) {
+                firstDayAfter = period.firstDayAfter();
+            }
+        }
+
+        SortedMap<LocalDate, DayRollup> forPeriod(final CalculationPeriod period) {
+            if (rollups == null) {
+                rollups = new TreeMap<>(bookingStore.retrieveRollupsByUserAndRange(user, firstDay, firstDayAfter));
+            }
+            return rollups.subMap(period.firstDay(), true, period.firstDayAfter(), false);
+        }
+    }
+
+    private AnalysisResult compute(final String analyzerId, final String user, final CalculationPeriod period,
+            final Supplier<AnalysisResult> computation) {
+        AnalysisKey key = new AnalysisKey(analyzerId, user, period);
+        Supplier<AnalysisResult> coalescedComputation = () -> inFlightAnalyses.compute(key, computation);
+        if (resultCache == null) {
+            return coalescedComputation.get();
+        }
+        return resultCache.get(analyzerId, user, period, coalescedComputation);
+    }
+
+    private void checkForReplacedContent() {
+        if (resultCache != null) {
+            observedActivities.checkForReplacedContent();
+            observedBookings.checkForReplacedContent();
+        }
+    }
+
+    /**
+     * @param analyzerId The id of an analyzer
+     * @return True, if an analyzer with this id is registered
+     */
+    public boolean hasAnalysis(final String analyzerId) {
+        return analysisStore.containsKey(analyzerId);
+    }
+
+    /**
+     * @return The number of analysis requests answered from the cache
+     */
+    public long getCacheHits() {
+        return resultCache != null ? resultCache.hits() : 0L;
+    }
+
+    /**
+     * @return The number of analysis requests that had to be computed
+     */
+    public long getCacheMisses() {
+        return resultCache != null ? resultCache.misses() : 0L;
+    }
+
+    /**
+     * @return The number of analysis requests that shared the computation of an
+     *         identical request running at the same time
+     */
+    public long getCoalescedRequests() {
+        return inFlightAnalyses.coalesced();
+    }
+
+    /**
+     * Find the bookings of the user that overlap with other bookings of the same
+     * day
+     *
+     * @param user   The user whose bookings are validated
+     * @param period The period for which the validation should be done
+     * @return The ids of the overlapping bookings per day, only days with
+     *         overlapping bookings are contained
+     */
+    public SortedMap<LocalDate, List<Long>> findOverlappingBookings(final String user,
+            final CalculationPeriod period) {
+        assertState(stringHasContent(user));
+        assertState(overlapValidator != null);
+
+        return overlapValidator.findOverlaps(period, user);
+    }
+
+    DataAnalysisService setOverlapValidator(final OverlapValidator validator) {
+        overlapValidator = validator;
+        return this;
+    }
+
+    DataAnalysisService enableResultCache(final ObservableStore<Activity> activities,
+            final ObservableStore<Booking> bookings, final int maxSize) {
+        AnalysisResultCache cache = new AnalysisResultCache(maxSize);
+        activities.addStoreListener(new StoreListener<Activity>() {
+            @Override
+            public void objectChanged(final Optional<Activity> previous, final Optional<Activity> current) {
+                previous.ifPresent(a -> invalidate(cache, a));
+                current.ifPresent(a -> invalidate(cache, a));
+            }
+
+            @Override
+            public void contentReplaced() {
+                invalidateAll(cache);
+            }
+        });
+        bookings.addStoreListener(new StoreListener<Booking>() {
+            @Override
+            public void objectChanged(final Optional<Booking> previous, final Optional<Booking> current) {
+                previous.ifPresent(b -> invalidate(cache, b));
+                current.ifPresent(b -> invalidate(cache, b));
+            }
+
+            @Override
+            public void contentReplaced() {
+                invalidateAll(cache);
+            }
+        });
+        observedActivities = activities;
+        observedBookings = bookings;
+        resultCache = cache;
+        return this;
+    }
+
+    private void invalidate(final AnalysisResultCache cache, final Activity activity) {
+        cache.invalidate(activity.getUser(), this::usesActivities);
+        inFlightAnalyses.forget(key -> key.isForUser(activity.getUser()) && usesActivities(key.analyzerId()));
+    }
+
+    private void invalidate(final AnalysisResultCache cache, final Booking booking) {
+        cache.invalidate(booking.getUser(), booking.getBookingday());
+        inFlightAnalyses.forget(key -> key.isForUserAndDay(booking.getUser(), booking.getBookingday()));
+    }
+
+    private void invalidateAll(final AnalysisResultCache cache) {
+        cache.clear();
+        inFlightAnalyses.forget(key -> true);
+    }
+
+    private boolean usesActivities(final String analyzerId) {
+        return Optional.ofNullable(analysisStore.get(analyzerId)).map(Analysis::usesActivities).orElse(true);
+    }
+
+    DataAnalysisService setAnalysisPool(final ForkJoinPool pool) {
+        analysisPool = pool;
+        return this;
+    }
+
+    DataAnalysisService setBookingStore(final BookingStore store) {
+        bookingStore = store;
+        return this;
     }
 
     DataAnalysisService addAnalysis(final String id, final Analysis analysis) {
@@ -0,0 +1,81 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical analyses that are computed at the same time. The first
+ * caller computes the result, callers asking for the same analysis while the
+ * computation runs wait for it and receive the same result or exception.
+ *
+ * A computation that is forgotten, because data of the analyzed user and
+ * period changes, still completes for its waiting callers, but later callers
+ * start a new computation.
+ */
+class InFlightAnalyses {
+    private final Map<AnalysisKey, CompletableFuture<AnalysisResult>> computations = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Compute the result or wait for the running computation of the same analysis
+     *
+     * @param key         The analysis to compute
+     * @param computation Computes the result, if no computation is running
+     * @return The result
+     */
+    AnalysisResult compute(final AnalysisKey key, final Supplier<AnalysisResult> computation) {
+        CompletableFuture<AnalysisResult> own = new CompletableFuture<>();
+        CompletableFuture<AnalysisResult> running = computations.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return join(running);
+        }
+        try {
+            AnalysisResult result = computation.get();
+            own.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            computations.remove(key, own);
+        }
+    }
+
+    private static AnalysisResult join(final CompletableFuture<AnalysisResult> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Let later callers of the matching analyses start a new computation
+     */
+    void forget(final Predicate<AnalysisKey> filter) {
+        computations.keySet().removeIf(filter);
+    }
+
+    long coalesced() {
+        return coalesced.get();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.lgblaumeiser.ptm.analysis.AnalysisResult.AnalysisResultBuilder;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult.Column;
+
+import de.lgblaumeiser.ptm.store.DayRollup;
+
+/**
+ * An analysis that is computed from the daily rollups of a user's bookings.
+ * Several such analyses can share a single retrieval of the rollups.
+ */
+public interface RollupAnalysis extends Analysis {
+    /**
+     * Run the analysis on rollups retrieved before
+     *
+     * @param period  The period for which the calculation should be done
+     * @param rollups The rollups of the analyzed user for exactly the days of the
+     *                period
+     * @return The result of the analysis
+     */
+    AnalysisResult analyze(CalculationPeriod period, SortedMap<LocalDate, DayRollup> rollups);
+
+    /**
+     * Merge the results of several users into a summary of the team. The default
+     * lists the rows of all users, prefixed by the name of the user.
+     *
+     * @param period      The period for which the results were computed
+     * @param userResults The results per user, in the order of the summary
+     * @return The summary of the team
+     */
+    default AnalysisResult summarize(final CalculationPeriod period, final Map<String, AnalysisResult> userResults) {
+        AnalysisResultBuilder summary = newAnalysisResult().addColumn("User", CellType.TEXT);
+        List<Column> columns = userResults.isEmpty() ? analyze(period, new TreeMap<>()).getColumns()
+                : userResults.values().iterator().next().getColumns();
+        columns.forEach(column -> summary.addColumn(column.getName(), column.getType()));
+        userResults.forEach((user, result) -> result.getRows().forEach(row -> {
+            Object[] cells = new Object[row.size() + 1];
+            cells[0] = user;
+            for (int i = 0; i < row.size(); i++) {
+                cells[i + 1] = row.get(i);
+            }
+            summary.addRow(cells);
+        }));
+        return summary.build();
+    }
+}
@@ -7,28 +7,34 @@
  */
 package de.lgblaumeiser.ptm.analysis.analyzer;
 
-import static de.lgblaumeiser.ptm.analysis.analyzer.DateFormatterUtil.formatDuration;
-import static de.lgblaumeiser.ptm.analysis.analyzer.DateFormatterUtil.formatPercentageString;
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
 import static de.lgblaumeiser.ptm.util.Utils.emptyString;
-import static de.lgblaumeiser.ptm.util.Utils.getIndexFromCollection;
 import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
-import static java.util.stream.Collectors.toList;
 
-import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
 import java.util.stream.Collectors;
 
-import de.lgblaumeiser.ptm.analysis.Analysis;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult.AnalysisResultBuilder;
 import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.CellType;
+import de.lgblaumeiser.ptm.analysis.RollupAnalysis;
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
-import de.lgblaumeiser.ptm.datamanager.model.TimeSpan;
+import de.lgblaumeiser.ptm.store.BookingStore;
+import de.lgblaumeiser.ptm.store.DayRollup;
 import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.util.MinuteCounter;
 
 /**
  * An analysis to compute the amount of hours per project. The computer
@@ -37,184 +43,238 @@ import de.lgblaumeiser.ptm.store.ObjectStore;
  * the requirements of the author concerning his time keeping.
  * 
  * This is the abstract basis that can used for activities and the aggregating
- * projects
+ * projects. The analysis is computed from the daily rollups of the bookings,
+ * each activity referenced by the rollups is loaded only once per analysis run.
+ * Minutes are summed up as primitive ints and returned as typed cells.
  */
-public abstract class BaseProjectComputer implements Analysis {
-    private final ObjectStore<Booking> bookingStore;
+public abstract class BaseProjectComputer implements RollupAnalysis {
+    private final BookingStore bookingStore;
     private final ObjectStore<Activity> activityStore;
 
-    private static class AnalysisData {
-        private Map<String, Activity> keyToActivityMap = new HashMap<>();
-        private Map<String, Duration> keyToMinutesMap = new HashMap<>();
-        private Map<String, String> keyToCommentMap = new HashMap<>();
-
-        void setActivityData(final String key, final Activity activity, final Duration currentLength,
-                final String comment) {
-            keyToActivityMap.put(key, activity);
-            calculateTimeForActivity(key, currentLength);
-            calculateAccumulatedComment(key, comment);
-        }
-
-        private void calculateAccumulatedComment(final String key, final String newComment) {
-            String currentComment = getCurrentComment(key);
-            if (stringHasContent(newComment) && !currentComment.contains(newComment)) {
-                currentComment = (stringHasContent(currentComment)
-                        ? currentComment + ", "
-                        : emptyString())
-                        + newComment;
+    private static class KeyData {
+        private final Activity activity;
+        private int minutes;
+        private final Set<String> comments = new LinkedHashSet<>();
+
+        KeyData(final Activity activity) {
+            this.activity = activity;
+        }
+
+        void addComments(final List<String> newComments) {
+            for (int i = 0; i < newComments.size(); i++) {
+                if (stringHasContent(newComments.get(i))) {
+                    comments.add(newComments.get(i));
+                }
             }
-            keyToCommentMap.put(key, currentComment);
         }
 
-        private String getCurrentComment(final String key) {
-            return Optional.ofNullable(keyToCommentMap.get(key)).orElse(emptyString());
+        String getAccumulatedComment() {
+            return String.join(", ", comments);
         }
+    }
 
-        private void calculateTimeForActivity(final String key, final Duration currentLength) {
-            keyToMinutesMap.put(key, getMinutesForKey(key).plus(currentLength));
+    /**
+     * The minutes are summed up per activity id in a primitive counter, the key
+     * data of an activity is resolved once when the activity is first seen and
+     * looked up by the index of the activity in the counter afterwards.
+     */
+    private static class AnalysisData {
+        private final MinuteCounter minutesByActivity = new MinuteCounter();
+        private final List<KeyData> keyDataByActivity = new ArrayList<>();
+        private final Map<String, KeyData> keyToDataMap = new HashMap<>();
+
+        int addMinutes(final long activityId, final int minutes) {
+            return minutesByActivity.add(activityId, minutes);
         }
 
-        private Duration getMinutesForKey(final String key) {
-            return Optional.ofNullable(keyToMinutesMap.get(key)).orElse(Duration.ZERO);
+        boolean hasKeyData(final int activityIndex) {
+            return activityIndex < keyDataByActivity.size();
         }
 
-        Collection<String> getKeys() {
-            return keyToActivityMap.keySet();
+        void setKeyData(final int activityIndex, final String key, final Activity activity) {
+            assertState(activityIndex == keyDataByActivity.size());
+            keyDataByActivity.add(keyToDataMap.computeIfAbsent(key, k -> new KeyData(activity)));
         }
 
-        Activity getActivityForKey(final String key) {
-            return keyToActivityMap.get(key);
+        void addComments(final int activityIndex, final List<String> comments) {
+            keyDataByActivity.get(activityIndex).addComments(comments);
         }
 
-        Duration getBookedMinutesForKey(final String key) {
-            return keyToMinutesMap.get(key);
+        int accumulateKeyMinutes() {
+            int totalMinutes = 0;
+            for (int index = 0; index < minutesByActivity.size(); index++) {
+                keyDataByActivity.get(index).minutes += minutesByActivity.minutesAt(index);
+                totalMinutes += minutesByActivity.minutesAt(index);
+            }
+            return totalMinutes;
         }
 
-        String getAccumulatedCommentForKey(final String key) {
-            return keyToCommentMap.get(key);
+        Collection<KeyData> getKeyData() {
+            return keyToDataMap.values();
         }
     }
 
+    /**
+     * The minutes of an element summed up over the users of a team
+     */
+    private static class TeamData {
+        private final String elementName;
+        private final String elementId;
+        private int minutes;
+        private final Set<String> users = new LinkedHashSet<>();
+
+        TeamData(final String elementName, final String elementId) {
+            this.elementName = elementName;
+            this.elementId = elementId;
+        }
+    }
+
+    /**
+     * The comments are only shown for single days, for longer periods the result
+     * is computed from the minutes per activity of the whole period, which the
+     * store provides without visiting every day of the period.
+     */
     @Override
-    public Collection<Collection<String>> analyze(final CalculationPeriod period, final String user) {
+    public AnalysisResult analyze(final CalculationPeriod period, final String user) {
+        if (period.isDayPeriod()) {
+            return analyze(period, bookingStore.retrieveRollupsByUserAndRange(user, period.firstDay(),
+                    period.firstDayAfter()));
+        }
         AnalysisData currentAnalysis = new AnalysisData();
+        MinuteCounter minutes = bookingStore.retrieveMinutesByUserAndRange(user, period.firstDay(),
+                period.firstDayAfter());
+        for (int i = 0; i < minutes.size(); i++) {
+            addActivityMinutes(currentAnalysis, minutes.idAt(i), minutes.minutesAt(i));
+        }
+        return createResult(currentAnalysis, currentAnalysis.accumulateKeyMinutes(), false);
+    }
 
-        return createResultCollection(
+    @Override
+    public AnalysisResult analyze(final CalculationPeriod period, final SortedMap<LocalDate, DayRollup> rollups) {
+        AnalysisData currentAnalysis = new AnalysisData();
+
+        return createResult(
                 currentAnalysis,
-                calculateTimeMapping(getBookingsForPeriod(period, user), currentAnalysis),
+                calculateTimeMapping(rollups.values(), currentAnalysis),
                 period.isDayPeriod());
     }
 
-    private Collection<Booking> getBookingsForPeriod(final CalculationPeriod period, final String user) {
-        return bookingStore
-                .retrieveAll()
-                .stream()
-                .filter(b -> b.getUser().equals(user) && period.isInPeriod(b.getBookingday()))
-                .collect(toList());
-    }
-
-    private Duration calculateTimeMapping(final Collection<Booking> bookings, final AnalysisData currentAnalysis) {
-        Duration totalMinutes = Duration.ZERO;
-        for (Booking booking : bookings) {
-            if (booking.hasEndtime()) {
-                totalMinutes = totalMinutes.plus(calculateBooking(booking, currentAnalysis));
+    /**
+     * The summary contains the minutes per element summed up over all users, the
+     * percentages are computed on the minutes of the team. Instead of comments,
+     * the users who booked on an element are listed.
+     */
+    @Override
+    public AnalysisResult summarize(final CalculationPeriod period, final Map<String, AnalysisResult> userResults) {
+        Map<String, TeamData> teamData = new HashMap<>();
+        int totalMinutes = 0;
+        for (Map.Entry<String, AnalysisResult> userResult : userResults.entrySet()) {
+            for (List<Object> row : userResult.getValue().getRows()) {
+                String elementId = (String) row.get(1);
+                TeamData data = teamData.computeIfAbsent(elementId, id -> new TeamData((String) row.get(0), id));
+                data.minutes += (Integer) row.get(2);
+                data.users.add(userResult.getKey());
+                totalMinutes += (Integer) row.get(2);
             }
         }
-        return totalMinutes;
+        AnalysisResultBuilder summary = newAnalysisResult()
+                .addColumn(getHeadlineNameElement(), CellType.TEXT)
+                .addColumn(getHeadlineIdElement(), CellType.TEXT)
+                .addColumn("Hours", CellType.MINUTES)
+                .addColumn("%", CellType.PERCENTAGE)
+                .addColumn("Users", CellType.TEXT);
+        List<TeamData> sortedData = new ArrayList<>(teamData.values());
+        sortedData.sort((data1, data2) -> data1.elementId.compareToIgnoreCase(data2.elementId));
+        for (TeamData data : sortedData) {
+            summary.addRow(data.elementName, data.elementId, data.minutes, percentage(data.minutes, totalMinutes),
+                    String.join(", ", data.users));
+        }
+        return summary.setTotals("Total", emptyString(), totalMinutes, 100.0, emptyString()).build();
     }
 
-    private Duration calculateBooking(final Booking booking, final AnalysisData currentAnalysis) {
-        Activity activity = retrieveActivityForBooking(booking);
-        Duration activityLength = calculateActivityLengthForBooking(booking);
-        currentAnalysis.setActivityData(indexGetter(activity), activity, activityLength, booking.getComment());
-        return activityLength;
+    private int calculateTimeMapping(final Collection<DayRollup> rollups, final AnalysisData currentAnalysis) {
+        for (DayRollup rollup : rollups) {
+            for (int i = 0; i < rollup.getActivityCount(); i++) {
+                int index = addActivityMinutes(currentAnalysis, rollup.getActivityId(i),
+                        rollup.getActivityMinutes(i));
+                currentAnalysis.addComments(index, rollup.getActivityComments(i));
+            }
+        }
+        return currentAnalysis.accumulateKeyMinutes();
     }
 
-    private Activity retrieveActivityForBooking(final Booking booking) {
-        return activityStore.retrieveById(booking.getActivity()).orElseThrow(IllegalStateException::new);
+    private int addActivityMinutes(final AnalysisData currentAnalysis, final long activityId, final int minutes) {
+        int index = currentAnalysis.addMinutes(activityId, minutes);
+        if (!currentAnalysis.hasKeyData(index)) {
+            Activity activity = retrieveActivity(activityId);
+            currentAnalysis.setKeyData(index, indexGetter(activity), activity);
+        }
+        return index;
     }
 
-    private Duration calculateActivityLengthForBooking(final Booking booking) {
-        return TimeSpan.newTimeSpan(booking).getLengthInMinutes();
+    private Activity retrieveActivity(final long activityId) {
+        return activityStore.retrieveById(activityId).orElseThrow(IllegalStateException::new);
     }
 
     protected abstract String indexGetter(final Activity activity);
 
-    private Collection<Collection<String>> createResultCollection(final AnalysisData currentAnalysis,
-            final Duration totalMinutes, final boolean withComments) {
-        Collection<Collection<String>> result = new ArrayList<>();
-        result.add(
-                createLine(getHeadlineNameElement(), getHeadlineIdElement(), "Hours", "%", "Comments", withComments));
-        result.addAll(computeResultLines(currentAnalysis, totalMinutes, withComments));
-        result.add(createLine("Total", emptyString(), formatDuration(totalMinutes), "100.0%", emptyString(),
-                withComments));
-        return result;
+    private AnalysisResult createResult(final AnalysisData currentAnalysis, final int totalMinutes,
+            final boolean withComments) {
+        AnalysisResultBuilder result = newAnalysisResult()
+                .addColumn(getHeadlineNameElement(), CellType.TEXT)
+                .addColumn(getHeadlineIdElement(), CellType.TEXT)
+                .addColumn("Hours", CellType.MINUTES)
+                .addColumn("%", CellType.PERCENTAGE);
+        if (withComments) {
+            result.addColumn("Comments", CellType.TEXT);
+        }
+        for (KeyData keyData : sortKeyData(currentAnalysis.getKeyData())) {
+            result.addRow(createLine(
+                    getElementName(keyData.activity),
+                    getElementId(keyData.activity),
+                    keyData.minutes,
+                    percentage(keyData.minutes, totalMinutes),
+                    keyData.getAccumulatedComment(),
+                    withComments));
+        }
+        return result
+                .setTotals(createLine("Total", emptyString(), totalMinutes, 100.0, emptyString(), withComments))
+                .build();
+    }
+
+    private static double percentage(final int minutes, final int totalMinutes) {
+        // Bookings without duration give no total to compute shares of
+        return totalMinutes == 0 ? 0.0 : 100.0 * minutes / totalMinutes;
     }
 
     protected abstract String getHeadlineNameElement();
 
     protected abstract String getHeadlineIdElement();
 
-    private Collection<Collection<String>> computeResultLines(final AnalysisData currentAnalysis,
-            final Duration totalMinutes, final boolean withComments) {
-        Collection<Collection<String>> valueList = new ArrayList<>();
-        for (String key : currentAnalysis.getKeys()) {
-            valueList.add(
-                    calculateResultForActivity(
-                            currentAnalysis.getActivityForKey(key),
-                            currentAnalysis.getBookedMinutesForKey(key),
-                            totalMinutes,
-                            currentAnalysis.getAccumulatedCommentForKey(key),
-                            withComments));
-        }
-        return sortResultList(valueList);
-    }
-
-    private Collection<String> calculateResultForActivity(final Activity element, final Duration elementMinutes,
-            final Duration totalMinutes, final String elementComments, final boolean withComments) {
-        return createLine(
-                getElementName(element),
-                getElementId(element),
-                formatDuration(elementMinutes),
-                formatPercentageString(totalMinutes, elementMinutes),
-                elementComments,
-                withComments);
-    }
-
-    private Collection<String> createLine(final String elementName, final String elementId, final String elementMinutes,
-            final String totalMinutes, final String elementComments, final boolean withComments) {
-        List<String> back = new ArrayList<>();
-        back.add(elementName);
-        back.add(elementId);
-        back.add(elementMinutes);
-        back.add(totalMinutes);
-        if (withComments) {
-            back.add(elementComments);
-        }
-        return back;
+    private Object[] createLine(final String elementName, final String elementId, final int elementMinutes,
+            final double percentage, final String elementComments, final boolean withComments) {
+        return withComments
+                ? new Object[] { elementName, elementId, elementMinutes, percentage, elementComments }
+                : new Object[] { elementName, elementId, elementMinutes, percentage };
     }
 
     protected abstract String getElementName(final Activity activity);
 
     protected abstract String getElementId(final Activity activity);
 
-    private List<Collection<String>> sortResultList(final Collection<Collection<String>> valueList) {
-        return valueList
+    private List<KeyData> sortKeyData(final Collection<KeyData> keyData) {
+        return keyData
                 .stream()
-                .sorted((line1, line2) -> compareResultLines(line1, line2))
+                .sorted((data1, data2) -> compareKeyData(data1, data2))
                 .collect(Collectors.toList());
     }
 
-    private int compareResultLines(final Collection<String> line1, final Collection<String> line2) {
-        return getIdElementFromLine(line1).compareToIgnoreCase(getIdElementFromLine(line2));
-    }
-
-    private String getIdElementFromLine(final Collection<String> line) {
-        return getIndexFromCollection(line, 1);
+    private int compareKeyData(final KeyData data1, final KeyData data2) {
+        return getElementId(data1.activity).compareToIgnoreCase(getElementId(data2.activity));
     }
 
     public BaseProjectComputer(final ObjectStore<Booking> bStore, final ObjectStore<Activity> aStore) {
-        bookingStore = bStore;
+        bookingStore = asBookingStore(bStore);
         activityStore = aStore;
     }
 }
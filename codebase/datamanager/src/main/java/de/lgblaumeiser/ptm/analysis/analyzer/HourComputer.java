@@ -7,167 +7,201 @@
  */
 package de.lgblaumeiser.ptm.analysis.analyzer;
 
-import static de.lgblaumeiser.ptm.analysis.analyzer.DateFormatterUtil.formatDay;
-import static de.lgblaumeiser.ptm.analysis.analyzer.DateFormatterUtil.formatDuration;
-import static de.lgblaumeiser.ptm.analysis.analyzer.DateFormatterUtil.formatTime;
-import static de.lgblaumeiser.ptm.datamanager.model.TimeSpan.newTimeSpan;
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
 import static de.lgblaumeiser.ptm.util.Utils.emptyString;
-import static de.lgblaumeiser.ptm.util.Utils.getFirstFromCollection;
-import static de.lgblaumeiser.ptm.util.Utils.getLastFromCollection;
-import static java.util.stream.Collectors.toList;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.util.stream.Collectors.joining;
 
 import java.time.DayOfWeek;
-import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-
-import de.lgblaumeiser.ptm.analysis.Analysis;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult.AnalysisResultBuilder;
 import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.CellType;
+import de.lgblaumeiser.ptm.analysis.RollupAnalysis;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
-import de.lgblaumeiser.ptm.datamanager.model.TimeSpan;
+import de.lgblaumeiser.ptm.store.BookingStore;
+import de.lgblaumeiser.ptm.store.DayRollup;
 import de.lgblaumeiser.ptm.store.ObjectStore;
 
 /**
- * An analysis that counts all hours in the month given as parameter
+ * An analysis that counts all hours in the month given as parameter. The
+ * analysis is computed from the daily rollups of the bookings, all times are
+ * computed as minutes and returned as typed cells.
  */
-public class HourComputer implements Analysis {
+public class HourComputer implements RollupAnalysis {
     private static final String BREAKTIME_COMMENT = "Break too short!";
     private static final String WORKTIME_COMMENT = "> 10 hours worktime!";
     private static final String INCOMPLETE_COMMENT = "Day has unfinished bookings!";
     private static final String OVERLAPPING_COMMENT = "Day has overlapping bookings!";
+    private static final String INVALID_DAYS_COMMENT = " day(s) with invalid bookings!";
+    private static final int TOTAL_COLUMN = 6;
+    private static final int OVERTIME_COLUMN = 7;
+    private static final int PROGRESS_STEPS = 10;
+    private static final long MIN_PROGRESS_STEP_DAYS = 92L;
 
-    private final ObjectStore<Booking> bookingStore;
+    private final BookingStore bookingStore;
 
     private static class ValidationResult {
-        boolean hasBookings = true;
         boolean bookingsValid = true;
         String validationComment = emptyString();
     }
 
     private static class AccumulatedTimes {
-        Duration overtime = Duration.ZERO;
-        Duration totaltime = Duration.ZERO;
+        int overtime;
+        int totaltime;
+
+        void add(final int overtimeAddition, final int totaltimeAddition) {
+            overtime += overtimeAddition;
+            totaltime += totaltimeAddition;
+        }
+    }
+
+    @Override
+    public AnalysisResult analyze(final CalculationPeriod period, final String user) {
+        return analyze(period, bookingStore.retrieveRollupsByUserAndRange(user, period.firstDay(),
+                period.firstDayAfter()));
+    }
 
-        void add(final Duration overtimeAddition, final Duration totaltimeAddition) {
-            overtime = overtime.plus(overtimeAddition);
-            totaltime = totaltime.plus(totaltimeAddition);
+    /**
+     * The rollups of a long period are retrieved in steps, the progress is the
+     * share of the days retrieved so far
+     */
+    @Override
+    public AnalysisResult analyze(final CalculationPeriod period, final String user, final IntConsumer progress) {
+        long days = DAYS.between(period.firstDay(), period.firstDayAfter());
+        long stepDays = Math.max(MIN_PROGRESS_STEP_DAYS, (days + PROGRESS_STEPS - 1) / PROGRESS_STEPS);
+        SortedMap<LocalDate, DayRollup> rollups = new TreeMap<>();
+        LocalDate from = period.firstDay();
+        while (from.isBefore(period.firstDayAfter())) {
+            LocalDate to = from.plusDays(stepDays).isBefore(period.firstDayAfter()) ? from.plusDays(stepDays)
+                    : period.firstDayAfter();
+            rollups.putAll(bookingStore.retrieveRollupsByUserAndRange(user, from, to));
+            progress.accept((int) (99L * DAYS.between(period.firstDay(), to) / days));
+            from = to;
         }
+        AnalysisResult result = analyze(period, rollups);
+        progress.accept(100);
+        return result;
     }
 
     @Override
-    public Collection<Collection<String>> analyze(final CalculationPeriod period, final String user) {
-        Collection<Collection<String>> result = new ArrayList<>();
-        result.add(getHeadline());
+    public AnalysisResult analyze(final CalculationPeriod period, final SortedMap<LocalDate, DayRollup> rollups) {
+        AnalysisResultBuilder result = createHeadline();
 
         AccumulatedTimes accutimes = new AccumulatedTimes();
-        for (LocalDate currentday : period.days()) {
-            Collection<Booking> currentBookings = getBookingsForDay(currentday, user);
-            ValidationResult validation = validateBookings(currentBookings);
-            if (validation.hasBookings) {
-                if (validation.bookingsValid) {
-                    result.add(createEntry(currentday, currentBookings, accutimes));
+        for (DayRollup currentDay : rollups.values()) {
+            ValidationResult validation = validateBookings(currentDay);
+            if (validation.bookingsValid) {
+                createEntry(result, currentDay, accutimes);
+            } else {
+                errorEntry(result, currentDay.getDay(), validation.validationComment);
+            }
+        }
+        return result.build();
+    }
+
+    /**
+     * The summary contains the accumulated worktime and overtime per user, the
+     * totals are the times of the team. Days with invalid bookings are counted in
+     * the comment.
+     */
+    @Override
+    public AnalysisResult summarize(final CalculationPeriod period, final Map<String, AnalysisResult> userResults) {
+        AnalysisResultBuilder summary = newAnalysisResult()
+                .addColumn("User", CellType.TEXT)
+                .addColumn("Worktime", CellType.MINUTES)
+                .addColumn("Overtime", CellType.MINUTES)
+                .addColumn("Comment", CellType.TEXT);
+        AccumulatedTimes teamTimes = new AccumulatedTimes();
+        userResults.forEach((user, result) -> {
+            AccumulatedTimes userTimes = new AccumulatedTimes();
+            int invalidDays = 0;
+            for (List<Object> row : result.getRows()) {
+                if (row.get(TOTAL_COLUMN) == null) {
+                    invalidDays++;
                 } else {
-                    result.add(errorEntry(currentday, validation.validationComment));
+                    userTimes.overtime = (Integer) row.get(OVERTIME_COLUMN);
+                    userTimes.totaltime = (Integer) row.get(TOTAL_COLUMN);
                 }
             }
-        }
-        return result;
+            teamTimes.add(userTimes.overtime, userTimes.totaltime);
+            summary.addRow(user, userTimes.totaltime, userTimes.overtime,
+                    invalidDays > 0 ? invalidDays + INVALID_DAYS_COMMENT : emptyString());
+        });
+        return summary.setTotals("Total", teamTimes.totaltime, teamTimes.overtime, emptyString()).build();
     }
 
-    private Collection<String> getHeadline() {
-        return Arrays.asList("Work Day", "Starttime", "Endtime", "Presence", "Worktime", "Breaktime", "Total",
-                "Overtime", "Comment");
+    @Override
+    public boolean usesActivities() {
+        return false;
     }
 
-    private Collection<String> createEntry(final LocalDate day, final Collection<Booking> bookings,
+    private AnalysisResultBuilder createHeadline() {
+        return newAnalysisResult()
+                .addColumn("Work Day", CellType.DATE)
+                .addColumn("Starttime", CellType.TIME)
+                .addColumn("Endtime", CellType.TIME)
+                .addColumn("Presence", CellType.MINUTES)
+                .addColumn("Worktime", CellType.MINUTES)
+                .addColumn("Breaktime", CellType.MINUTES)
+                .addColumn("Total", CellType.MINUTES)
+                .addColumn("Overtime", CellType.MINUTES)
+                .addColumn("Comment", CellType.TEXT);
+    }
+
+    private void createEntry(final AnalysisResultBuilder result, final DayRollup rollup,
             final AccumulatedTimes accutimes) {
-        LocalTime starttime = getFirstFromCollection(bookings).getStarttime();
-        LocalTime endtime = getLastFromCollection(bookings).getEndtime();
-        Duration presence = calculatePresence(starttime, endtime);
-        Duration worktime = calculateWorktime(bookings);
-        Duration breaktime = calculateBreaktime(presence, worktime);
-        Duration currentOvertime = calculateOvertime(worktime, day);
+        LocalTime starttime = rollup.getFirstStart();
+        LocalTime endtime = rollup.getLastEnd();
+        int presence = calculatePresence(starttime, endtime);
+        int worktime = rollup.getTotalMinutes();
+        int breaktime = calculateBreaktime(presence, worktime);
+        int currentOvertime = calculateOvertime(worktime, rollup.getDay());
         accutimes.add(currentOvertime, worktime);
-        return createLine(day, accutimes, starttime, endtime, presence, worktime, breaktime);
-    }
-
-    private Collection<String> createLine(final LocalDate day, final AccumulatedTimes accutimes,
-            final LocalTime starttime, final LocalTime endtime, final Duration presence, final Duration worktime,
-            final Duration breaktime) {
-        return Arrays.asList(
-                formatDay(day),
-                formatTime(starttime),
-                formatTime(endtime),
-                formatDuration(presence),
-                formatDuration(worktime),
-                formatDuration(breaktime),
-                formatDuration(accutimes.totaltime),
-                formatDuration(accutimes.overtime),
+        result.addRow(
+                rollup.getDay(),
+                starttime,
+                endtime,
+                presence,
+                worktime,
+                breaktime,
+                accutimes.totaltime,
+                accutimes.overtime,
                 validateTimes(worktime, breaktime));
     }
 
-    private ValidationResult validateBookings(final Collection<Booking> currentBookings) {
+    private ValidationResult validateBookings(final DayRollup rollup) {
         ValidationResult back = new ValidationResult();
 
-        if (currentBookings.isEmpty()) {
-            back.hasBookings = false;
-        } else if (!hasCompleteBookings(currentBookings)) {
+        if (rollup.hasUnfinishedBookings()) {
             back.bookingsValid = false;
             back.validationComment = INCOMPLETE_COMMENT;
-        } else if (bookingsWithOverlaps(currentBookings)) {
+        } else if (!rollup.getOverlappingBookings().isEmpty()) {
             back.bookingsValid = false;
-            back.validationComment = OVERLAPPING_COMMENT;
+            back.validationComment = OVERLAPPING_COMMENT + " Ids: "
+                    + rollup.getOverlappingBookings().stream().map(String::valueOf).collect(joining(", "));
         }
 
         return back;
     }
 
-    private Collection<Booking> getBookingsForDay(final LocalDate currentday, final String user) {
-        return bookingStore
-                .retrieveAll()
-                .stream()
-                .filter(b -> b.getBookingday().equals(currentday) && b.getUser().equals(user))
-                .sorted((b1, b2) -> b1.getStarttime().compareTo(b2.getStarttime()))
-                .collect(toList());
-    }
-
-    private boolean hasCompleteBookings(final Collection<Booking> bookings) {
-        if (bookings.isEmpty()) {
-            return false;
-        }
-        for (Booking current : bookings) {
-            if (!current.hasEndtime()) {
-                return false;
-            }
-        }
-        return true;
-    }
-
-    private boolean bookingsWithOverlaps(final Collection<Booking> bookings) {
-        for (Booking current : bookings) {
-            TimeSpan currentSpan = newTimeSpan(current);
-            for (Booking toCheck : bookings) {
-                if (!current.equals(toCheck)) {
-                    if (currentSpan.overlapsWith(newTimeSpan(toCheck))) {
-                        return true;
-                    }
-                }
-            }
-        }
-        return false;
-    }
-
-    private Duration calculateBreaktime(final Duration presence, final Duration worktime) {
-        return presence.minus(worktime);
+    private int calculateBreaktime(final int presence, final int worktime) {
+        return presence - worktime;
     }
 
-    private Duration calculateOvertime(final Duration worktime, final LocalDate day) {
-        Duration minutes = worktime;
+    private int calculateOvertime(final int worktime, final LocalDate day) {
+        int minutes = worktime;
         if (isWeekDay(day)) {
-            minutes = minutes.minus(Duration.ofMinutes(480)); // Overtime is time after 8 hours
+            minutes -= 480; // Overtime is time after 8 hours
         }
         return minutes;
     }
@@ -176,9 +210,7 @@ public class HourComputer implements Analysis {
         return !(day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY);
     }
 
-    private String validateTimes(final Duration worktime, final Duration breaktime) {
-        long worktimeMinutes = worktime.toMinutes();
-        long breaktimeMinutes = breaktime.toMinutes();
+    private String validateTimes(final int worktimeMinutes, final int breaktimeMinutes) {
         if (worktimeMinutes > 600) {
             return WORKTIME_COMMENT;
         }
@@ -191,32 +223,15 @@ public class HourComputer implements Analysis {
         return emptyString();
     }
 
-    private Duration calculatePresence(final LocalTime starttime, final LocalTime endtime) {
-        return Duration.between(starttime, endtime);
-    }
-
-    private Duration calculateWorktime(final Collection<Booking> bookings) {
-        Duration minutes = Duration.ZERO;
-        for (Booking current : bookings) {
-            minutes = minutes.plus(newTimeSpan(current).getLengthInMinutes());
-        }
-        return minutes;
+    private int calculatePresence(final LocalTime starttime, final LocalTime endtime) {
+        return (endtime.toSecondOfDay() - starttime.toSecondOfDay()) / 60;
     }
 
-    private Collection<String> errorEntry(final LocalDate day, final String comment) {
-        return Arrays.asList(
-                formatDay(day),
-                emptyString(),
-                emptyString(),
-                emptyString(),
-                emptyString(),
-                emptyString(),
-                emptyString(),
-                emptyString(),
-                comment);
+    private void errorEntry(final AnalysisResultBuilder result, final LocalDate day, final String comment) {
+        result.addRow(day, null, null, null, null, null, null, null, comment);
     }
 
     public HourComputer(final ObjectStore<Booking> store) {
-        bookingStore = store;
+        bookingStore = asBookingStore(store);
     }
 }
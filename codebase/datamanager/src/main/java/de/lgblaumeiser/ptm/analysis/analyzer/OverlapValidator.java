@@ -0,0 +1,51 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis.analyzer;
+
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.store.BookingStore;
+import de.lgblaumeiser.ptm.store.ObjectStore;
+
+/**
+ * Finds the bookings of a user that overlap with other bookings on the same
+ * day. Bookings without endtime are ignored. The overlaps are taken from the
+ * daily rollups of the bookings.
+ */
+public class OverlapValidator {
+    private final BookingStore bookingStore;
+
+    public OverlapValidator(final ObjectStore<Booking> store) {
+        bookingStore = asBookingStore(store);
+    }
+
+    /**
+     * @param period The period for which the bookings are validated
+     * @param user   The user whose bookings are validated
+     * @return The ids of the overlapping bookings for each day of the period that
+     *         has overlapping bookings, ordered by day and starttime
+     */
+    public SortedMap<LocalDate, List<Long>> findOverlaps(final CalculationPeriod period, final String user) {
+        SortedMap<LocalDate, List<Long>> result = new TreeMap<>();
+        bookingStore
+                .retrieveRollupsByUserAndRange(user, period.firstDay(), period.firstDayAfter())
+                .forEach((day, rollup) -> {
+                    if (!rollup.getOverlappingBookings().isEmpty()) {
+                        result.put(day, rollup.getOverlappingBookings());
+                    }
+                });
+        return result;
+    }
+}
@@ -8,6 +8,7 @@
 package de.lgblaumeiser.ptm.datamanager.service;
 
 import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
 import static de.lgblaumeiser.ptm.util.Utils.assertState;
 import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
 import static java.util.Optional.empty;
@@ -16,21 +17,37 @@ import static java.util.Optional.ofNullable;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
 import de.lgblaumeiser.ptm.datamanager.model.Booking.BookingBuilder;
 import de.lgblaumeiser.ptm.datamanager.model.User;
+import de.lgblaumeiser.ptm.store.BookingStore;
 import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.store.ObservableStore;
+import de.lgblaumeiser.ptm.store.StoreListener;
 
 /**
- * Class which offers the services needed for entering the bookings of a day
+ * Class which offers the services needed for entering the bookings of a day.
+ * The service remembers the open booking of a user on a day, i.e., the booking
+ * without an endtime, so that it is found without searching the bookings. If
+ * the store is observable, the service follows all changes of the bookings, so
+ * it also remembers that a user has no open booking on a day and does not
+ * search the bookings again. The number of remembered days is bounded.
  */
 public class BookingService {
     private static final int DEFAULTBREAKTIME = 30;
+    private static final Long NO_OPEN_BOOKING = -1L;
+    private static final int MAX_REMEMBERED_DAYS = 10000;
 
-    private final ObjectStore<Booking> bookingStore;
+    private final BookingStore bookingStore;
+    private final boolean observed;
+    private final Map<UserDay, Long> openBookings = new ConcurrentHashMap<>();
 
     /**
      * Add a booking at the corresponding starttime. If the last bogoking has no
@@ -50,7 +67,7 @@ public class BookingService {
     public Booking addBooking(final LocalDate bookingday, final User user, final Activity activity,
             final LocalTime starttime, final Optional<LocalTime> endtime, final Optional<String> comment) {
         assertState(!activity.isHidden());
-        getLastOpenBooking(bookingday).ifPresent(b -> endOpenBookingWithStarttime(starttime, b));
+        getLastOpenBooking(user.getUsername(), bookingday).ifPresent(b -> endOpenBookingWithStarttime(starttime, b));
         return createAndStoreBooking(
                 newBooking(),
                 of(bookingday),
@@ -61,12 +78,75 @@ public class BookingService {
                 comment);
     }
 
-    private Optional<Booking> getLastOpenBooking(final LocalDate bookingday) {
-        return bookingStore
-                .retrieveAll()
+    private Optional<Booking> getLastOpenBooking(final String user, final LocalDate bookingday) {
+        UserDay key = new UserDay(user, bookingday);
+        Long known = openBookings.get(key);
+        if (NO_OPEN_BOOKING.equals(known)) {
+            return empty();
+        }
+        Optional<Booking> indexed = Optional.ofNullable(known)
+                .flatMap(bookingStore::retrieveById)
+                .filter(b -> isOpenBookingOf(b, key));
+        if (indexed.isPresent()) {
+            return indexed;
+        }
+        // Unknown or outdated entry, e.g., booking changed without the service
+        Optional<Booking> found = bookingStore
+                .retrieveByUserAndDay(user, bookingday)
                 .stream()
-                .filter(b -> b.getBookingday().equals(bookingday) && !b.hasEndtime())
-                .findFirst();
+                .filter(b -> !b.hasEndtime())
+                .max(Comparator.comparing(Booking::getStarttime));
+        if (found.isPresent()) {
+            remember(key, found.get().getId());
+        } else if (observed) {
+            remember(key, NO_OPEN_BOOKING);
+        } else {
+            openBookings.remove(key);
+        }
+        return found;
+    }
+
+    private void remember(final UserDay key, final Long bookingId) {
+        if (openBookings.size() >= MAX_REMEMBERED_DAYS) {
+            openBookings.clear();
+        }
+        openBookings.put(key, bookingId);
+    }
+
+    private boolean isOpenBookingOf(final Booking booking, final UserDay key) {
+        return !booking.hasEndtime() && key.equals(new UserDay(booking.getUser(), booking.getBookingday()));
+    }
+
+    private void updateOpenBookings(final Booking booking) {
+        if (booking.hasEndtime()) {
+            forgetOpenBooking(booking);
+        } else {
+            remember(new UserDay(booking.getUser(), booking.getBookingday()), booking.getId());
+        }
+    }
+
+    private void forgetOpenBooking(final Booking booking) {
+        UserDay key = new UserDay(booking.getUser(), booking.getBookingday());
+        if (observed) {
+            openBookings.replace(key, booking.getId(), NO_OPEN_BOOKING);
+        } else {
+            openBookings.remove(key, booking.getId());
+        }
+    }
+
+    private void bookingChanged(final Optional<Booking> previous, final Optional<Booking> current) {
+        previous.filter(b -> !b.hasEndtime()).ifPresent(this::forgetOpenBooking);
+        current.filter(b -> !b.hasEndtime())
+                .ifPresent(b -> openBookings.replace(new UserDay(b.getUser(), b.getBookingday()), NO_OPEN_BOOKING,
+                        b.getId()));
+    }
+
+    int knownOpenBookings() {
+        return (int) openBookings.values().stream().filter(id -> !NO_OPEN_BOOKING.equals(id)).count();
+    }
+
+    int knownDays() {
+        return openBookings.size();
     }
 
     private void endOpenBookingWithStarttime(final LocalTime starttime, final Booking booking) {
@@ -185,13 +265,56 @@ public class BookingService {
         comment.ifPresent(currentBookingData::setComment);
         Booking booking = currentBookingData.build();
         bookingStore.store(booking);
+        updateOpenBookings(booking);
         return booking;
     }
 
     /**
      * @param bookingStore Set the booking store
      */
+    @SuppressWarnings("unchecked")
     BookingService(final ObjectStore<Booking> bookingStore) {
-        this.bookingStore = bookingStore;
+        this.bookingStore = asBookingStore(bookingStore);
+        this.observed = bookingStore instanceof ObservableStore;
+        if (observed) {
+            ((ObservableStore<Booking>) bookingStore).addStoreListener(new StoreListener<Booking>() {
+                @Override
+                public void objectChanged(final Optional<Booking> previous, final Optional<Booking> current) {
+                    bookingChanged(previous, current);
+                }
+
+                @Override
+                public void contentReplaced() {
+                    openBookings.clear();
+                }
+            });
+        }
+    }
+
+    private static final class UserDay {
+        private final String user;
+        private final LocalDate day;
+
+        private UserDay(final String user, final LocalDate day) {
+            this.user = user;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof UserDay)) {
+                return false;
+            }
+            UserDay other = (UserDay) obj;
+            return Objects.equals(user, other.user) && Objects.equals(day, other.day);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(user, day);
+        }
     }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.lgblaumeiser.ptm.util.MinuteCounter;
+
+/**
+ * An index of the minutes per activity of the rollups of a user. The minutes
+ * are summed up in buckets over aligned blocks of epoch days, the buckets of
+ * level n cover 2^n days, so each day is contained in one bucket per level. A
+ * range of days is combined from the largest aligned blocks that fit into the
+ * range, which are O(log days) buckets, independent of the number of days with
+ * bookings.
+ *
+ * Buckets are immutable, a change of a rollup replaces the buckets of its day.
+ * The changes must not run concurrently, queries may run concurrently to a
+ * change.
+ */
+final class ActivityMinuteIndex {
+    static final int LEVELS = 16;
+
+    private final List<Map<Long, Bucket>> levels = new ArrayList<>(LEVELS);
+
+    /**
+     * The minutes per activity and the number of rollups the activity is booked
+     * in, an activity is part of the bucket as long as a rollup contains it
+     */
+    private static final class Bucket {
+        private final MinuteCounter minutes;
+        private final MinuteCounter rollups;
+
+        Bucket(final MinuteCounter minutes, final MinuteCounter rollups) {
+            this.minutes = minutes;
+            this.rollups = rollups;
+        }
+
+        static Bucket replace(final Bucket bucket, final DayRollup previous, final DayRollup current) {
+            MinuteCounter minutes = bucket != null ? bucket.minutes.trimmedCopy() : new MinuteCounter();
+            MinuteCounter rollups = bucket != null ? bucket.rollups.trimmedCopy() : new MinuteCounter();
+            add(minutes, rollups, previous, -1);
+            add(minutes, rollups, current, 1);
+            MinuteCounter remainingMinutes = new MinuteCounter(minutes.size());
+            MinuteCounter remainingRollups = new MinuteCounter(rollups.size());
+            for (int i = 0; i < rollups.size(); i++) {
+                if (rollups.minutesAt(i) > 0) {
+                    remainingMinutes.add(minutes.idAt(i), minutes.minutesAt(i));
+                    remainingRollups.add(rollups.idAt(i), rollups.minutesAt(i));
+                }
+            }
+            return remainingRollups.size() > 0 ? new Bucket(remainingMinutes, remainingRollups) : null;
+        }
+
+        private static void add(final MinuteCounter minutes, final MinuteCounter rollups, final DayRollup rollup,
+                final int sign) {
+            if (rollup != null) {
+                for (int i = 0; i < rollup.getActivityCount(); i++) {
+                    minutes.add(rollup.getActivityId(i), sign * rollup.getActivityMinutes(i));
+                    rollups.add(rollup.getActivityId(i), sign);
+                }
+            }
+        }
+
+        void addTo(final MinuteCounter sum) {
+            for (int i = 0; i < minutes.size(); i++) {
+                sum.add(minutes.idAt(i), minutes.minutesAt(i));
+            }
+        }
+    }
+
+    ActivityMinuteIndex() {
+        for (int level = 0; level < LEVELS; level++) {
+            levels.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Replace the rollup of a day in the index
+     *
+     * @param previous The rollup that was indexed for the day, null if there was
+     *                 none
+     * @param current  The new rollup of the day, null if the day has no bookings
+     *                 anymore
+     */
+    void replace(final DayRollup previous, final DayRollup current) {
+        assertState(previous != null || current != null);
+        assertState(previous == null || current == null || previous.getDay().equals(current.getDay()));
+        long epochDay = (previous != null ? previous.getDay() : current.getDay()).toEpochDay();
+        for (int level = 0; level < LEVELS; level++) {
+            levels.get(level).compute(epochDay >> level,
+                    (block, bucket) -> Bucket.replace(bucket, previous, current));
+        }
+    }
+
+    /**
+     * Sum up the minutes per activity for a range of days
+     *
+     * @param firstDay      The first day of the range
+     * @param firstDayAfter The first day after the range
+     * @return The minutes per activity booked within the range, it contains all
+     *         activities booked in the range, even if they sum up to 0 minutes
+     */
+    MinuteCounter minutes(final LocalDate firstDay, final LocalDate firstDayAfter) {
+        MinuteCounter sum = new MinuteCounter();
+        long from = firstDay.toEpochDay();
+        long to = firstDayAfter.toEpochDay();
+        while (from < to) {
+            int level = largestAlignedLevel(from, to);
+            Bucket bucket = levels.get(level).get(from >> level);
+            if (bucket != null) {
+                bucket.addTo(sum);
+            }
+            from += 1L << level;
+        }
+        return sum;
+    }
+
+    private static int largestAlignedLevel(final long from, final long to) {
+        int level = 0;
+        while (level + 1 < LEVELS && (from & ((1L << (level + 1)) - 1)) == 0 && from + (1L << (level + 1)) <= to) {
+            level++;
+        }
+        return level;
+    }
+
+    boolean isEmpty() {
+        return levels.get(LEVELS - 1).isEmpty();
+    }
+}
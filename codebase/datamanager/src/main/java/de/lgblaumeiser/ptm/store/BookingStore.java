@@ -0,0 +1,178 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsIn;
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsOf;
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static java.util.stream.Collectors.groupingBy;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.util.MinuteCounter;
+
+/**
+ * An object store for bookings with queries for the typical access patterns.
+ * The default implementations retrieve the bookings matching a record filter,
+ * implementations with indexes override them.
+ */
+public interface BookingStore extends ObjectStore<Booking> {
+    /**
+     * Retrieve all bookings of a user
+     *
+     * @param user The user whose bookings are searched
+     * @return All bookings of the user
+     */
+    default Collection<Booking> retrieveByUser(final String user) {
+        return retrieveMatching(bookingsOf(user));
+    }
+
+    /**
+     * Retrieve all bookings of all users on a day
+     *
+     * @param day The day of the searched bookings
+     * @return All bookings on the given day
+     */
+    default Collection<Booking> retrieveByDay(final LocalDate day) {
+        assertState(day != null);
+        return retrieveMatching(bookingsIn(day, day.plusDays(1L)));
+    }
+
+    /**
+     * Retrieve the bookings of a user on a day
+     *
+     * @param user The user whose bookings are searched
+     * @param day  The day of the searched bookings
+     * @return All bookings of the user on the given day
+     */
+    default Collection<Booking> retrieveByUserAndDay(final String user, final LocalDate day) {
+        return retrieveByUserAndRange(user, day, day.plusDays(1L));
+    }
+
+    /**
+     * Retrieve the bookings of a user in a range of days
+     *
+     * @param user          The user whose bookings are searched
+     * @param firstDay      The first day of the range
+     * @param firstDayAfter The first day after the range
+     * @return All bookings of the user with a booking day within the range
+     */
+    default Collection<Booking> retrieveByUserAndRange(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        return retrieveMatching(bookingsOf(user, firstDay, firstDayAfter));
+    }
+
+    /**
+     * Retrieve the daily rollups of the bookings of a user in a range of days
+     *
+     * @param user          The user whose bookings are aggregated
+     * @param firstDay      The first day of the range
+     * @param firstDayAfter The first day after the range
+     * @return The rollups of all days with bookings within the range, ordered by
+     *         day
+     */
+    default SortedMap<LocalDate, DayRollup> retrieveRollupsByUserAndRange(final String user,
+            final LocalDate firstDay, final LocalDate firstDayAfter) {
+        SortedMap<LocalDate, DayRollup> result = new TreeMap<>();
+        retrieveByUserAndRange(user, firstDay, firstDayAfter)
+                .stream()
+                .collect(groupingBy(Booking::getBookingday))
+                .forEach((day, bookings) -> result.put(day, DayRollup.of(day, bookings)));
+        return result;
+    }
+
+    /**
+     * Retrieve the minutes per activity of the bookings of a user in a range of
+     * days. Only finished bookings contribute minutes.
+     *
+     * @param user          The user whose bookings are aggregated
+     * @param firstDay      The first day of the range
+     * @param firstDayAfter The first day after the range
+     * @return The minutes per activity id of all activities booked within the
+     *         range
+     */
+    default MinuteCounter retrieveMinutesByUserAndRange(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        MinuteCounter result = new MinuteCounter();
+        retrieveRollupsByUserAndRange(user, firstDay, firstDayAfter).values().forEach(rollup -> {
+            for (int i = 0; i < rollup.getActivityCount(); i++) {
+                result.add(rollup.getActivityId(i), rollup.getActivityMinutes(i));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Retrieve the daily rollups of the bookings of all users in a range of days.
+     * The bookings are partitioned by user in a single pass over the store.
+     *
+     * @param firstDay      The first day of the range
+     * @param firstDayAfter The first day after the range
+     * @return The rollups of all days with bookings within the range, ordered by
+     *         day, per user with bookings in the range
+     */
+    default Map<String, SortedMap<LocalDate, DayRollup>> retrieveRollupsByRange(final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        Map<String, SortedMap<LocalDate, DayRollup>> result = new HashMap<>();
+        retrieveMatching(bookingsIn(firstDay, firstDayAfter))
+                .stream()
+                .collect(groupingBy(Booking::getUser, groupingBy(Booking::getBookingday)))
+                .forEach((user, days) -> {
+                    SortedMap<LocalDate, DayRollup> userRollups = new TreeMap<>();
+                    days.forEach((day, bookings) -> userRollups.put(day, DayRollup.of(day, bookings)));
+                    result.put(user, userRollups);
+                });
+        return result;
+    }
+
+    /**
+     * Provide the booking queries for an arbitrary booking object store
+     *
+     * @param store The store for bookings
+     * @return The store itself, if it already is a booking store, otherwise a
+     *         booking store that delegates to the given store
+     */
+    static BookingStore asBookingStore(final ObjectStore<Booking> store) {
+        if (store instanceof BookingStore) {
+            return (BookingStore) store;
+        }
+        return new BookingStore() {
+            @Override
+            public Collection<Booking> retrieveAll() {
+                return store.retrieveAll();
+            }
+
+            @Override
+            public Collection<Booking> retrieveMatching(final RecordFilter<Booking> filter) {
+                return store.retrieveMatching(filter);
+            }
+
+            @Override
+            public Optional<Booking> retrieveById(final Long id) {
+                return store.retrieveById(id);
+            }
+
+            @Override
+            public Booking store(final Booking object) {
+                return store.store(object);
+            }
+
+            @Override
+            public void deleteById(final Long id) {
+                store.deleteById(id);
+            }
+        };
+    }
+}
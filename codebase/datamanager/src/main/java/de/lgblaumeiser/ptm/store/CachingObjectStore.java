@@ -0,0 +1,164 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static java.util.Collections.unmodifiableCollection;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A write through cache around an object store. All objects of the underlying
+ * store are loaded once into memory, read requests are served from memory and
+ * write requests are passed to the underlying store before the memory is
+ * updated.
+ *
+ * The cache is reloaded, if the location of the underlying store changes or a
+ * backup is restored.
+ */
+public class CachingObjectStore<T> implements ObjectStore<T>, StoreBackupRestore<T> {
+    private final ObjectStore<T> objectStore;
+    private final StoreBackupRestore<T> backupRestore;
+    private final Function<T, Long> idGetter;
+    private final Supplier<?> storeLocation;
+
+    private final Map<Long, T> cache = new ConcurrentHashMap<>();
+    private volatile Object loadedLocation;
+
+    /**
+     * Create a cache around the given store
+     *
+     * @param store         The store that is cached, it is used for reading and
+     *                      writing objects and for backup and restore
+     * @param idGetter      Function to retrieve the id of a stored object
+     * @param storeLocation Supplies the location of the underlying store, if the
+     *                      location changes, the cache is reloaded
+     */
+    public <S extends ObjectStore<T> & StoreBackupRestore<T>> CachingObjectStore(final S store,
+            final Function<T, Long> idGetter, final Supplier<?> storeLocation) {
+        this.objectStore = store;
+        this.backupRestore = store;
+        this.idGetter = idGetter;
+        this.storeLocation = storeLocation;
+    }
+
+    @Override
+    public Collection<T> retrieveAll() {
+        ensureLoaded();
+        return unmodifiableCollection(new ArrayList<>(cache.values()));
+    }
+
+    @Override
+    public Optional<T> retrieveById(final Long id) {
+        assertState(id != null);
+        ensureLoaded();
+        return Optional.ofNullable(cache.get(id));
+    }
+
+    @Override
+    public T store(final T object) {
+        assertState(object != null);
+        ensureLoaded();
+        T stored = objectStore.store(object);
+        T previous = cache.put(idGetter.apply(stored), stored);
+        objectCached(Optional.ofNullable(previous), stored);
+        return stored;
+    }
+
+    @Override
+    public void deleteById(final Long id) {
+        assertState(id != null);
+        ensureLoaded();
+        objectStore.deleteById(id);
+        T previous = cache.remove(id);
+        if (previous != null) {
+            objectRemoved(previous);
+        }
+    }
+
+    @Override
+    public Map<String, String> backup() {
+        return backupRestore.backup();
+    }
+
+    @Override
+    public void restore(final Map<String, String> filenameToContentMap) {
+        try {
+            backupRestore.restore(filenameToContentMap);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void delete() {
+        try {
+            backupRestore.delete();
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * Called after an object has been put into the cache, either by loading the
+     * store or by a write. Subclasses use it to maintain additional structures.
+     *
+     * @param previous The object that was replaced by the write, if any
+     * @param current  The object now in the cache
+     */
+    protected void objectCached(final Optional<T> previous, final T current) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called after an object has been removed from the cache by a delete
+     *
+     * @param previous The removed object
+     */
+    protected void objectRemoved(final T previous) {
+        // Nothing to do by default
+    }
+
+    /**
+     * Called when the cache is emptied before it is reloaded
+     */
+    protected void cacheCleared() {
+        // Nothing to do by default
+    }
+
+    private void invalidate() {
+        loadedLocation = null;
+    }
+
+    /**
+     * Loads the cache, if it is not loaded yet or the location of the underlying
+     * store has changed since it has been loaded
+     */
+    protected void ensureLoaded() {
+        Object currentLocation = storeLocation.get();
+        if (!currentLocation.equals(loadedLocation)) {
+            synchronized (this) {
+                if (!currentLocation.equals(loadedLocation)) {
+                    cache.clear();
+                    cacheCleared();
+                    for (T object : objectStore.retrieveAll()) {
+                        cache.put(idGetter.apply(object), object);
+                        objectCached(Optional.empty(), object);
+                    }
+                    loadedLocation = currentLocation;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Supplier;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.util.MinuteCounter;
+
+/**
+ * A booking store that is safe for concurrent use, the booking queries are
+ * guarded like scans over all bookings
+ */
+public class ConcurrentBookingStore extends ConcurrentObjectStore<Booking> implements BookingStore {
+    private final BookingStore bookings;
+
+    /**
+     * @param bookings      The booking store to guard
+     * @param backupRestore The backup and restore functionality of the store
+     */
+    public ConcurrentBookingStore(final BookingStore bookings, final StoreBackupRestore<Booking> backupRestore) {
+        super(bookings, backupRestore, Booking::getId, DEFAULT_STRIPES);
+        this.bookings = bookings;
+    }
+
+    /**
+     * @param bookings      The booking store to guard
+     * @param backupRestore The backup and restore functionality of the store
+     * @param storeLocation Supplies the location of the guarded store
+     */
+    public ConcurrentBookingStore(final BookingStore bookings, final StoreBackupRestore<Booking> backupRestore,
+            final Supplier<?> storeLocation) {
+        super(bookings, backupRestore, Booking::getId, DEFAULT_STRIPES, storeLocation);
+        this.bookings = bookings;
+    }
+
+    @Override
+    public Collection<Booking> retrieveByUser(final String user) {
+        return scan(() -> bookings.retrieveByUser(user));
+    }
+
+    @Override
+    public Collection<Booking> retrieveByDay(final LocalDate day) {
+        return scan(() -> bookings.retrieveByDay(day));
+    }
+
+    @Override
+    public Collection<Booking> retrieveByUserAndDay(final String user, final LocalDate day) {
+        return scan(() -> bookings.retrieveByUserAndDay(user, day));
+    }
+
+    @Override
+    public Collection<Booking> retrieveByUserAndRange(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        return scan(() -> bookings.retrieveByUserAndRange(user, firstDay, firstDayAfter));
+    }
+
+    @Override
+    public SortedMap<LocalDate, DayRollup> retrieveRollupsByUserAndRange(final String user,
+            final LocalDate firstDay, final LocalDate firstDayAfter) {
+        return scan(() -> bookings.retrieveRollupsByUserAndRange(user, firstDay, firstDayAfter));
+    }
+
+    @Override
+    public MinuteCounter retrieveMinutesByUserAndRange(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        return scan(() -> bookings.retrieveMinutesByUserAndRange(user, firstDay, firstDayAfter));
+    }
+
+    @Override
+    public Map<String, SortedMap<LocalDate, DayRollup>> retrieveRollupsByRange(final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        return scan(() -> bookings.retrieveRollupsByRange(firstDay, firstDayAfter));
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A store that makes another store safe for concurrent use. Accesses to a single
+ * object are guarded by a read write lock chosen by the id of the object, so
+ * reads and writes of unrelated objects run in parallel. Scans over all objects
+ * and writes of single objects hold a store wide lock shared, so scans run in
+ * parallel to each other and to writes. Backup, restore and delete hold the
+ * store wide lock exclusively, so they see and replace a consistent state.
+ *
+ * The wrapped store must support concurrent access to different objects and
+ * scans concurrent to writes, new objects are stored without a per object lock,
+ * since the id is assigned by the wrapped store.
+ *
+ * Since all accesses pass this store, it informs the registered listeners about
+ * changes. The previous state of a changed object is only read, if listeners
+ * are registered.
+ */
+public class ConcurrentObjectStore<T> implements ObjectStore<T>, StoreBackupRestore<T>, ObservableStore<T> {
+    static final int DEFAULT_STRIPES = 64;
+
+    private final ObjectStore<T> store;
+    private final StoreBackupRestore<T> backupRestore;
+    private final Function<T, Long> idGetter;
+    private final ReadWriteLock scanLock = new ReentrantReadWriteLock();
+    private final ReadWriteLock[] stripes;
+    private final Supplier<?> storeLocation;
+    private final List<StoreListener<T>> listeners = new CopyOnWriteArrayList<>();
+    private Object knownLocation;
+
+    public <S extends ObjectStore<T> & StoreBackupRestore<T>> ConcurrentObjectStore(final S store,
+            final Function<T, Long> idGetter) {
+        this(store, idGetter, DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param store         The store to guard
+     * @param idGetter      Function to get the id of an object, -1 for new objects
+     * @param storeLocation Supplies the location of the guarded store, if it
+     *                      changes, the listeners are informed that the content
+     *                      has been replaced
+     */
+    public <S extends ObjectStore<T> & StoreBackupRestore<T>> ConcurrentObjectStore(final S store,
+            final Function<T, Long> idGetter, final Supplier<?> storeLocation) {
+        this(store, store, idGetter, DEFAULT_STRIPES, storeLocation);
+    }
+
+    /**
+     * @param store       The store to guard
+     * @param idGetter    Function to get the id of an object, -1 for new objects
+     * @param stripeCount The number of per object locks, rounded up to a power of
+     *                    two
+     */
+    public <S extends ObjectStore<T> & StoreBackupRestore<T>> ConcurrentObjectStore(final S store,
+            final Function<T, Long> idGetter, final int stripeCount) {
+        this(store, store, idGetter, stripeCount);
+    }
+
+    /**
+     * @param store         The store to guard
+     * @param backupRestore The backup and restore functionality of the store
+     * @param idGetter      Function to get the id of an object, -1 for new objects
+     * @param stripeCount   The number of per object locks, rounded up to a power
+     *                      of two
+     */
+    protected ConcurrentObjectStore(final ObjectStore<T> store, final StoreBackupRestore<T> backupRestore,
+            final Function<T, Long> idGetter, final int stripeCount) {
+        this(store, backupRestore, idGetter, stripeCount, () -> store);
+    }
+
+    /**
+     * @param store         The store to guard
+     * @param backupRestore The backup and restore functionality of the store
+     * @param idGetter      Function to get the id of an object, -1 for new objects
+     * @param stripeCount   The number of per object locks, rounded up to a power
+     *                      of two
+     * @param storeLocation Supplies the location of the guarded store
+     */
+    protected ConcurrentObjectStore(final ObjectStore<T> store, final StoreBackupRestore<T> backupRestore,
+            final Function<T, Long> idGetter, final int stripeCount, final Supplier<?> storeLocation) {
+        assertState(stripeCount > 0);
+        this.store = store;
+        this.backupRestore = backupRestore;
+        this.idGetter = idGetter;
+        this.storeLocation = storeLocation;
+        int size = Integer.highestOneBit(stripeCount);
+        stripes = new ReadWriteLock[size < stripeCount ? size << 1 : size];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    @Override
+    public Collection<T> retrieveAll() {
+        return scan(store::retrieveAll);
+    }
+
+    @Override
+    public Collection<T> retrieveMatching(final RecordFilter<T> filter) {
+        return scan(() -> store.retrieveMatching(filter));
+    }
+
+    @Override
+    public Optional<T> retrieveById(final Long id) {
+        assertState(id != null);
+        return withLock(stripe(id).readLock(), () -> store.retrieveById(id));
+    }
+
+    @Override
+    public T store(final T object) {
+        assertState(object != null);
+        Long id = idGetter.apply(object);
+        return withLock(scanLock.readLock(), () -> id == null || id < 0 ? storeAndNotify(Optional.empty(), object)
+                : withLock(stripe(id).writeLock(), () -> storeAndNotify(previousState(id), object)));
+    }
+
+    private T storeAndNotify(final Optional<T> previous, final T object) {
+        T stored = store.store(object);
+        listeners.forEach(l -> l.objectChanged(previous, Optional.of(stored)));
+        return stored;
+    }
+
+    @Override
+    public void deleteById(final Long id) {
+        assertState(id != null);
+        withLock(scanLock.readLock(), () -> withLock(stripe(id).writeLock(), () -> {
+            Optional<T> previous = previousState(id);
+            store.deleteById(id);
+            previous.ifPresent(p -> listeners.forEach(l -> l.objectChanged(previous, Optional.empty())));
+            return null;
+        }));
+    }
+
+    private Optional<T> previousState(final Long id) {
+        return listeners.isEmpty() ? Optional.empty() : store.retrieveById(id);
+    }
+
+    @Override
+    public Map<String, String> backup() {
+        return withLock(scanLock.writeLock(), backupRestore::backup);
+    }
+
+    @Override
+    public void restore(final Map<String, String> filenameToContentMap) {
+        exclusive(() -> {
+            try {
+                backupRestore.restore(filenameToContentMap);
+            } finally {
+                listeners.forEach(StoreListener::contentReplaced);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void delete() {
+        exclusive(() -> {
+            try {
+                backupRestore.delete();
+            } finally {
+                listeners.forEach(StoreListener::contentReplaced);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void addStoreListener(final StoreListener<T> listener) {
+        assertState(listener != null);
+        listeners.add(listener);
+    }
+
+    @Override
+    public synchronized void checkForReplacedContent() {
+        Object currentLocation = storeLocation.get();
+        if (!currentLocation.equals(knownLocation)) {
+            knownLocation = currentLocation;
+            listeners.forEach(StoreListener::contentReplaced);
+        }
+    }
+
+    /**
+     * Run an operation that reads all objects, it runs in parallel to other scans
+     * and to writes of single objects, but not while the content is replaced
+     *
+     * @param operation The reading operation
+     * @return The result of the operation
+     */
+    protected <R> R scan(final Supplier<R> operation) {
+        return withLock(scanLock.readLock(), operation);
+    }
+
+    private <R> R exclusive(final Supplier<R> operation) {
+        return withLock(scanLock.writeLock(), () -> lockStripes(0, operation));
+    }
+
+    private <R> R lockStripes(final int index, final Supplier<R> operation) {
+        if (index == stripes.length) {
+            return operation.get();
+        }
+        return withLock(stripes[index].writeLock(), () -> lockStripes(index + 1, operation));
+    }
+
+    private ReadWriteLock stripe(final Long id) {
+        int hash = id.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    private static <R> R withLock(final Lock lock, final Supplier<R> operation) {
+        lock.lock();
+        try {
+            return operation.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
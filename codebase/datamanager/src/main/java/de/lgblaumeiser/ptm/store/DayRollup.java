@@ -0,0 +1,203 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.toList;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.util.MinuteCounter;
+
+/**
+ * The aggregated bookings of a user on a day. Only bookings with an endtime
+ * contribute to the times, minutes and comments, unfinished bookings are only
+ * recorded as flag. Rollups are immutable, a change of the bookings of the day
+ * creates a new rollup.
+ *
+ * Minutes are kept as primitive ints. The booked activities are accessed by
+ * index in the order they are first booked on the day, so that analyses can
+ * iterate them without boxing or iterator allocation.
+ */
+public final class DayRollup {
+    private final LocalDate day;
+    private final LocalTime firstStart;
+    private final LocalTime lastEnd;
+    private final int totalMinutes;
+    private final MinuteCounter minutesByActivity;
+    private final List<List<String>> commentsByActivity;
+    private final boolean unfinishedBookings;
+    private final List<Long> overlappingBookings;
+
+    /**
+     * Aggregate the bookings of a day
+     *
+     * @param day      The day of the bookings
+     * @param bookings The bookings of a user on that day
+     * @return The rollup of the bookings
+     */
+    public static DayRollup of(final LocalDate day, final Collection<Booking> bookings) {
+        assertState(day != null);
+        return new DayRollup(day, bookings);
+    }
+
+    private DayRollup(final LocalDate day, final Collection<Booking> bookings) {
+        List<Booking> finished = sortedFinishedBookings(bookings);
+        MinuteCounter minutes = new MinuteCounter();
+        List<Set<String>> comments = new ArrayList<>();
+        int total = 0;
+        LocalTime end = null;
+        for (Booking booking : finished) {
+            int length = (int) MINUTES.between(booking.getStarttime(), booking.getEndtime());
+            total += length;
+            int index = minutes.add(booking.getActivity(), length);
+            if (index == comments.size()) {
+                comments.add(new LinkedHashSet<>());
+            }
+            if (stringHasContent(booking.getComment())) {
+                comments.get(index).add(booking.getComment());
+            }
+            if (end == null || booking.getEndtime().isAfter(end)) {
+                end = booking.getEndtime();
+            }
+        }
+        List<List<String>> commentLists = new ArrayList<>(comments.size());
+        comments.forEach(texts -> commentLists
+                .add(texts.isEmpty() ? emptyList() : unmodifiableList(new ArrayList<>(texts))));
+
+        this.day = day;
+        this.firstStart = finished.isEmpty() ? null : finished.get(0).getStarttime();
+        this.lastEnd = end;
+        this.totalMinutes = total;
+        this.minutesByActivity = minutes.trimmedCopy();
+        this.commentsByActivity = commentLists;
+        this.unfinishedBookings = finished.size() < bookings.size();
+        this.overlappingBookings = unmodifiableList(sweepForOverlaps(finished));
+    }
+
+    private static List<Booking> sortedFinishedBookings(final Collection<Booking> bookings) {
+        return bookings.stream()
+                .filter(Booking::hasEndtime)
+                .sorted(Comparator.comparing(Booking::getStarttime).thenComparing(Booking::getEndtime))
+                .collect(toList());
+    }
+
+    /**
+     * Sweep over the bookings sorted by starttime. A booking overlaps with an
+     * earlier one, if it starts before the latest endtime seen so far, and with a
+     * later one, if its successor starts before it ends. Bookings that only touch
+     * do not overlap.
+     */
+    private static List<Long> sweepForOverlaps(final List<Booking> sorted) {
+        List<Long> result = new ArrayList<>();
+        LocalTime latestEnd = LocalTime.MIN;
+        for (int i = 0; i < sorted.size(); i++) {
+            Booking current = sorted.get(i);
+            boolean overlapsEarlier = current.getStarttime().isBefore(latestEnd);
+            boolean overlapsLater = i + 1 < sorted.size()
+                    && sorted.get(i + 1).getStarttime().isBefore(current.getEndtime());
+            if (overlapsEarlier || overlapsLater) {
+                result.add(current.getId());
+            }
+            if (current.getEndtime().isAfter(latestEnd)) {
+                latestEnd = current.getEndtime();
+            }
+        }
+        return result;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    /**
+     * @return The earliest starttime of the finished bookings, null if there are
+     *         none
+     */
+    public LocalTime getFirstStart() {
+        return firstStart;
+    }
+
+    /**
+     * @return The latest endtime of the finished bookings, null if there are
+     *         none
+     */
+    public LocalTime getLastEnd() {
+        return lastEnd;
+    }
+
+    public int getTotalMinutes() {
+        return totalMinutes;
+    }
+
+    /**
+     * @return The number of activities booked on the day
+     */
+    public int getActivityCount() {
+        return minutesByActivity.size();
+    }
+
+    /**
+     * @param index The index of the activity, the activities are ordered by the
+     *              time they are first booked on the day
+     * @return The id of the activity
+     */
+    public long getActivityId(final int index) {
+        return minutesByActivity.idAt(index);
+    }
+
+    /**
+     * @param index The index of the activity
+     * @return The minutes booked on the activity
+     */
+    public int getActivityMinutes(final int index) {
+        return minutesByActivity.minutesAt(index);
+    }
+
+    /**
+     * @param index The index of the activity
+     * @return The distinct non empty comments of the bookings on the activity in
+     *         booking order
+     */
+    public List<String> getActivityComments(final int index) {
+        return commentsByActivity.get(index);
+    }
+
+    /**
+     * @param activity The id of an activity
+     * @return The minutes booked on the activity, 0 if it is not booked on the
+     *         day
+     */
+    public int getMinutesForActivity(final long activity) {
+        return minutesByActivity.minutesFor(activity);
+    }
+
+    public boolean hasUnfinishedBookings() {
+        return unfinishedBookings;
+    }
+
+    /**
+     * @return The ids of the finished bookings that overlap with another booking
+     *         of the day, ordered by starttime
+     */
+    public List<Long> getOverlappingBookings() {
+        return overlappingBookings;
+    }
+}
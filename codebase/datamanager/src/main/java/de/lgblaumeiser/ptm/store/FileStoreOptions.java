@@ -0,0 +1,149 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.store.filesystem.FilesystemAbstractionImpl.DEFAULT_SYNC_INTERVAL;
+import static de.lgblaumeiser.ptm.store.filesystem.FilesystemAbstractionImpl.DEFAULT_SYNC_POLICY;
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import de.lgblaumeiser.ptm.store.filesystem.SyncPolicy;
+
+/**
+ * The options of the stores created by the {@link FileStoreProvider}. The
+ * defaults are a cached store with one JSON file per object in a flat layout,
+ * synced in batches every 100 milliseconds.
+ */
+public class FileStoreOptions {
+    private static final String CACHE_PROPERTY = "ptm.filestore.cache";
+    private static final String ENGINE_PROPERTY = "ptm.filestore.engine";
+    private static final String LOG_ENGINE = "log";
+    private static final String LAYOUT_PROPERTY = "ptm.filestore.layout";
+    private static final String PARTITIONED_LAYOUT = "partitioned";
+    private static final String SYNC_PROPERTY = "ptm.filestore.sync";
+    private static final String SYNC_INTERVAL_PROPERTY = "ptm.filestore.sync.interval";
+    private static final String FORMAT_PROPERTY = "ptm.filestore.format";
+    private static final String BINARY_FORMAT = "binary";
+
+    private boolean cached = true;
+    private boolean logStructured;
+    private boolean partitioned;
+    private SyncPolicy syncPolicy = DEFAULT_SYNC_POLICY;
+    private long syncIntervalMillis = DEFAULT_SYNC_INTERVAL;
+    private boolean binary;
+
+    /**
+     * @return The default options
+     */
+    public static FileStoreOptions newFileStoreOptions() {
+        return new FileStoreOptions();
+    }
+
+    /**
+     * @return The options defined by the ptm.filestore system properties, the
+     *         defaults for properties not set
+     */
+    public static FileStoreOptions fromSystemProperties() {
+        FileStoreOptions options = newFileStoreOptions()
+                .setCached(!Boolean.FALSE.toString().equalsIgnoreCase(System.getProperty(CACHE_PROPERTY)))
+                .setLogStructured(LOG_ENGINE.equalsIgnoreCase(System.getProperty(ENGINE_PROPERTY)))
+                .setPartitioned(PARTITIONED_LAYOUT.equalsIgnoreCase(System.getProperty(LAYOUT_PROPERTY)))
+                .setBinary(BINARY_FORMAT.equalsIgnoreCase(System.getProperty(FORMAT_PROPERTY)));
+        String syncPolicy = System.getProperty(SYNC_PROPERTY);
+        if (syncPolicy != null) {
+            options.setSyncPolicy(SyncPolicy.fromName(syncPolicy));
+        }
+        return options.setSyncInterval(Long.getLong(SYNC_INTERVAL_PROPERTY, DEFAULT_SYNC_INTERVAL));
+    }
+
+    private FileStoreOptions() {
+        // Created by the factory methods
+    }
+
+    /**
+     * @param cached True, if the stores are wrapped by an in memory cache
+     * @return The options
+     */
+    public FileStoreOptions setCached(final boolean cached) {
+        this.cached = cached;
+        return this;
+    }
+
+    /**
+     * @param logStructured True, if the log structured store is used instead of
+     *                      one file per object
+     * @return The options
+     */
+    public FileStoreOptions setLogStructured(final boolean logStructured) {
+        this.logStructured = logStructured;
+        return this;
+    }
+
+    /**
+     * @param partitioned True, if the booking files are placed in folders per user
+     *                    and month, ignored for the log structured store
+     * @return The options
+     */
+    public FileStoreOptions setPartitioned(final boolean partitioned) {
+        this.partitioned = partitioned;
+        return this;
+    }
+
+    /**
+     * @param syncPolicy Defines when written files are forced to the disk
+     * @return The options
+     */
+    public FileStoreOptions setSyncPolicy(final SyncPolicy syncPolicy) {
+        assertState(syncPolicy != null);
+        this.syncPolicy = syncPolicy;
+        return this;
+    }
+
+    /**
+     * @param intervalMillis The interval of background syncs for the policy
+     *                       batched
+     * @return The options
+     */
+    public FileStoreOptions setSyncInterval(final long intervalMillis) {
+        this.syncIntervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * @param binary True, if the objects are written in the binary format, the log
+     *               structured store only reads such files when importing them
+     * @return The options
+     */
+    public FileStoreOptions setBinary(final boolean binary) {
+        this.binary = binary;
+        return this;
+    }
+
+    boolean isCached() {
+        return cached;
+    }
+
+    boolean isLogStructured() {
+        return logStructured;
+    }
+
+    boolean isPartitioned() {
+        return partitioned;
+    }
+
+    SyncPolicy getSyncPolicy() {
+        return syncPolicy;
+    }
+
+    long getSyncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    boolean isBinary() {
+        return binary;
+    }
+}
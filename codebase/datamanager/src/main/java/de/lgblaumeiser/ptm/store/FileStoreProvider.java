@@ -2,41 +2,132 @@
  * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
  *
  * Licensed under MIT license
- * 
+ *
  * SPDX-License-Identifier: MIT
  */
 package de.lgblaumeiser.ptm.store;
 
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
+
+import java.util.function.Supplier;
+
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
 import de.lgblaumeiser.ptm.datamanager.model.User;
+import de.lgblaumeiser.ptm.store.filesystem.BinarySerializer;
 import de.lgblaumeiser.ptm.store.filesystem.FileStore;
 import de.lgblaumeiser.ptm.store.filesystem.FilesystemAbstraction;
 import de.lgblaumeiser.ptm.store.filesystem.FilesystemAbstractionImpl;
+import de.lgblaumeiser.ptm.store.filesystem.JsonSerializer;
+import de.lgblaumeiser.ptm.store.filesystem.LogStore;
+import de.lgblaumeiser.ptm.store.filesystem.ObjectSerializer;
 
 /**
- * A provider for a FileStore instance for a dedicated model class
+ * A provider for the stores of the model classes, configured by system
+ * properties. ptm.filestore.cache set to false switches off the in memory cache
+ * with the booking indexes. ptm.filestore.engine set to log selects the log
+ * structured store. ptm.filestore.layout set to partitioned places the booking
+ * files in folders per user and month. ptm.filestore.sync selects always,
+ * batched or never syncing, ptm.filestore.sync.interval the interval of batched
+ * syncs in milliseconds. ptm.filestore.format set to binary selects the binary
+ * file format. The stores are guarded for concurrent use and inform listeners
+ * about changes.
  */
 public class FileStoreProvider {
-    private FilesystemAbstraction filesystemAbstraction = new FilesystemAbstractionImpl();
+    private ObjectStore<Activity> activityStore;
+    private BookingStore bookingStore;
+    private ObjectStore<User> userStore;
+
+    private ZipBackupRestore zipBackupRestore;
+
+    public FileStoreProvider() {
+        this(FileStoreOptions.fromSystemProperties());
+    }
 
-    private FileStore<Activity> activityFileStore = new FileStore<>(filesystemAbstraction, () -> Activity.class);
-    private FileStore<Booking> bookingFileStore = new FileStore<>(filesystemAbstraction, () -> Booking.class);
-    private FileStore<User> userFileStore = new FileStore<User>(filesystemAbstraction, () -> User.class);
+    /**
+     * @param options The options of the stores
+     */
+    public FileStoreProvider(final FileStoreOptions options) {
+        boolean binary = options.isBinary();
+        ObjectSerializer<Activity> activitySerializer = binary ? BinarySerializer.forActivities()
+                : new JsonSerializer<>(() -> Activity.class);
+        ObjectSerializer<Booking> bookingSerializer = binary ? BinarySerializer.forBookings()
+                : new JsonSerializer<>(() -> Booking.class);
+        ObjectSerializer<User> userSerializer = binary ? BinarySerializer.forUsers()
+                : new JsonSerializer<>(() -> User.class);
+        FilesystemAbstraction filesystemAbstraction = new FilesystemAbstractionImpl(options.getSyncPolicy(),
+                options.getSyncIntervalMillis());
+        boolean cached = options.isCached();
+        if (options.isLogStructured()) {
+            LogStore<Activity> activityLogStore = new LogStore<>(filesystemAbstraction, () -> Activity.class,
+                    activitySerializer);
+            LogStore<Booking> bookingLogStore = new LogStore<>(filesystemAbstraction, () -> Booking.class,
+                    bookingSerializer);
+            LogStore<User> userLogStore = new LogStore<>(filesystemAbstraction, () -> User.class, userSerializer);
+            setupStores(cached, activityLogStore, activityLogStore::getStore, bookingLogStore,
+                    bookingLogStore::getStore, userLogStore, userLogStore::getStore);
+        } else {
+            FileStore<Activity> activityFileStore = new FileStore<>(filesystemAbstraction, () -> Activity.class,
+                    activitySerializer);
+            FileStore<Booking> bookingFileStore = options.isPartitioned()
+                    ? new FileStore<>(filesystemAbstraction, () -> Booking.class, Booking::getUser,
+                            Booking::getBookingday, bookingSerializer)
+                    : new FileStore<>(filesystemAbstraction, () -> Booking.class, bookingSerializer);
+            FileStore<User> userFileStore = new FileStore<>(filesystemAbstraction, () -> User.class,
+                    userSerializer);
+            setupStores(cached, activityFileStore, activityFileStore::getStore, bookingFileStore,
+                    bookingFileStore::getStore, userFileStore, userFileStore::getStore);
+        }
+    }
+
+    private <A extends ObjectStore<Activity> & StoreBackupRestore<Activity>,
+            B extends ObjectStore<Booking> & StoreBackupRestore<Booking>,
+            U extends ObjectStore<User> & StoreBackupRestore<User>> void setupStores(final boolean cached,
+            final A activities, final Supplier<?> activityLocation, final B bookings,
+            final Supplier<?> bookingLocation, final U users, final Supplier<?> userLocation) {
+        if (cached) {
+            CachingObjectStore<Activity> cachedActivities = new CachingObjectStore<>(activities, Activity::getId,
+                    activityLocation);
+            IndexedBookingStore cachedBookings = new IndexedBookingStore(bookings, bookingLocation);
+            CachingObjectStore<User> cachedUsers = new CachingObjectStore<>(users, User::getId, userLocation);
+            wrapConcurrent(cachedActivities, activityLocation, cachedBookings, cachedBookings, bookingLocation,
+                    cachedUsers, userLocation);
+        } else {
+            wrapConcurrent(activities, activityLocation, asBookingStore(bookings), bookings, bookingLocation, users,
+                    userLocation);
+        }
+    }
+
+    private <A extends ObjectStore<Activity> & StoreBackupRestore<Activity>,
+            U extends ObjectStore<User> & StoreBackupRestore<User>> void wrapConcurrent(final A activities,
+            final Supplier<?> activityLocation, final BookingStore bookings,
+            final StoreBackupRestore<Booking> bookingBackupRestore, final Supplier<?> bookingLocation,
+            final U users, final Supplier<?> userLocation) {
+        ConcurrentObjectStore<Activity> concurrentActivities = new ConcurrentObjectStore<>(activities,
+                Activity::getId, activityLocation);
+        ConcurrentBookingStore concurrentBookings = new ConcurrentBookingStore(bookings, bookingBackupRestore,
+                bookingLocation);
+        ConcurrentObjectStore<User> concurrentUsers = new ConcurrentObjectStore<>(users, User::getId,
+                userLocation);
+        activityStore = concurrentActivities;
+        bookingStore = concurrentBookings;
+        userStore = concurrentUsers;
+        zipBackupRestore = new ZipBackupRestore(concurrentActivities, concurrentBookings, concurrentUsers);
+    }
 
-    public FileStore<Activity> getActivityFileStore() {
-        return activityFileStore;
+    public ObjectStore<Activity> getActivityFileStore() {
+        return activityStore;
     }
 
-    public FileStore<Booking> getBookingFileStore() {
-        return bookingFileStore;
+    public BookingStore getBookingFileStore() {
+        return bookingStore;
     }
 
-    public FileStore<User> getUserFileStore() {
-        return userFileStore;
+    public ObjectStore<User> getUserFileStore() {
+        return userStore;
     }
 
     public ZipBackupRestore getZipBackupRestore() {
-        return new ZipBackupRestore(activityFileStore, bookingFileStore, userFileStore);
+        return zipBackupRestore;
     }
 }
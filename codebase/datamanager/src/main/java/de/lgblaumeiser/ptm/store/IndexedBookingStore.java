@@ -0,0 +1,204 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.util.MinuteCounter;
+
+/**
+ * A cached booking store that maintains indexes by user and booking day. The
+ * queries cost time proportional to the number of bookings found, not to the
+ * number of bookings in the store. In addition the rollups per user and day are
+ * kept up to date with every write, so the rollup queries cost time
+ * proportional to the number of days found. The minutes per activity of the
+ * rollups are indexed in buckets of aligned blocks of days, so the minutes of
+ * any range of days are combined from O(log days) buckets. All indexes are
+ * rebuilt when the bookings are loaded.
+ */
+public class IndexedBookingStore extends CachingObjectStore<Booking> implements BookingStore {
+    private final Map<String, NavigableMap<LocalDate, Map<Long, Booking>>> userDayIndex = new ConcurrentHashMap<>();
+    private final Map<LocalDate, Map<Long, Booking>> dayIndex = new ConcurrentHashMap<>();
+    private final Map<String, NavigableMap<LocalDate, DayRollup>> rollups = new ConcurrentHashMap<>();
+    private final Map<String, ActivityMinuteIndex> minuteIndexes = new ConcurrentHashMap<>();
+
+    /**
+     * Create an indexed cache around the given store
+     *
+     * @param store         The store that is cached
+     * @param storeLocation Supplies the location of the underlying store, if the
+     *                      location changes, the cache and indexes are reloaded
+     */
+    public <S extends ObjectStore<Booking> & StoreBackupRestore<Booking>> IndexedBookingStore(final S store,
+            final Supplier<?> storeLocation) {
+        super(store, Booking::getId, storeLocation);
+    }
+
+    @Override
+    public Collection<Booking> retrieveByUser(final String user) {
+        assertState(user != null);
+        ensureLoaded();
+        Collection<Booking> result = new ArrayList<>();
+        Optional.ofNullable(userDayIndex.get(user))
+                .ifPresent(days -> days.values().forEach(b -> result.addAll(b.values())));
+        return result;
+    }
+
+    @Override
+    public Collection<Booking> retrieveByDay(final LocalDate day) {
+        assertState(day != null);
+        ensureLoaded();
+        return Optional.ofNullable(dayIndex.get(day))
+                .<Collection<Booking>>map(b -> new ArrayList<>(b.values()))
+                .orElseGet(ArrayList::new);
+    }
+
+    @Override
+    public Collection<Booking> retrieveByUserAndRange(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        assertState(user != null);
+        assertState(firstDay != null && firstDayAfter != null);
+        ensureLoaded();
+        Collection<Booking> result = new ArrayList<>();
+        if (firstDay.isBefore(firstDayAfter)) {
+            Optional.ofNullable(userDayIndex.get(user))
+                    .ifPresent(days -> days.subMap(firstDay, true, firstDayAfter, false)
+                            .values()
+                            .forEach(b -> result.addAll(b.values())));
+        }
+        return result;
+    }
+
+    @Override
+    public SortedMap<LocalDate, DayRollup> retrieveRollupsByUserAndRange(final String user,
+            final LocalDate firstDay, final LocalDate firstDayAfter) {
+        assertState(user != null);
+        assertState(firstDay != null && firstDayAfter != null);
+        ensureLoaded();
+        SortedMap<LocalDate, DayRollup> result = new TreeMap<>();
+        if (firstDay.isBefore(firstDayAfter)) {
+            Optional.ofNullable(rollups.get(user))
+                    .ifPresent(days -> result.putAll(days.subMap(firstDay, true, firstDayAfter, false)));
+        }
+        return result;
+    }
+
+    @Override
+    public MinuteCounter retrieveMinutesByUserAndRange(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        assertState(user != null);
+        assertState(firstDay != null && firstDayAfter != null);
+        ensureLoaded();
+        return Optional.ofNullable(minuteIndexes.get(user))
+                .map(index -> index.minutes(firstDay, firstDayAfter))
+                .orElseGet(MinuteCounter::new);
+    }
+
+    @Override
+    public Map<String, SortedMap<LocalDate, DayRollup>> retrieveRollupsByRange(final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        assertState(firstDay != null && firstDayAfter != null);
+        ensureLoaded();
+        Map<String, SortedMap<LocalDate, DayRollup>> result = new HashMap<>();
+        if (firstDay.isBefore(firstDayAfter)) {
+            rollups.forEach((user, days) -> {
+                SortedMap<LocalDate, DayRollup> userRollups = days.subMap(firstDay, true, firstDayAfter, false);
+                if (!userRollups.isEmpty()) {
+                    result.put(user, new TreeMap<>(userRollups));
+                }
+            });
+        }
+        return result;
+    }
+
+    @Override
+    protected void objectCached(final Optional<Booking> previous, final Booking current) {
+        previous.ifPresent(this::removeFromIndexes);
+        userDayIndex.compute(current.getUser(), (user, days) -> {
+            NavigableMap<LocalDate, Map<Long, Booking>> userDays = days != null ? days
+                    : new ConcurrentSkipListMap<>();
+            userDays.compute(current.getBookingday(), (day, bookings) -> addToBucket(bookings, current));
+            return userDays;
+        });
+        dayIndex.compute(current.getBookingday(), (day, bookings) -> addToBucket(bookings, current));
+        refreshRollup(current.getUser(), current.getBookingday());
+    }
+
+    @Override
+    protected void objectRemoved(final Booking previous) {
+        removeFromIndexes(previous);
+    }
+
+    @Override
+    protected void cacheCleared() {
+        userDayIndex.clear();
+        dayIndex.clear();
+        rollups.clear();
+        minuteIndexes.clear();
+    }
+
+    private void removeFromIndexes(final Booking booking) {
+        userDayIndex.computeIfPresent(booking.getUser(), (user, days) -> {
+            days.computeIfPresent(booking.getBookingday(), (day, bookings) -> removeFromBucket(bookings, booking));
+            return days.isEmpty() ? null : days;
+        });
+        dayIndex.computeIfPresent(booking.getBookingday(), (day, bookings) -> removeFromBucket(bookings, booking));
+        refreshRollup(booking.getUser(), booking.getBookingday());
+    }
+
+    /**
+     * Recompute the rollup of a day from the index and replace it in the minute
+     * index of the user. The computation runs within the lock of the user entry,
+     * so concurrent writes on the same day cannot leave an outdated rollup
+     * behind and the changes of the minute index of a user do not overlap.
+     */
+    private void refreshRollup(final String user, final LocalDate day) {
+        rollups.compute(user, (u, days) -> {
+            NavigableMap<LocalDate, DayRollup> userDays = days != null ? days : new ConcurrentSkipListMap<>();
+            Map<Long, Booking> bookings = Optional.ofNullable(userDayIndex.get(user))
+                    .map(d -> d.get(day))
+                    .orElse(null);
+            DayRollup previous = bookings == null ? userDays.remove(day)
+                    : userDays.put(day, DayRollup.of(day, new ArrayList<>(bookings.values())));
+            if (previous != null || bookings != null) {
+                ActivityMinuteIndex minuteIndex = minuteIndexes.computeIfAbsent(user,
+                        i -> new ActivityMinuteIndex());
+                minuteIndex.replace(previous, userDays.get(day));
+                if (minuteIndex.isEmpty()) {
+                    minuteIndexes.remove(user);
+                }
+            }
+            return userDays.isEmpty() ? null : userDays;
+        });
+    }
+
+    private Map<Long, Booking> addToBucket(final Map<Long, Booking> bucket, final Booking booking) {
+        Map<Long, Booking> result = bucket != null ? bucket : new ConcurrentHashMap<>();
+        result.put(booking.getId(), booking);
+        return result;
+    }
+
+    private Map<Long, Booking> removeFromBucket(final Map<Long, Booking> bucket, final Booking booking) {
+        bucket.remove(booking.getId());
+        return bucket.isEmpty() ? null : bucket;
+    }
+}
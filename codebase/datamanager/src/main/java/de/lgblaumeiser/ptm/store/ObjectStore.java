@@ -7,6 +7,9 @@
  */
 package de.lgblaumeiser.ptm.store;
 
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static java.util.stream.Collectors.toList;
+
 import java.util.Collection;
 import java.util.Optional;
 
@@ -21,6 +24,22 @@ public interface ObjectStore<T> {
      */
     Collection<T> retrieveAll();
 
+    /**
+     * Retrieve the objects matching a filter on user and day. The default
+     * implementation filters all objects, stores that can check the filter on the
+     * stored records only create the matching objects.
+     *
+     * @param filter The filter on user and day of the searched objects
+     * @return All objects in the store that match the filter
+     */
+    default Collection<T> retrieveMatching(final RecordFilter<T> filter) {
+        assertState(filter != null);
+        return retrieveAll()
+                .stream()
+                .filter(filter::matches)
+                .collect(toList());
+    }
+
     /**
      * Retrieve object by the id
      * 
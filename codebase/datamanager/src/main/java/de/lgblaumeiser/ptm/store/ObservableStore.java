@@ -0,0 +1,26 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+/**
+ * A store that informs listeners about changes of its content
+ */
+public interface ObservableStore<T> {
+    /**
+     * @param listener Listener that is informed about all subsequent changes
+     */
+    void addStoreListener(StoreListener<T> listener);
+
+    /**
+     * Check, whether the content has been replaced without a write through the
+     * store, i.e. the location of the store has changed. If so, the listeners
+     * are informed. Users of data derived from the store content call this before
+     * reusing the data.
+     */
+    void checkForReplacedContent();
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.time.LocalDate;
+import java.util.function.Function;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+
+/**
+ * A filter on the user and the day of stored objects. Stores that are able to
+ * read these fields of a stored record without creating the object check the
+ * filter first and only create the matching objects, other stores filter the
+ * retrieved objects.
+ */
+public final class RecordFilter<T> {
+    private static final String BOOKING_USER_FIELD = "user";
+    private static final String BOOKING_DAY_FIELD = "bookingday";
+
+    private final String userField;
+    private final Function<T, String> userGetter;
+    private final String dayField;
+    private final Function<T, LocalDate> dayGetter;
+    private final String user;
+    private final LocalDate firstDay;
+    private final LocalDate firstDayAfter;
+
+    private RecordFilter(final String userField, final Function<T, String> userGetter, final String dayField,
+            final Function<T, LocalDate> dayGetter, final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        assertState((firstDay == null) == (firstDayAfter == null));
+        this.userField = userField;
+        this.userGetter = userGetter;
+        this.dayField = dayField;
+        this.dayGetter = dayGetter;
+        this.user = user;
+        this.firstDay = firstDay;
+        this.firstDayAfter = firstDayAfter;
+    }
+
+    /**
+     * @param user The user whose bookings are searched
+     * @return A filter for all bookings of the user
+     */
+    public static RecordFilter<Booking> bookingsOf(final String user) {
+        assertState(user != null);
+        return bookingFilter(user, null, null);
+    }
+
+    /**
+     * @param user          The user whose bookings are searched
+     * @param firstDay      The first day of the range
+     * @param firstDayAfter The first day after the range
+     * @return A filter for the bookings of the user with a booking day within the
+     *         range
+     */
+    public static RecordFilter<Booking> bookingsOf(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        assertState(user != null);
+        assertState(firstDay != null && firstDayAfter != null);
+        return bookingFilter(user, firstDay, firstDayAfter);
+    }
+
+    /**
+     * @param firstDay      The first day of the range
+     * @param firstDayAfter The first day after the range
+     * @return A filter for the bookings of all users with a booking day within
+     *         the range
+     */
+    public static RecordFilter<Booking> bookingsIn(final LocalDate firstDay, final LocalDate firstDayAfter) {
+        assertState(firstDay != null && firstDayAfter != null);
+        return bookingFilter(null, firstDay, firstDayAfter);
+    }
+
+    private static RecordFilter<Booking> bookingFilter(final String user, final LocalDate firstDay,
+            final LocalDate firstDayAfter) {
+        return new RecordFilter<>(BOOKING_USER_FIELD, Booking::getUser, BOOKING_DAY_FIELD, Booking::getBookingday,
+                user, firstDay, firstDayAfter);
+    }
+
+    /**
+     * @return The name of the field of a stored record that contains the user
+     */
+    public String getUserField() {
+        return userField;
+    }
+
+    /**
+     * @return The name of the field of a stored record that contains the day
+     */
+    public String getDayField() {
+        return dayField;
+    }
+
+    /**
+     * @param object A stored object
+     * @return True, if the object matches the filter
+     */
+    public boolean matches(final T object) {
+        return matchesUser(userGetter.apply(object)) && matchesDay(dayGetter.apply(object));
+    }
+
+    /**
+     * @param recordUser The user of a stored record, null if the record has none
+     * @return True, if a record with this user may match the filter
+     */
+    public boolean matchesUser(final String recordUser) {
+        return user == null || user.equals(recordUser);
+    }
+
+    /**
+     * @param recordDay The day of a stored record, null if the record has none
+     * @return True, if a record with this day may match the filter
+     */
+    public boolean matchesDay(final LocalDate recordDay) {
+        return firstDay == null
+                || recordDay != null && !recordDay.isBefore(firstDay) && recordDay.isBefore(firstDayAfter);
+    }
+
+    /**
+     * @param rangeFirstDay      The first day of a range of days
+     * @param rangeFirstDayAfter The first day after the range
+     * @return True, if records with a day within the range may match the filter
+     */
+    public boolean overlapsDays(final LocalDate rangeFirstDay, final LocalDate rangeFirstDayAfter) {
+        return firstDay == null || rangeFirstDay.isBefore(firstDayAfter) && firstDay.isBefore(rangeFirstDayAfter);
+    }
+}
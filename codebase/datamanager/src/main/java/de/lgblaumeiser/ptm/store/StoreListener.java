@@ -0,0 +1,29 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import java.util.Optional;
+
+/**
+ * Listener that is informed about changes of the content of an object store
+ */
+public interface StoreListener<T> {
+    /**
+     * Called after a single object has been written or deleted
+     *
+     * @param previous The object before the change, empty for new objects
+     * @param current  The object after the change, empty for deleted objects
+     */
+    void objectChanged(Optional<T> previous, Optional<T> current);
+
+    /**
+     * Called after the whole content of the store has been replaced, e.g. by a
+     * restore or a change of the store location
+     */
+    void contentReplaced();
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.store.filesystem.StoreSupport.getOrAssignId;
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.function.Supplier;
+
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.datamanager.model.User;
+import de.lgblaumeiser.ptm.store.RecordFilter;
+
+/**
+ * Stores the objects in a compact binary format. The content starts with a
+ * version byte followed by the fields in a fixed order. Numbers are written as
+ * variable length integers with seven bits per byte, days as epoch day and
+ * times as minute of the day, strings as their length followed by the UTF-8
+ * encoded characters. A string length or an optional time is written increased
+ * by one, zero marks a missing value.
+ *
+ * The version bytes are control characters that never start a JSON document, so
+ * files written as JSON are read as well and an existing store is converted
+ * file by file when the objects are stored again. Objects that cannot be
+ * represented in the binary format, i.e. bookings with times not on a full
+ * minute, are written as JSON.
+ */
+public abstract class BinarySerializer<T> implements ObjectSerializer<T> {
+    static final byte VERSION = 1;
+
+    private final JsonSerializer<T> jsonSerializer;
+
+    BinarySerializer(final Supplier<Class<T>> typeFunction) {
+        this.jsonSerializer = new JsonSerializer<>(typeFunction);
+    }
+
+    /**
+     * @return A binary serializer for bookings, user and day are written first, so
+     *         filters are checked without reading the rest of the content
+     */
+    public static ObjectSerializer<Booking> forBookings() {
+        return new BookingSerializer();
+    }
+
+    /**
+     * @return A binary serializer for activities
+     */
+    public static ObjectSerializer<Activity> forActivities() {
+        return new ActivitySerializer();
+    }
+
+    /**
+     * @return A binary serializer for users
+     */
+    public static ObjectSerializer<User> forUsers() {
+        return new UserSerializer();
+    }
+
+    /**
+     * @param object The object to write
+     * @return True, if the object can be written in the binary format
+     */
+    boolean representable(final T object) {
+        return true;
+    }
+
+    abstract void write(T object, Output out);
+
+    abstract T read(Input in);
+
+    boolean readMatches(final Input in, final RecordFilter<T> filter) {
+        return filter.matches(read(in));
+    }
+
+    @Override
+    public byte[] serialize(final T object) {
+        assertState(object != null);
+        if (!representable(object)) {
+            return jsonSerializer.serialize(object);
+        }
+        Output out = new Output();
+        out.bytes.write(VERSION);
+        write(object, out);
+        return out.bytes.toByteArray();
+    }
+
+    @Override
+    public T deserialize(final byte[] content, final int offset, final int length) {
+        if (isBinary(content, offset, length)) {
+            return read(new Input(content, offset + 1, offset + length));
+        }
+        return jsonSerializer.deserialize(content, offset, length);
+    }
+
+    @Override
+    public boolean matches(final byte[] content, final int offset, final int length,
+            final RecordFilter<T> filter) {
+        if (isBinary(content, offset, length)) {
+            return readMatches(new Input(content, offset + 1, offset + length), filter);
+        }
+        return jsonSerializer.matches(content, offset, length, filter);
+    }
+
+    @Override
+    public String toBackup(final byte[] content, final int offset, final int length) {
+        if (isBinary(content, offset, length)) {
+            return new String(jsonSerializer.serialize(deserialize(content, offset, length)), UTF_8);
+        }
+        return ObjectSerializer.super.toBackup(content, offset, length);
+    }
+
+    @Override
+    public byte[] fromBackup(final String backup) {
+        byte[] content = backup.getBytes(UTF_8);
+        return serialize(deserialize(content, 0, content.length));
+    }
+
+    private static boolean isBinary(final byte[] content, final int offset, final int length) {
+        assertState(length > 0);
+        byte first = content[offset];
+        if (first == VERSION) {
+            return true;
+        }
+        // Other control characters than whitespace are versions not known yet
+        assertState(first >= ' ' || first == '\t' || first == '\n' || first == '\r');
+        return false;
+    }
+
+    private static void withId(final Object object, final long id) {
+        getOrAssignId(object, () -> id);
+    }
+
+    /**
+     * Writes the fields of an object
+     */
+    static final class Output {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+
+        void writeNumber(final long value) {
+            long remaining = value;
+            while ((remaining & ~0x7fL) != 0) {
+                bytes.write((int) (remaining & 0x7f) | 0x80);
+                remaining >>>= 7;
+            }
+            bytes.write((int) remaining);
+        }
+
+        void writeSignedNumber(final long value) {
+            writeNumber(value << 1 ^ value >> 63);
+        }
+
+        void writeDay(final LocalDate day) {
+            writeSignedNumber(day.toEpochDay());
+        }
+
+        void writeTime(final LocalTime time) {
+            writeNumber(time == null ? 0 : minuteOf(time) + 1);
+        }
+
+        void writeString(final String value) {
+            if (value == null) {
+                writeNumber(0);
+                return;
+            }
+            byte[] encoded = value.getBytes(UTF_8);
+            writeNumber(encoded.length + 1L);
+            bytes.write(encoded, 0, encoded.length);
+        }
+
+        void writeFlag(final boolean value) {
+            bytes.write(value ? 1 : 0);
+        }
+    }
+
+    /**
+     * Reads the fields of an object, reading beyond the end of the content fails
+     */
+    static final class Input {
+        private final byte[] content;
+        private final int end;
+        private int position;
+
+        Input(final byte[] content, final int position, final int end) {
+            this.content = content;
+            this.position = position;
+            this.end = end;
+        }
+
+        private byte next() {
+            assertState(position < end);
+            return content[position++];
+        }
+
+        long readNumber() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = next();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Number too long");
+        }
+
+        long readSignedNumber() {
+            long value = readNumber();
+            return value >>> 1 ^ -(value & 1);
+        }
+
+        LocalDate readDay() {
+            return LocalDate.ofEpochDay(readSignedNumber());
+        }
+
+        LocalTime readTime() {
+            long value = readNumber();
+            assertState(value >= 0 && value <= 24 * 60);
+            return value == 0 ? null : LocalTime.of((int) (value - 1) / 60, (int) (value - 1) % 60);
+        }
+
+        String readString() {
+            long length = readNumber();
+            if (length == 0) {
+                return null;
+            }
+            assertState(length > 0 && length - 1 <= end - position);
+            String value = new String(content, position, (int) length - 1, UTF_8);
+            position += length - 1;
+            return value;
+        }
+
+        boolean readFlag() {
+            byte value = next();
+            assertState(value == 0 || value == 1);
+            return value == 1;
+        }
+    }
+
+    private static int minuteOf(final LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static boolean onFullMinute(final LocalTime time) {
+        return time == null || time.getSecond() == 0 && time.getNano() == 0;
+    }
+
+    private static class BookingSerializer extends BinarySerializer<Booking> {
+        BookingSerializer() {
+            super(() -> Booking.class);
+        }
+
+        @Override
+        boolean representable(final Booking booking) {
+            return onFullMinute(booking.getStarttime()) && onFullMinute(booking.getEndtime());
+        }
+
+        @Override
+        void write(final Booking booking, final Output out) {
+            out.writeString(booking.getUser());
+            out.writeDay(booking.getBookingday());
+            out.writeNumber(booking.getId());
+            out.writeTime(booking.getStarttime());
+            out.writeTime(booking.getEndtime());
+            out.writeNumber(booking.getActivity());
+            out.writeString(booking.getComment());
+        }
+
+        @Override
+        Booking read(final Input in) {
+            String user = in.readString();
+            LocalDate day = in.readDay();
+            long id = in.readNumber();
+            Booking booking = Booking.newBooking()
+                    .setUser(user)
+                    .setBookingday(day)
+                    .setStarttime(in.readTime())
+                    .setEndtime(in.readTime())
+                    .setActivity(in.readNumber())
+                    .setComment(in.readString())
+                    .build();
+            withId(booking, id);
+            return booking;
+        }
+
+        @Override
+        boolean readMatches(final Input in, final RecordFilter<Booking> filter) {
+            return filter.matchesUser(in.readString()) && filter.matchesDay(in.readDay());
+        }
+    }
+
+    private static class ActivitySerializer extends BinarySerializer<Activity> {
+        ActivitySerializer() {
+            super(() -> Activity.class);
+        }
+
+        @Override
+        void write(final Activity activity, final Output out) {
+            out.writeNumber(activity.getId());
+            out.writeString(activity.getUser());
+            out.writeString(activity.getProjectName());
+            out.writeString(activity.getActivityName());
+            out.writeString(activity.getProjectId());
+            out.writeString(activity.getActivityId());
+            out.writeFlag(activity.isHidden());
+        }
+
+        @Override
+        Activity read(final Input in) {
+            long id = in.readNumber();
+            Activity activity = Activity.newActivity()
+                    .setUser(in.readString())
+                    .setProjectName(in.readString())
+                    .setActivityName(in.readString())
+                    .setProjectId(in.readString())
+                    .setActivityId(in.readString())
+                    .setHidden(in.readFlag())
+                    .build();
+            withId(activity, id);
+            return activity;
+        }
+    }
+
+    private static class UserSerializer extends BinarySerializer<User> {
+        UserSerializer() {
+            super(() -> User.class);
+        }
+
+        @Override
+        void write(final User user, final Output out) {
+            out.writeNumber(user.getId());
+            out.writeString(user.getUsername());
+            out.writeString(user.getPassword());
+            out.writeString(user.getEmail());
+            out.writeString(user.getQuestion());
+            out.writeString(user.getAnswer());
+            out.writeFlag(user.isAdmin());
+        }
+
+        @Override
+        User read(final Input in) {
+            long id = in.readNumber();
+            User user = User.newUser()
+                    .setUsername(in.readString())
+                    .setPassword(in.readString())
+                    .setEmail(in.readString())
+                    .setQuestion(in.readString())
+                    .setAnswer(in.readString())
+                    .setAdmin(in.readFlag())
+                    .build();
+            withId(user, id);
+            return user;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import de.lgblaumeiser.ptm.store.RecordFilter;
+
+/**
+ * Decides where the file of a stored object is placed in the store folder
+ */
+interface FileLayout<T> {
+    /**
+     * @param id The id of a stored object
+     * @return The file that contains the object, if the object is known
+     */
+    Optional<File> locate(Long id);
+
+    /**
+     * @param id     The id of the object to store
+     * @param object Supplies the object, only called if the place of the file
+     *               depends on the content
+     * @return The file to which the object is written
+     */
+    File target(Long id, Supplier<T> object);
+
+    /**
+     * Inform the layout that an object has been written to a file
+     *
+     * @param id   The id of the stored object
+     * @param file The file the object has been written to
+     */
+    void stored(Long id, File file);
+
+    /**
+     * Inform the layout that the file of an object has been deleted
+     *
+     * @param id The id of the deleted object
+     */
+    void removed(Long id);
+
+    /**
+     * Forget everything known about the files, used if the content of the store
+     * is replaced
+     */
+    void reset();
+
+    /**
+     * @return The files of all stored objects
+     */
+    Collection<File> allFiles();
+
+    /**
+     * @param filter A filter on user and day of the objects
+     * @return The files that may contain objects matching the filter, a superset
+     *         of the matching files
+     */
+    Collection<File> candidates(RecordFilter<T> filter);
+}
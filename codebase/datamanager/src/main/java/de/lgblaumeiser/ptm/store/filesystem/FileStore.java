@@ -7,79 +7,155 @@
  */
 package de.lgblaumeiser.ptm.store.filesystem;
 
+import static de.lgblaumeiser.ptm.store.filesystem.StoreSupport.getOrAssignId;
+import static de.lgblaumeiser.ptm.store.filesystem.StoreSupport.getStoreFolder;
 import static de.lgblaumeiser.ptm.util.Utils.assertState;
-import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
 import static java.util.stream.Collectors.toList;
 
 import java.io.File;
-import java.io.IOException;
-import java.lang.reflect.Field;
+import java.time.LocalDate;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 import org.apache.commons.io.FilenameUtils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
-
 import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.store.RecordFilter;
 import de.lgblaumeiser.ptm.store.StoreBackupRestore;
 
 /**
- * A file base store for random objects
+ * A file base store for random objects. The files are placed directly in the
+ * store folder or, if user and day of the objects are given, in folders per
+ * user and month of the object. The content of the files is created by a
+ * serializer, by default the objects are stored as JSON. Retrieving objects
+ * matching a filter lets the serializer check the filter on the stored
+ * content, the full object is only created for matching records.
  */
 public class FileStore<T> implements ObjectStore<T>, StoreBackupRestore<T> {
-    private static final String ID = "id";
-
-    private final ObjectMapper jsonUtil = new ObjectMapper();
     private final FilesystemAbstraction filesystemAccess;
 
     private final Supplier<Class<T>> typeFunction;
+    private final ObjectSerializer<T> serializer;
+    private final IdSequence idSequence;
+
+    private final FileLayout<T> layout;
 
+    /**
+     * Create a store that places all files directly in the store folder
+     *
+     * @param filesystemAccess The filesystem abstraction used to access the files
+     * @param typeFunction     Supplies the class of the stored objects
+     */
     public FileStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction) {
-        jsonUtil.registerModule(new JavaTimeModule());
+        this(filesystemAccess, typeFunction, new JsonSerializer<>(typeFunction));
+    }
+
+    /**
+     * Create a store that places all files directly in the store folder
+     *
+     * @param filesystemAccess The filesystem abstraction used to access the files
+     * @param typeFunction     Supplies the class of the stored objects
+     * @param serializer       Creates the content of the files
+     */
+    public FileStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction,
+            final ObjectSerializer<T> serializer) {
         this.typeFunction = typeFunction;
         this.filesystemAccess = filesystemAccess;
+        this.serializer = serializer;
+        this.idSequence = new IdSequence(filesystemAccess, this::getStore, getExtension(), this::getLastUsedId);
+        this.layout = new FlatFileLayout<>(filesystemAccess, this::getStore, getExtension());
+    }
+
+    /**
+     * Create a store that places the files in folders per user and month, so
+     * filtered retrieval only reads the files of the matching folders. Files of
+     * the flat layout found in the store folder are moved into the folders.
+     *
+     * @param filesystemAccess The filesystem abstraction used to access the files
+     * @param typeFunction     Supplies the class of the stored objects
+     * @param userGetter       Function to get the user of an object
+     * @param dayGetter        Function to get the day of an object
+     */
+    public FileStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction,
+            final Function<T, String> userGetter, final Function<T, LocalDate> dayGetter) {
+        this(filesystemAccess, typeFunction, userGetter, dayGetter, new JsonSerializer<>(typeFunction));
+    }
+
+    /**
+     * Create a store that places the files in folders per user and month
+     *
+     * @param filesystemAccess The filesystem abstraction used to access the files
+     * @param typeFunction     Supplies the class of the stored objects
+     * @param userGetter       Function to get the user of an object
+     * @param dayGetter        Function to get the day of an object
+     * @param serializer       Creates the content of the files
+     */
+    public FileStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction,
+            final Function<T, String> userGetter, final Function<T, LocalDate> dayGetter,
+            final ObjectSerializer<T> serializer) {
+        this.typeFunction = typeFunction;
+        this.filesystemAccess = filesystemAccess;
+        this.serializer = serializer;
+        this.idSequence = new IdSequence(filesystemAccess, this::getStore, getExtension(), this::getLastUsedId);
+        this.layout = new PartitionedFileLayout<>(filesystemAccess, this::getStore, getExtension(), userGetter,
+                dayGetter, content -> serializer.deserialize(content, 0, content.length));
     }
 
     @Override
     public Collection<T> retrieveAll() {
         return getAllFiles()
                 .stream()
-                .map(f -> extractFileContent(filesystemAccess.retrieveFromFile(f)))
+                .map(f -> filesystemAccess.readFromFile(f, serializer::deserialize))
+                .collect(toList());
+    }
+
+    @Override
+    public Collection<T> retrieveMatching(final RecordFilter<T> filter) {
+        assertState(filter != null);
+        return layout.candidates(filter)
+                .stream()
+                .map(f -> filesystemAccess.readFromFile(f, (content, offset, length) ->
+                        serializer.matches(content, offset, length, filter)
+                                ? Optional.of(serializer.deserialize(content, offset, length))
+                                : Optional.<T>empty()))
+                .filter(Optional::isPresent)
+                .map(Optional::get)
                 .collect(toList());
     }
 
     @Override
     public Optional<T> retrieveById(final Long id) {
         assertState(id != null);
-        File searchedFile = getFileInformation(id);
-        if (!filesystemAccess.dataAvailable(searchedFile)) {
-            return Optional.empty();
-        }
-        return Optional.of(extractFileContent(filesystemAccess.retrieveFromFile(searchedFile)));
+        return layout.locate(id)
+                .filter(filesystemAccess::dataAvailable)
+                .map(f -> filesystemAccess.readFromFile(f, serializer::deserialize));
     }
 
     @Override
     public T store(final T object) {
         assertState(object != null);
-        Long index = getIndexObject(object);
-        File targetFile = getFileInformation(index);
-        String content = createFileContent(object);
-        filesystemAccess.storeToFile(targetFile, content);
+        Long index = getOrAssignId(object, idSequence::nextId);
+        File targetFile = layout.target(index, () -> object);
+        Optional<File> previousFile = layout.locate(index);
+        filesystemAccess.storeToFile(targetFile, serializer.serialize(object));
+        previousFile
+                .filter(f -> !f.equals(targetFile) && filesystemAccess.dataAvailable(f))
+                .ifPresent(filesystemAccess::deleteFile);
+        layout.stored(index, targetFile);
         return object;
     }
 
     @Override
     public void deleteById(final Long id) {
         assertState(id != null);
-        File deleteFile = getFileInformation(id);
-        assertState(filesystemAccess.dataAvailable(deleteFile));
-        filesystemAccess.deleteFile(deleteFile);
+        Optional<File> deleteFile = layout.locate(id).filter(filesystemAccess::dataAvailable);
+        assertState(deleteFile.isPresent());
+        filesystemAccess.deleteFile(deleteFile.get());
+        layout.removed(id);
     }
 
     @Override
@@ -87,17 +163,20 @@ public class FileStore<T> implements ObjectStore<T>, StoreBackupRestore<T> {
         Map<String, String> backupResult = new HashMap<>();
         getAllFiles()
                 .stream()
-                .forEach(f -> backupResult.put(f.getName(), filesystemAccess.retrieveFromFile(f)));
+                .forEach(f -> backupResult.put(f.getName(), filesystemAccess.readFromFile(f, serializer::toBackup)));
         return backupResult;
     }
 
     @Override
     public void restore(final Map<String, String> filenameToContentMap) {
         assertState(getAllFiles().size() == 0);
-        filenameToContentMap
-                .keySet()
-                .stream()
-                .forEach(k -> filesystemAccess.storeToFile(new File(getStore(), k), filenameToContentMap.get(k)));
+        filenameToContentMap.forEach((name, backup) -> {
+            byte[] content = serializer.fromBackup(backup);
+            filesystemAccess.storeToFile(layout.target(Long.valueOf(FilenameUtils.removeExtension(name)),
+                    () -> serializer.deserialize(content, 0, content.length)), content);
+        });
+        layout.reset();
+        idSequence.reset();
     }
 
     @Override
@@ -105,76 +184,31 @@ public class FileStore<T> implements ObjectStore<T>, StoreBackupRestore<T> {
         getAllFiles()
                 .stream()
                 .forEach(f -> filesystemAccess.deleteFile(f));
-    }
-
-    private T extractFileContent(final String content) {
-        try {
-            return jsonUtil.readValue(content, typeFunction.get());
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private String createFileContent(final T object) {
-        try {
-            return jsonUtil.writeValueAsString(object);
-        } catch (JsonProcessingException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private File getFileInformation(final Long index) {
-        File store = getStore();
-        return new File(store, index.toString() + "." + getExtension());
+        layout.reset();
+        idSequence.reset();
     }
 
     private Collection<File> getAllFiles() {
-        File store = getStore();
-        return filesystemAccess.getAllFiles(store, getExtension());
+        return layout.allFiles();
     }
 
     private String getExtension() {
         return typeFunction.get().getSimpleName().toLowerCase();
     }
 
-    private File getStore() {
-        String storepath = System.getProperty("ptm.filestore");
-        File applicationPath = stringHasContent(storepath) ? new File(storepath) : getDefaultStore();
-        assertState(filesystemAccess.folderAvailable(applicationPath, true));
-        return applicationPath;
-    }
-
-    private File getDefaultStore() {
-        File homepath = new File(System.getProperty("user.home"));
-        assertState(filesystemAccess.folderAvailable(homepath, false));
-        return new File(homepath, ".ptm");
+    /**
+     * @return The folder in which the objects are stored, created if it does not
+     *         exist
+     */
+    public File getStore() {
+        return getStoreFolder(filesystemAccess);
     }
 
-    private Long getIndexObject(final T object) {
-        assertState(object != null);
-        try {
-            Field f = object.getClass().getDeclaredField(ID);
-            f.setAccessible(true);
-            Long returnVal = (Long) f.get(object);
-            if (returnVal == -1) {
-                f.set(object, getNextId());
-            }
-            returnVal = (Long) f.get(object);
-            f.setAccessible(false);
-            return returnVal;
-        } catch (IllegalAccessException | IllegalArgumentException | ClassCastException | NoSuchFieldException
-                | SecurityException e) {
-            throw new IllegalStateException(e);
-        }
-    }
-
-    private Long getNextId() {
-        Optional<String> lastId = getAllFiles()
+    private Long getLastUsedId() {
+        return getAllFiles()
                 .stream()
-                .map(f -> FilenameUtils.removeExtension(f.getName()))
-                .max((n1, n2) -> Long.compare(Long.valueOf(n1), Long.valueOf(n2)));
-        return lastId
-                .map(s -> Long.parseLong(lastId.get()) + 1)
-                .orElse(1L);
+                .map(f -> Long.valueOf(FilenameUtils.removeExtension(f.getName())))
+                .max(Long::compare)
+                .orElse(0L);
     }
 }
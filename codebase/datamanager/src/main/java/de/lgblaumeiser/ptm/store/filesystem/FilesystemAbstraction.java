@@ -23,6 +23,28 @@ public interface FilesystemAbstraction {
      */
     Collection<File> getAllFiles(File folder, String extension);
 
+    /**
+     * @param folder The folder in which folders are searched
+     * @return The folders contained in the given folder
+     */
+    Collection<File> getAllFolders(File folder);
+
+    /**
+     * Reads the content of a file given as bytes
+     */
+    @FunctionalInterface
+    interface ContentReader<R> {
+        /**
+         * @param content A buffer with the content of the file, the buffer is
+         *                reused after the reader returns
+         * @param offset  The offset of the content in the buffer
+         * @param length  The length of the content
+         * @return The result of reading the content
+         * @throws IOException If the content cannot be read
+         */
+        R read(byte[] content, int offset, int length) throws IOException;
+    }
+
     /**
      * @param source File to read
      * @return Content of file as string, might be empty
@@ -30,6 +52,16 @@ public interface FilesystemAbstraction {
      */
     String retrieveFromFile(File source);
 
+    /**
+     * Read a file without creating a string of the content
+     *
+     * @param source File to read
+     * @param reader Reads the content of the file
+     * @return The result of the reader
+     * @throws IOException If access fails
+     */
+    <R> R readFromFile(File source, ContentReader<R> reader);
+
     /**
      * @param target  File reference in which to store content
      * @param content Content to store
@@ -37,6 +69,21 @@ public interface FilesystemAbstraction {
      */
     void storeToFile(File target, String content);
 
+    /**
+     * @param target  File reference in which to store content
+     * @param content Content to store as bytes
+     * @throws IOException If access fails
+     */
+    void storeToFile(File target, byte[] content);
+
+    /**
+     * @param target  File reference to which the content is appended, created if
+     *                it does not exist
+     * @param content Content to append
+     * @throws IOException If access fails
+     */
+    void appendToFile(File target, String content);
+
     /**
      * @param target The file to delete
      */
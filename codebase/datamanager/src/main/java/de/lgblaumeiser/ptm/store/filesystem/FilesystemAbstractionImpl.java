@@ -8,63 +8,222 @@
 package de.lgblaumeiser.ptm.store.filesystem;
 
 import static de.lgblaumeiser.ptm.util.Utils.assertState;
-import static java.nio.charset.Charset.defaultCharset;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static org.apache.commons.io.FileUtils.forceDelete;
 import static org.apache.commons.io.FileUtils.listFiles;
-import static org.apache.commons.io.FileUtils.moveFile;
-import static org.apache.commons.io.FileUtils.readFileToString;
-import static org.apache.commons.io.FileUtils.write;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Implementation of the real filesystem access
+ * Implementation of the real filesystem access. Files are read through a file
+ * channel into a buffer kept per thread, so reading an object allocates no
+ * intermediate copies of the content. All text content is UTF-8 encoded.
+ *
+ * A file is replaced by writing a temporary file with a unique name and
+ * renaming it atomically to the target, so readers see either the old or the
+ * new content. When files and folders are forced to the disk is defined by the
+ * sync policy.
  */
 public class FilesystemAbstractionImpl implements FilesystemAbstraction {
     private static final String TEMP_FILE_ENDING = ".tmpstore";
+    private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<byte[]> readBuffers = new ThreadLocal<>();
+    private static final AtomicLong tmpFileCounter = new AtomicLong();
+    private static final Map<Path, Boolean> cleanedFolders = new ConcurrentHashMap<>();
+
+    /**
+     * The sync policy used by default
+     */
+    public static final SyncPolicy DEFAULT_SYNC_POLICY = SyncPolicy.BATCHED;
+
+    /**
+     * The interval of background syncs used by default in milliseconds
+     */
+    public static final long DEFAULT_SYNC_INTERVAL = 100L;
+
+    private final SyncQueue syncQueue;
+
+    /**
+     * Create a filesystem access with the default sync policy and interval
+     */
+    public FilesystemAbstractionImpl() {
+        this(DEFAULT_SYNC_POLICY, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * @param syncPolicy     Defines when written files are forced to the disk
+     * @param intervalMillis The interval of background syncs for the policy
+     *                       batched
+     */
+    public FilesystemAbstractionImpl(final SyncPolicy syncPolicy, final long intervalMillis) {
+        this.syncQueue = new SyncQueue(syncPolicy, intervalMillis);
+    }
+
+    /**
+     * @return The failure of the last background sync with the policy batched,
+     *         empty if it succeeded. Failed files are retried with the next syncs.
+     */
+    public Optional<IOException> getSyncFailure() {
+        return syncQueue.failure();
+    }
 
     @Override
     public Collection<File> getAllFiles(final File folder, final String extension) {
         return listFiles(folder, new String[] { extension }, false);
     }
 
+    @Override
+    public Collection<File> getAllFolders(final File folder) {
+        assertState(folder != null);
+        File[] folders = folder.listFiles(File::isDirectory);
+        return folders != null ? asList(folders) : emptyList();
+    }
+
     @Override
     public String retrieveFromFile(final File source) {
+        return readFromFile(source, (content, offset, length) -> new String(content, offset, length, UTF_8));
+    }
+
+    @Override
+    public <R> R readFromFile(final File source, final ContentReader<R> reader) {
         assertState(source != null);
-        try {
-            return readFileToString(source, defaultCharset());
+        assertState(reader != null);
+        byte[] buffer = readBuffers.get();
+        // A reader reading another file gets its own buffer
+        readBuffers.set(null);
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            assertState(size < Integer.MAX_VALUE - 1);
+            if (buffer == null || buffer.length <= size) {
+                buffer = new byte[Math.max(INITIAL_BUFFER_SIZE, (int) size + 1)];
+            }
+            ByteBuffer target = ByteBuffer.wrap(buffer);
+            while (channel.read(target) >= 0) {
+                if (!target.hasRemaining()) {
+                    // The file has grown since its size was read
+                    int position = target.position();
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    target = ByteBuffer.wrap(buffer);
+                    target.position(position);
+                }
+            }
+            return reader.read(buffer, 0, target.position());
         } catch (IOException e) {
             throw new IllegalStateException(e);
+        } finally {
+            if (buffer != null && buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+                readBuffers.set(buffer);
+            }
         }
     }
 
     @Override
     public void storeToFile(final File target, final String content) {
+        assertState(content != null);
+        storeToFile(target, content.getBytes(UTF_8));
+    }
+
+    @Override
+    public void storeToFile(final File target, final byte[] content) {
+        assertState(target != null);
+        assertState(content != null);
+        Path targetPath = target.toPath().toAbsolutePath();
+        Path folder = targetPath.getParent();
+        try {
+            prepareFolder(folder);
+            Path tmpFile = folder.resolve(target.getName() + "." + tmpFileCounter.incrementAndGet() + TEMP_FILE_ENDING);
+            try {
+                try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE)) {
+                    write(channel, ByteBuffer.wrap(content));
+                    if (syncQueue.forcesReplacedContent()) {
+                        channel.force(true);
+                    }
+                }
+                move(tmpFile, targetPath);
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tmpFile);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        syncQueue.changed(null, folder);
+    }
+
+    @Override
+    public void appendToFile(final File target, final String content) {
         assertState(target != null);
         assertState(content != null);
-        File tmpFile = new File(target.getParentFile(), target.getName() + TEMP_FILE_ENDING);
+        Path targetPath = target.toPath().toAbsolutePath();
+        Path folder = targetPath.getParent();
+        boolean created;
         try {
-            write(tmpFile, content, defaultCharset());
-            if (target.exists()) {
-                forceDelete(target);
+            prepareFolder(folder);
+            created = !Files.exists(targetPath);
+            try (FileChannel channel = FileChannel.open(targetPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                write(channel, ByteBuffer.wrap(content.getBytes(UTF_8)));
+                if (syncQueue.forcesAppendedContent()) {
+                    channel.force(true);
+                }
             }
-            moveFile(tmpFile, target);
-            deleteTmpFiles(target.getParentFile());
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
+        syncQueue.changed(syncQueue.forcesAppendedContent() ? null : targetPath, created ? folder : null);
     }
 
-    private void deleteTmpFiles(final File target) throws IOException {
-        for (File currentTmpFile : getAllTmpFiles(target)) {
-            forceDelete(currentTmpFile);
+    private static void write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
         }
     }
 
-    private Collection<File> getAllTmpFiles(final File folder) {
-        return listFiles(folder, new String[] { TEMP_FILE_ENDING }, true);
+    private static void move(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Create the folder if needed. Temporary files left by an interrupted write
+     * are deleted when a folder is used the first time, the other writers wait
+     * for the cleanup, so no temporary file of a running write is deleted.
+     */
+    private static void prepareFolder(final Path folder) throws IOException {
+        Files.createDirectories(folder);
+        cleanedFolders.computeIfAbsent(folder.normalize(), f -> {
+            try (DirectoryStream<Path> tmpFiles = Files.newDirectoryStream(f, "*" + TEMP_FILE_ENDING)) {
+                for (Path tmpFile : tmpFiles) {
+                    Files.deleteIfExists(tmpFile);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return Boolean.TRUE;
+        });
     }
 
     @Override
@@ -74,6 +233,7 @@ public class FilesystemAbstractionImpl implements FilesystemAbstraction {
         } catch (IOException e) {
             throw new IllegalStateException(e);
         }
+        syncQueue.changed(null, target.toPath().toAbsolutePath().getParent());
     }
 
     @Override
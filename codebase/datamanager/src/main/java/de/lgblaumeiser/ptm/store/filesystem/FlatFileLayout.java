@@ -0,0 +1,94 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import de.lgblaumeiser.ptm.store.RecordFilter;
+
+/**
+ * The original layout, all files are named by the id of the object and placed
+ * directly in the store folder. Files left in the folders of a partitioned
+ * layout are moved back into the store folder when a store folder is used the
+ * first time, so switching back from a partitioned layout keeps all objects.
+ */
+class FlatFileLayout<T> implements FileLayout<T> {
+    private final FilesystemAbstraction filesystemAccess;
+    private final Supplier<File> storeFolder;
+    private final String extension;
+
+    private volatile File checkedStore;
+
+    FlatFileLayout(final FilesystemAbstraction filesystemAccess, final Supplier<File> storeFolder,
+            final String extension) {
+        this.filesystemAccess = filesystemAccess;
+        this.storeFolder = storeFolder;
+        this.extension = extension;
+    }
+
+    @Override
+    public Optional<File> locate(final Long id) {
+        return Optional.of(fileOf(store(), id));
+    }
+
+    @Override
+    public File target(final Long id, final Supplier<T> object) {
+        return fileOf(store(), id);
+    }
+
+    @Override
+    public void stored(final Long id, final File file) {
+        // The place of a file is derived from the id
+    }
+
+    @Override
+    public void removed(final Long id) {
+        // The place of a file is derived from the id
+    }
+
+    @Override
+    public void reset() {
+        // Nothing cached
+    }
+
+    @Override
+    public Collection<File> allFiles() {
+        return filesystemAccess.getAllFiles(store(), extension);
+    }
+
+    @Override
+    public Collection<File> candidates(final RecordFilter<T> filter) {
+        return allFiles();
+    }
+
+    private File fileOf(final File store, final Long id) {
+        return new File(store, id.toString() + "." + extension);
+    }
+
+    private File store() {
+        File store = storeFolder.get();
+        if (!store.equals(checkedStore)) {
+            synchronized (this) {
+                if (!store.equals(checkedStore)) {
+                    PartitionedFileLayout.files(filesystemAccess, store, extension).forEach(f -> {
+                        byte[] content = filesystemAccess.readFromFile(f,
+                                (bytes, offset, length) -> Arrays.copyOfRange(bytes, offset, offset + length));
+                        filesystemAccess.storeToFile(fileOf(store, PartitionedFileLayout.idOf(f)), content);
+                        filesystemAccess.deleteFile(f);
+                    });
+                    checkedStore = store;
+                }
+            }
+        }
+        return store;
+    }
+}
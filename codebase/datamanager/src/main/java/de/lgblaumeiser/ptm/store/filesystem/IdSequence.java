@@ -0,0 +1,107 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * A persistent sequence of ids for one object type. Ids are handed out from a
+ * block reserved in memory, only the reservation of a new block writes the
+ * upper bound of the block to the store folder. After a restart the allocation
+ * continues behind the last reserved block, so ids are never handed out twice.
+ * Allocating an id is thread safe and takes constant time.
+ */
+class IdSequence {
+    private static final String EXTENSION = "sequence";
+    private static final int DEFAULT_BLOCK_SIZE = 100;
+
+    private final FilesystemAbstraction filesystemAccess;
+    private final Supplier<File> storeFolder;
+    private final String name;
+    private final Supplier<Long> lastUsedId;
+    private final int blockSize;
+
+    private File loadedFile;
+    private long next;
+    private long limit;
+
+    IdSequence(final FilesystemAbstraction filesystemAccess, final Supplier<File> storeFolder, final String name,
+            final Supplier<Long> lastUsedId) {
+        this(filesystemAccess, storeFolder, name, lastUsedId, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param filesystemAccess The filesystem abstraction used to persist the
+     *                         sequence
+     * @param storeFolder      Supplies the folder of the store, if the folder
+     *                         changes, the sequence is loaded from the new folder
+     * @param name             The name of the sequence, used as file name
+     * @param lastUsedId       Supplies the highest id in use, only called if no
+     *                         persisted sequence exists
+     * @param blockSize        The number of ids reserved at once
+     */
+    IdSequence(final FilesystemAbstraction filesystemAccess, final Supplier<File> storeFolder, final String name,
+            final Supplier<Long> lastUsedId, final int blockSize) {
+        assertState(blockSize > 0);
+        this.filesystemAccess = filesystemAccess;
+        this.storeFolder = storeFolder;
+        this.name = name;
+        this.lastUsedId = lastUsedId;
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * @return The next unused id
+     */
+    synchronized Long nextId() {
+        File sequenceFile = getSequenceFile();
+        if (!sequenceFile.equals(loadedFile)) {
+            next = readPersistedLimit(sequenceFile).orElseGet(() -> lastUsedId.get() + 1);
+            limit = next;
+            loadedFile = sequenceFile;
+        }
+        if (next >= limit) {
+            // Another instance working on the same folder might have reserved a block
+            next = Math.max(next, readPersistedLimit(sequenceFile).orElse(next));
+            limit = next + blockSize;
+            filesystemAccess.storeToFile(sequenceFile, Long.toString(limit));
+        }
+        return next++;
+    }
+
+    /**
+     * Forget the persisted sequence, the next allocation starts behind the highest
+     * id in use. Used if the content of the store is replaced.
+     */
+    synchronized void reset() {
+        File sequenceFile = getSequenceFile();
+        if (filesystemAccess.dataAvailable(sequenceFile)) {
+            filesystemAccess.deleteFile(sequenceFile);
+        }
+        loadedFile = null;
+    }
+
+    private Optional<Long> readPersistedLimit(final File sequenceFile) {
+        if (!filesystemAccess.dataAvailable(sequenceFile)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Long.parseLong(filesystemAccess.retrieveFromFile(sequenceFile).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private File getSequenceFile() {
+        return new File(storeFolder.get(), name + "." + EXTENSION);
+    }
+}
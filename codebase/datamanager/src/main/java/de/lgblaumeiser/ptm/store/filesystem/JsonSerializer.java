@@ -0,0 +1,91 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.function.Supplier;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import de.lgblaumeiser.ptm.store.RecordFilter;
+
+/**
+ * Stores the objects as JSON, the original file format. Checking a filter reads
+ * only the user and the day of a stored record with a streaming parser.
+ */
+public class JsonSerializer<T> implements ObjectSerializer<T> {
+    private final ObjectMapper jsonUtil = new ObjectMapper();
+    private final Supplier<Class<T>> typeFunction;
+
+    /**
+     * @param typeFunction Supplies the class of the stored objects
+     */
+    public JsonSerializer(final Supplier<Class<T>> typeFunction) {
+        jsonUtil.registerModule(new JavaTimeModule());
+        this.typeFunction = typeFunction;
+    }
+
+    @Override
+    public byte[] serialize(final T object) {
+        try {
+            return jsonUtil.writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public T deserialize(final byte[] content, final int offset, final int length) {
+        try {
+            return jsonUtil.readValue(content, offset, length, typeFunction.get());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean matches(final byte[] content, final int offset, final int length,
+            final RecordFilter<T> filter) {
+        try (JsonParser parser = jsonUtil.getFactory().createParser(content, offset, length)) {
+            assertState(parser.nextToken() == JsonToken.START_OBJECT);
+            boolean userFound = false;
+            boolean dayFound = false;
+            String user = null;
+            LocalDate day = null;
+            while (!(userFound && dayFound) && parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals(filter.getUserField())) {
+                    userFound = true;
+                    user = parser.getValueAsString();
+                    if (!filter.matchesUser(user)) {
+                        return false;
+                    }
+                } else if (field.equals(filter.getDayField())) {
+                    dayFound = true;
+                    day = value == JsonToken.VALUE_NULL ? null : jsonUtil.readValue(parser, LocalDate.class);
+                    if (!filter.matchesDay(day)) {
+                        return false;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return filter.matchesUser(user) && filter.matchesDay(day);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
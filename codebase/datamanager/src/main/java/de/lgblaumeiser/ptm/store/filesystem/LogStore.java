@@ -0,0 +1,357 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.store.filesystem.StoreSupport.getOrAssignId;
+import static de.lgblaumeiser.ptm.store.filesystem.StoreSupport.getStoreFolder;
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static java.util.Comparator.comparing;
+import static java.util.stream.Collectors.toList;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.store.StoreBackupRestore;
+
+/**
+ * A log structured store for random objects. Every change is appended as a
+ * record to the current segment file, the objects are held in memory. On
+ * startup the state is rebuilt from the latest snapshot and the segments
+ * written after it. If a segment is full, a compaction writes a snapshot of the
+ * current state and removes the segments and snapshots covered by it.
+ *
+ * If the store folder contains no log yet, objects stored by the one file per
+ * object store are imported, so that an existing store can be switched to this
+ * engine. The imported files are deleted once the snapshot containing them is
+ * written. Ids are allocated from the same persistent sequence as in the one
+ * file per object store, so ids of deleted objects are never handed out again.
+ */
+public class LogStore<T> implements ObjectStore<T>, StoreBackupRestore<T> {
+    private static final int DEFAULT_SEGMENT_SIZE = 1000;
+    private static final String SEGMENT_SUFFIX = "log";
+    private static final String SNAPSHOT_SUFFIX = "snapshot";
+    private static final String OPERATION = "op";
+    private static final String ID = "id";
+    private static final String DATA = "data";
+    private static final String PUT = "put";
+    private static final String DELETE = "delete";
+
+    private final ObjectMapper jsonUtil = new ObjectMapper();
+    private final FilesystemAbstraction filesystemAccess;
+    private final Supplier<Class<T>> typeFunction;
+    private final ObjectSerializer<T> fileSerializer;
+    private final int segmentSize;
+    private final IdSequence idSequence;
+
+    private final Map<Long, T> objects = new HashMap<>();
+    private File loadedStore;
+    private long segment;
+    private int segmentRecords;
+    private long lastId;
+
+    public LogStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction) {
+        this(filesystemAccess, typeFunction, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param filesystemAccess The filesystem abstraction used for file access
+     * @param typeFunction     Supplies the class of the stored objects
+     * @param fileSerializer   Reads the files of the one file per object store
+     *                         when they are imported
+     */
+    public LogStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction,
+            final ObjectSerializer<T> fileSerializer) {
+        this(filesystemAccess, typeFunction, DEFAULT_SEGMENT_SIZE, fileSerializer);
+    }
+
+    /**
+     * @param filesystemAccess The filesystem abstraction used for file access
+     * @param typeFunction     Supplies the class of the stored objects
+     * @param segmentSize      Number of records in a segment before a compaction
+     *                         is done
+     */
+    public LogStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction,
+            final int segmentSize) {
+        this(filesystemAccess, typeFunction, segmentSize, new JsonSerializer<>(typeFunction));
+    }
+
+    private LogStore(final FilesystemAbstraction filesystemAccess, final Supplier<Class<T>> typeFunction,
+            final int segmentSize, final ObjectSerializer<T> fileSerializer) {
+        assertState(segmentSize > 0);
+        jsonUtil.registerModule(new JavaTimeModule());
+        this.filesystemAccess = filesystemAccess;
+        this.typeFunction = typeFunction;
+        this.fileSerializer = fileSerializer;
+        this.segmentSize = segmentSize;
+        this.idSequence = new IdSequence(filesystemAccess, this::getStore, getExtension(), () -> lastId);
+    }
+
+    @Override
+    public synchronized Collection<T> retrieveAll() {
+        ensureLoaded();
+        return new ArrayList<>(objects.values());
+    }
+
+    @Override
+    public synchronized Optional<T> retrieveById(final Long id) {
+        assertState(id != null);
+        ensureLoaded();
+        return Optional.ofNullable(objects.get(id));
+    }
+
+    @Override
+    public synchronized T store(final T object) {
+        assertState(object != null);
+        ensureLoaded();
+        Long id = getOrAssignId(object, idSequence::nextId);
+        ObjectNode record = createRecord(PUT, id);
+        record.set(DATA, jsonUtil.valueToTree(object));
+        append(record);
+        objects.put(id, object);
+        lastId = Math.max(lastId, id);
+        return object;
+    }
+
+    @Override
+    public synchronized void deleteById(final Long id) {
+        assertState(id != null);
+        ensureLoaded();
+        assertState(objects.containsKey(id));
+        append(createRecord(DELETE, id));
+        objects.remove(id);
+    }
+
+    @Override
+    public synchronized Map<String, String> backup() {
+        ensureLoaded();
+        Map<String, String> backupResult = new HashMap<>();
+        objects.forEach((id, object) -> backupResult.put(id + "." + getExtension(), writeJson(object)));
+        return backupResult;
+    }
+
+    @Override
+    public synchronized void restore(final Map<String, String> filenameToContentMap) {
+        ensureLoaded();
+        assertState(objects.isEmpty());
+        filenameToContentMap.values().stream().map(this::readObject).forEach(this::store);
+        idSequence.reset();
+    }
+
+    @Override
+    public synchronized void delete() {
+        File store = getStore();
+        Stream.of(getSegmentFiles(store), getSnapshotFiles(store), getObjectFiles(store))
+                .flatMap(Collection::stream)
+                .forEach(filesystemAccess::deleteFile);
+        objects.clear();
+        segment = 0;
+        segmentRecords = 0;
+        lastId = 0;
+        loadedStore = store;
+        idSequence.reset();
+    }
+
+    /**
+     * Write a snapshot of the current state and remove the segments and snapshots
+     * covered by it. Subsequent changes are written to a new segment.
+     */
+    public synchronized void compact() {
+        ensureLoaded();
+        compact(loadedStore);
+    }
+
+    /**
+     * @return The folder in which the objects are stored, created if it does not
+     *         exist
+     */
+    public File getStore() {
+        return getStoreFolder(filesystemAccess);
+    }
+
+    private void ensureLoaded() {
+        File store = getStore();
+        if (store.equals(loadedStore)) {
+            return;
+        }
+        objects.clear();
+        segmentRecords = 0;
+        lastId = 0;
+        Optional<File> snapshot = getSnapshotFiles(store).stream().max(comparing(this::getSequence));
+        segment = snapshot.map(this::getSequence).orElse(0L);
+        snapshot.ifPresent(this::readSnapshot);
+        List<File> segments = getSegmentFiles(store).stream()
+                .filter(f -> getSequence(f) >= segment)
+                .sorted(comparing(this::getSequence))
+                .collect(toList());
+        boolean complete = true;
+        for (File segmentFile : segments) {
+            assertState(complete);
+            segment = getSequence(segmentFile);
+            segmentRecords = 0;
+            complete = replaySegment(segmentFile);
+        }
+        loadedStore = store;
+        if (!snapshot.isPresent() && segments.isEmpty()) {
+            importObjectFiles(store);
+        }
+        if (!complete) {
+            // The last record was not written completely, continue in a fresh segment
+            compact(store);
+        }
+    }
+
+    private void readSnapshot(final File snapshot) {
+        List<T> content = filesystemAccess.readFromFile(snapshot, (bytes, offset, length) -> jsonUtil.readValue(
+                bytes, offset, length,
+                jsonUtil.getTypeFactory().constructCollectionType(List.class, typeFunction.get())));
+        content.forEach(this::putObject);
+    }
+
+    private boolean replaySegment(final File segmentFile) {
+        String[] records = filesystemAccess.retrieveFromFile(segmentFile).split("\n");
+        for (int i = 0; i < records.length; i++) {
+            if (records[i].isEmpty()) {
+                continue;
+            }
+            Optional<JsonNode> record = parseRecord(records[i]);
+            if (!record.isPresent()) {
+                // Only the last record of the log might be damaged by an interrupted write
+                assertState(i == records.length - 1);
+                return false;
+            }
+            applyRecord(record.get());
+            segmentRecords++;
+        }
+        return true;
+    }
+
+    private Optional<JsonNode> parseRecord(final String record) {
+        try {
+            JsonNode node = jsonUtil.readTree(record);
+            return node.has(OPERATION) && node.has(ID) ? Optional.of(node) : Optional.empty();
+        } catch (JsonProcessingException e) {
+            return Optional.empty();
+        }
+    }
+
+    private void applyRecord(final JsonNode record) {
+        long id = record.get(ID).asLong();
+        if (PUT.equals(record.get(OPERATION).asText())) {
+            try {
+                objects.put(id, jsonUtil.treeToValue(record.get(DATA), typeFunction.get()));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        } else {
+            objects.remove(id);
+        }
+        lastId = Math.max(lastId, id);
+    }
+
+    private void importObjectFiles(final File store) {
+        Collection<File> objectFiles = getObjectFiles(store);
+        if (!objectFiles.isEmpty()) {
+            objectFiles.forEach(f -> putObject(filesystemAccess.readFromFile(f, fileSerializer::deserialize)));
+            compact(store);
+            objectFiles.forEach(filesystemAccess::deleteFile);
+        }
+    }
+
+    private void putObject(final T object) {
+        Long id = getOrAssignId(object, idSequence::nextId);
+        objects.put(id, object);
+        lastId = Math.max(lastId, id);
+    }
+
+    private void append(final ObjectNode record) {
+        if (segmentRecords >= segmentSize) {
+            compact(loadedStore);
+        }
+        filesystemAccess.appendToFile(getSegmentFile(loadedStore, segment), writeJson(record) + "\n");
+        segmentRecords++;
+    }
+
+    private void compact(final File store) {
+        long nextSegment = segment + 1;
+        filesystemAccess.storeToFile(getSnapshotFile(store, nextSegment), writeJson(objects.values()));
+        segment = nextSegment;
+        segmentRecords = 0;
+        Stream.of(getSegmentFiles(store), getSnapshotFiles(store))
+                .flatMap(Collection::stream)
+                .filter(f -> getSequence(f) < nextSegment)
+                .forEach(filesystemAccess::deleteFile);
+    }
+
+    private ObjectNode createRecord(final String operation, final Long id) {
+        ObjectNode record = jsonUtil.createObjectNode();
+        record.put(OPERATION, operation);
+        record.put(ID, id);
+        return record;
+    }
+
+    private T readObject(final String content) {
+        try {
+            return jsonUtil.readValue(content, typeFunction.get());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String writeJson(final Object content) {
+        try {
+            return jsonUtil.writeValueAsString(content);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long getSequence(final File file) {
+        return Long.parseLong(FilenameUtils.getBaseName(file.getName()));
+    }
+
+    private File getSegmentFile(final File store, final long sequence) {
+        return new File(store, sequence + "." + getExtension() + SEGMENT_SUFFIX);
+    }
+
+    private File getSnapshotFile(final File store, final long sequence) {
+        return new File(store, sequence + "." + getExtension() + SNAPSHOT_SUFFIX);
+    }
+
+    private Collection<File> getSegmentFiles(final File store) {
+        return filesystemAccess.getAllFiles(store, getExtension() + SEGMENT_SUFFIX);
+    }
+
+    private Collection<File> getSnapshotFiles(final File store) {
+        return filesystemAccess.getAllFiles(store, getExtension() + SNAPSHOT_SUFFIX);
+    }
+
+    private Collection<File> getObjectFiles(final File store) {
+        return filesystemAccess.getAllFiles(store, getExtension());
+    }
+
+    private String getExtension() {
+        return typeFunction.get().getSimpleName().toLowerCase();
+    }
+}
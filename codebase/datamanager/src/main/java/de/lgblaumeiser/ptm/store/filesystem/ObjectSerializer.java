@@ -0,0 +1,66 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import de.lgblaumeiser.ptm.store.RecordFilter;
+
+/**
+ * Converts the objects of a file store to the content of their files and back.
+ * Backups always contain the JSON representation of the objects, so a backup
+ * can be restored into a store using any serializer.
+ */
+public interface ObjectSerializer<T> {
+    /**
+     * @param object The object to convert, non null
+     * @return The content of the file of the object
+     */
+    byte[] serialize(T object);
+
+    /**
+     * @param content A buffer with the content of a file
+     * @param offset  The offset of the content in the buffer
+     * @param length  The length of the content
+     * @return The object stored in the content
+     */
+    T deserialize(byte[] content, int offset, int length);
+
+    /**
+     * Check whether the object stored in the content matches a filter, by default
+     * the object is created and checked
+     *
+     * @param content A buffer with the content of a file
+     * @param offset  The offset of the content in the buffer
+     * @param length  The length of the content
+     * @param filter  The filter to check
+     * @return True, if the object stored in the content matches the filter
+     */
+    default boolean matches(final byte[] content, final int offset, final int length,
+            final RecordFilter<T> filter) {
+        return filter.matches(deserialize(content, offset, length));
+    }
+
+    /**
+     * @param content A buffer with the content of a file
+     * @param offset  The offset of the content in the buffer
+     * @param length  The length of the content
+     * @return The JSON representation of the stored object used in backups
+     */
+    default String toBackup(final byte[] content, final int offset, final int length) {
+        return new String(content, offset, length, UTF_8);
+    }
+
+    /**
+     * @param backup The JSON representation of an object taken from a backup
+     * @return The content of the file of the object
+     */
+    default byte[] fromBackup(final String backup) {
+        return backup.getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.FilenameUtils;
+
+import de.lgblaumeiser.ptm.store.RecordFilter;
+
+/**
+ * A layout that places the files by user and month of the object, a file is
+ * stored as <type>/<user>/<yyyy>/<MM>/<id>.<type> below the store folder. The
+ * user folder names keep lower case letters, digits and '-', upper case letters
+ * are written as '_' followed by the lower case letter and all other bytes of
+ * the UTF-8 encoded name as '%' and two hex digits, so the names of different
+ * users differ on case insensitive filesystems as well. Filtered retrieval only
+ * lists the folders of matching users and months.
+ *
+ * The files are found by id with an index built by walking the folders when a
+ * store folder is used the first time. Files found directly in the store folder,
+ * i.e. written with the flat layout, are moved to their folders before, so an
+ * existing store is converted in place. A file is written before the file at
+ * the old place is deleted, so an interrupted conversion is completed the next
+ * time.
+ */
+class PartitionedFileLayout<T> implements FileLayout<T> {
+    private final FilesystemAbstraction filesystemAccess;
+    private final Supplier<File> storeFolder;
+    private final String extension;
+    private final Function<T, String> userGetter;
+    private final Function<T, LocalDate> dayGetter;
+    private final Function<byte[], T> parser;
+
+    private volatile File indexedStore;
+    private volatile Map<Long, File> index;
+
+    /**
+     * @param filesystemAccess The filesystem abstraction used to access the files
+     * @param storeFolder      Supplies the folder of the store
+     * @param extension        The extension of the files
+     * @param userGetter       Function to get the user of an object
+     * @param dayGetter        Function to get the day of an object
+     * @param parser           Creates the object from the content of a file,
+     *                         used for converting files of the flat layout
+     */
+    PartitionedFileLayout(final FilesystemAbstraction filesystemAccess, final Supplier<File> storeFolder,
+            final String extension, final Function<T, String> userGetter, final Function<T, LocalDate> dayGetter,
+            final Function<byte[], T> parser) {
+        this.filesystemAccess = filesystemAccess;
+        this.storeFolder = storeFolder;
+        this.extension = extension;
+        this.userGetter = userGetter;
+        this.dayGetter = dayGetter;
+        this.parser = parser;
+    }
+
+    @Override
+    public Optional<File> locate(final Long id) {
+        indexedStore();
+        return Optional.ofNullable(index.get(id));
+    }
+
+    @Override
+    public File target(final Long id, final Supplier<T> object) {
+        return fileOf(indexedStore(), id, object.get());
+    }
+
+    @Override
+    public void stored(final Long id, final File file) {
+        indexedStore();
+        index.put(id, file);
+    }
+
+    @Override
+    public void removed(final Long id) {
+        indexedStore();
+        index.remove(id);
+    }
+
+    @Override
+    public synchronized void reset() {
+        indexedStore = null;
+    }
+
+    @Override
+    public Collection<File> allFiles() {
+        return files(filesystemAccess, indexedStore(), extension);
+    }
+
+    @Override
+    public Collection<File> candidates(final RecordFilter<T> filter) {
+        return files(filesystemAccess, indexedStore(), extension, filter::matchesUser, filter::overlapsDays);
+    }
+
+    private File fileOf(final File store, final Long id, final T object) {
+        LocalDate day = dayGetter.apply(object);
+        File userFolder = new File(new File(store, extension), encodeUser(userGetter.apply(object)));
+        File monthFolder = new File(new File(userFolder, String.format("%04d", day.getYear())),
+                String.format("%02d", day.getMonthValue()));
+        return new File(monthFolder, id.toString() + "." + extension);
+    }
+
+    private File indexedStore() {
+        File store = storeFolder.get();
+        if (!store.equals(indexedStore)) {
+            synchronized (this) {
+                if (!store.equals(indexedStore)) {
+                    convertFlatFiles(store);
+                    Map<Long, File> files = new ConcurrentHashMap<>();
+                    files(filesystemAccess, store, extension).forEach(f -> files.put(idOf(f), f));
+                    index = files;
+                    indexedStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    private void convertFlatFiles(final File store) {
+        for (File flatFile : filesystemAccess.getAllFiles(store, extension)) {
+            byte[] content = filesystemAccess.readFromFile(flatFile,
+                    (bytes, offset, length) -> Arrays.copyOfRange(bytes, offset, offset + length));
+            filesystemAccess.storeToFile(fileOf(store, idOf(flatFile), parser.apply(content)), content);
+            filesystemAccess.deleteFile(flatFile);
+        }
+    }
+
+    /**
+     * @return All files of the partitioned layout in the store folder
+     */
+    static Collection<File> files(final FilesystemAbstraction filesystemAccess, final File store,
+            final String extension) {
+        return files(filesystemAccess, store, extension, user -> true, (firstDay, firstDayAfter) -> true);
+    }
+
+    private static Collection<File> files(final FilesystemAbstraction filesystemAccess, final File store,
+            final String extension, final Predicate<String> users, final BiPredicate<LocalDate, LocalDate> days) {
+        List<File> result = new ArrayList<>();
+        File root = new File(store, extension);
+        if (!filesystemAccess.folderAvailable(root, false)) {
+            return result;
+        }
+        for (File userFolder : filesystemAccess.getAllFolders(root)) {
+            if (!users.test(decodeUser(userFolder.getName()))) {
+                continue;
+            }
+            for (File yearFolder : filesystemAccess.getAllFolders(userFolder)) {
+                Integer year = number(yearFolder.getName());
+                if (year == null || !days.test(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1))) {
+                    continue;
+                }
+                for (File monthFolder : filesystemAccess.getAllFolders(yearFolder)) {
+                    Integer month = number(monthFolder.getName());
+                    if (month == null || month < 1 || month > 12) {
+                        continue;
+                    }
+                    YearMonth yearMonth = YearMonth.of(year, month);
+                    if (days.test(yearMonth.atDay(1), yearMonth.plusMonths(1L).atDay(1))) {
+                        result.addAll(filesystemAccess.getAllFiles(monthFolder, extension));
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Integer number(final String name) {
+        try {
+            return Integer.valueOf(name);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    static Long idOf(final File file) {
+        try {
+            return Long.valueOf(FilenameUtils.removeExtension(file.getName()));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String encodeUser(final String user) {
+        StringBuilder name = new StringBuilder();
+        for (byte b : user.getBytes(UTF_8)) {
+            char c = (char) (b & 0xff);
+            if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-') {
+                name.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                name.append('_').append(Character.toLowerCase(c));
+            } else {
+                name.append('%').append(String.format("%02x", b & 0xff));
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * @return The user, null if the name is not a valid encoded user
+     */
+    static String decodeUser(final String name) {
+        ByteArrayOutputStream user = new ByteArrayOutputStream();
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '_' && i + 1 < name.length()) {
+                user.write(Character.toUpperCase(name.charAt(++i)));
+            } else if (c == '%' && i + 2 < name.length()) {
+                Integer b = hex(name.substring(i + 1, i + 3));
+                if (b == null) {
+                    return null;
+                }
+                user.write(b);
+                i += 2;
+            } else if (c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '-') {
+                user.write(c);
+            } else {
+                return null;
+            }
+        }
+        return new String(user.toByteArray(), UTF_8);
+    }
+
+    private static Integer hex(final String digits) {
+        try {
+            return Integer.valueOf(digits, 16);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+import static de.lgblaumeiser.ptm.util.Utils.stringHasContent;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.util.function.Supplier;
+
+/**
+ * Helper functions shared by the file based store implementations
+ */
+final class StoreSupport {
+    private static final String ID = "id";
+    private static final String STORE_PROPERTY = "ptm.filestore";
+
+    private StoreSupport() {
+        // Utility class
+    }
+
+    /**
+     * @param filesystemAccess The filesystem abstraction used to check the folder
+     * @return The folder in which the objects are stored, created if it does not
+     *         exist
+     */
+    static File getStoreFolder(final FilesystemAbstraction filesystemAccess) {
+        String storepath = System.getProperty(STORE_PROPERTY);
+        File applicationPath = stringHasContent(storepath) ? new File(storepath) : getDefaultStore(filesystemAccess);
+        assertState(filesystemAccess.folderAvailable(applicationPath, true));
+        return applicationPath;
+    }
+
+    private static File getDefaultStore(final FilesystemAbstraction filesystemAccess) {
+        File homepath = new File(System.getProperty("user.home"));
+        assertState(filesystemAccess.folderAvailable(homepath, false));
+        return new File(homepath, ".ptm");
+    }
+
+    /**
+     * Get the id of the object, if the object has no id yet, i.e. the id is -1, a
+     * new id is assigned first
+     *
+     * @param object The object whose id is requested
+     * @param nextId Supplier for a new id, only called if an id must be assigned
+     * @return The id of the object
+     */
+    static Long getOrAssignId(final Object object, final Supplier<Long> nextId) {
+        assertState(object != null);
+        try {
+            Field f = object.getClass().getDeclaredField(ID);
+            f.setAccessible(true);
+            Long returnVal = (Long) f.get(object);
+            if (returnVal == -1) {
+                f.set(object, nextId.get());
+            }
+            returnVal = (Long) f.get(object);
+            f.setAccessible(false);
+            return returnVal;
+        } catch (IllegalAccessException | IllegalArgumentException | ClassCastException | NoSuchFieldException
+                | SecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
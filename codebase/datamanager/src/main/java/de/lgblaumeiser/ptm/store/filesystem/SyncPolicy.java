@@ -0,0 +1,48 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+/**
+ * Defines when written files and the folders containing them are forced to the
+ * disk
+ */
+public enum SyncPolicy {
+    /**
+     * A write returns after the file and its folder are on the disk. The content
+     * of a replaced file is forced before the rename, so after a crash a file has
+     * either the old or the new content. Concurrent writers share one sync of a
+     * folder.
+     */
+    ALWAYS,
+
+    /**
+     * The content of a replaced file is forced before the rename like with the
+     * policy always, so a crash never leaves a torn file in place of the old
+     * content. The folders and appended content are forced in the background in
+     * fixed intervals, a crash loses at most the writes of the last interval.
+     */
+    BATCHED,
+
+    /**
+     * Files are never forced, the operating system decides when they reach the
+     * disk
+     */
+    NEVER;
+
+    /**
+     * @param name The name of the policy, case is ignored
+     * @return The policy with the given name
+     */
+    public static SyncPolicy fromName(final String name) {
+        try {
+            return valueOf(name.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
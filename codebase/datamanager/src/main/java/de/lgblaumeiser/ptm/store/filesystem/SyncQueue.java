@@ -0,0 +1,269 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Forces changed files and folders to the disk according to a sync policy.
+ * Changes are collected in batches. With the policy always, the writer that
+ * finds no sync running syncs the whole batch, the writers that arrive during a
+ * sync wait and are synced together by the next one, so a folder is forced once
+ * for all of them. With the policy batched, the content of replacing files is
+ * still forced by the writer, only appended content and folders are collected,
+ * the first change of a batch schedules their sync after the interval. Paths that fail to sync in the
+ * background are put back into the pending batch and retried with the next
+ * sync, up to a limit. The failure is reported by {@link #failure()} until a
+ * background sync succeeds, it is not thrown to unrelated writers.
+ */
+class SyncQueue {
+    private static final int MAX_RETRIES = 10;
+    private static final AtomicLong threadCounter = new AtomicLong();
+    private static final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ptm-store-sync-" + threadCounter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SyncPolicy policy;
+    private final long intervalMillis;
+    private final Lock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private final Map<Path, Integer> retries = new HashMap<>();
+
+    private Batch pending = new Batch();
+    private boolean syncing;
+    private boolean scheduled;
+    private IOException backgroundFailure;
+    private long syncedBatches;
+
+    private static class Batch {
+        private final Set<Path> files = new LinkedHashSet<>();
+        private final Set<Path> folders = new LinkedHashSet<>();
+        private boolean done;
+        private IOException failure;
+
+        Batch add(final Path file, final Path folder) {
+            if (file != null) {
+                files.add(file);
+            }
+            if (folder != null) {
+                folders.add(folder);
+            }
+            return this;
+        }
+
+        /**
+         * @return The paths that failed to sync, the failure is kept in this and in
+         *         the returned batch
+         */
+        Batch sync() {
+            Batch failed = new Batch();
+            for (Path file : files) {
+                try {
+                    force(file, false);
+                } catch (IOException e) {
+                    failed.add(file, null).failure = e;
+                }
+            }
+            for (Path folder : folders) {
+                try {
+                    force(folder, true);
+                } catch (IOException e) {
+                    failed.add(null, folder).failure = e;
+                }
+            }
+            failure = failed.failure;
+            return failed;
+        }
+
+        Stream<Path> paths() {
+            return Stream.concat(files.stream(), folders.stream());
+        }
+
+        private static void force(final Path path, final boolean folder) throws IOException {
+            try (FileChannel channel = FileChannel.open(path,
+                    folder ? StandardOpenOption.READ : StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (NoSuchFileException e) {
+                // Deleted after the change, nothing left to sync
+            } catch (IOException e) {
+                // Folders cannot be opened for syncing on all platforms
+                if (!folder) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param policy         The policy deciding when changes are synced
+     * @param intervalMillis The interval of background syncs for the policy
+     *                       batched
+     */
+    SyncQueue(final SyncPolicy policy, final long intervalMillis) {
+        assertState(policy != null);
+        assertState(policy != SyncPolicy.BATCHED || intervalMillis > 0);
+        this.policy = policy;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * @return True, if the content of a file replacing another file must be
+     *         forced by the writer before the rename, so that a crash never leaves
+     *         a torn file in place of the old content
+     */
+    boolean forcesReplacedContent() {
+        return policy != SyncPolicy.NEVER;
+    }
+
+    /**
+     * @return True, if appended content must be forced by the writer
+     */
+    boolean forcesAppendedContent() {
+        return policy == SyncPolicy.ALWAYS;
+    }
+
+    /**
+     * Sync a change according to the policy, with the policy always the call
+     * returns when the change is on the disk
+     *
+     * @param file   A file whose content has changed, null if the content does not
+     *               need to be synced
+     * @param folder A folder whose entries have changed, null if no entries have
+     *               changed
+     */
+    void changed(final Path file, final Path folder) {
+        if (policy == SyncPolicy.NEVER || file == null && folder == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (policy == SyncPolicy.BATCHED) {
+                enqueue(file, folder);
+            } else {
+                awaitSync(pending.add(file, folder));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(final Path file, final Path folder) {
+        pending.add(file, folder);
+        scheduleSync();
+    }
+
+    private void scheduleSync() {
+        if (!scheduled) {
+            scheduled = true;
+            scheduler.schedule(this::syncInBackground, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void syncInBackground() {
+        Batch batch;
+        lock.lock();
+        try {
+            batch = pending;
+            pending = new Batch();
+            scheduled = false;
+        } finally {
+            lock.unlock();
+        }
+        Batch failed = batch.sync();
+        lock.lock();
+        try {
+            syncedBatches++;
+            backgroundFailure = failed.failure;
+            batch.paths().forEach(retries::remove);
+            failed.files.forEach(f -> retry(f, null));
+            failed.folders.forEach(f -> retry(null, f));
+            if (pending.paths().findAny().isPresent()) {
+                scheduleSync();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void retry(final Path file, final Path folder) {
+        Path path = file != null ? file : folder;
+        int attempts = retries.merge(path, 1, Integer::sum);
+        if (attempts <= MAX_RETRIES) {
+            pending.add(file, folder);
+        } else {
+            retries.remove(path);
+        }
+    }
+
+    private void awaitSync(final Batch batch) {
+        while (!batch.done) {
+            if (syncing) {
+                synced.awaitUninterruptibly();
+                continue;
+            }
+            syncing = true;
+            Batch next = pending;
+            pending = new Batch();
+            lock.unlock();
+            try {
+                next.sync();
+            } finally {
+                lock.lock();
+                next.done = true;
+                syncedBatches++;
+                syncing = false;
+                synced.signalAll();
+            }
+        }
+        if (batch.failure != null) {
+            throw new IllegalStateException(batch.failure);
+        }
+    }
+
+    /**
+     * @return The failure of the last background sync, empty if it succeeded
+     */
+    Optional<IOException> failure() {
+        lock.lock();
+        try {
+            return Optional.ofNullable(backgroundFailure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long syncedBatches() {
+        lock.lock();
+        try {
+            return syncedBatches;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.util;
+
+import static de.lgblaumeiser.ptm.util.Utils.assertState;
+
+import java.util.Arrays;
+
+/**
+ * Sums up minutes per numeric id without boxing. The ids are kept in the order
+ * they are first added and can be iterated by index, lookup is done by an open
+ * addressing hash table over the indexes. Adding minutes to a known id does not
+ * allocate any memory.
+ *
+ * The counter is not thread safe.
+ */
+public final class MinuteCounter {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private long[] ids;
+    private int[] minutes;
+    private int[] slots;
+    private int size;
+
+    public MinuteCounter() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public MinuteCounter(final int expectedIds) {
+        assertState(expectedIds >= 0);
+        int capacity = Math.max(1, expectedIds);
+        ids = new long[capacity];
+        minutes = new int[capacity];
+        slots = new int[tableSize(capacity)];
+    }
+
+    /**
+     * Add minutes to an id
+     *
+     * @param id     The id
+     * @param amount The minutes to add
+     * @return The index of the id in insertion order
+     */
+    public int add(final long id, final int amount) {
+        int slot = findSlot(id);
+        if (slots[slot] != 0) {
+            int index = slots[slot] - 1;
+            minutes[index] += amount;
+            return index;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            minutes = Arrays.copyOf(minutes, size * 2);
+        }
+        ids[size] = id;
+        minutes[size] = amount;
+        size++;
+        slots[slot] = size;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return size - 1;
+    }
+
+    /**
+     * @return The index of the id in insertion order, -1 if the id is unknown
+     */
+    public int indexOf(final long id) {
+        return slots[findSlot(id)] - 1;
+    }
+
+    /**
+     * @return The minutes of the id, 0 if the id is unknown
+     */
+    public int minutesFor(final long id) {
+        int index = indexOf(id);
+        return index < 0 ? 0 : minutes[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long idAt(final int index) {
+        assertState(index >= 0 && index < size);
+        return ids[index];
+    }
+
+    public int minutesAt(final int index) {
+        assertState(index >= 0 && index < size);
+        return minutes[index];
+    }
+
+    /**
+     * @return A copy of the counter which uses only the memory needed for its
+     *         content
+     */
+    public MinuteCounter trimmedCopy() {
+        MinuteCounter copy = new MinuteCounter(size);
+        for (int i = 0; i < size; i++) {
+            copy.add(ids[i], minutes[i]);
+        }
+        return copy;
+    }
+
+    private int findSlot(final long id) {
+        int mask = slots.length - 1;
+        int slot = hash(id) & mask;
+        while (slots[slot] != 0 && ids[slots[slot] - 1] != id) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(final int tableSize) {
+        slots = new int[tableSize];
+        int mask = tableSize - 1;
+        for (int index = 0; index < size; index++) {
+            int slot = hash(ids[index]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = index + 1;
+        }
+    }
+
+    private static int tableSize(final int capacity) {
+        return Integer.highestOneBit(capacity) * 4;
+    }
+
+    private static int hash(final long id) {
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
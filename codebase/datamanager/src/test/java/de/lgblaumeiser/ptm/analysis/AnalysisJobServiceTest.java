@@ -0,0 +1,238 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.analysis.AnalysisJobStatus.State;
+
+public class AnalysisJobServiceTest {
+    private static final String ANALYSISID = "blocking";
+    private static final String PROGRESS_ANALYSISID = "progress";
+    private static final String ERROR_ANALYSISID = "error";
+    private static final String FAILING_ANALYSISID = "failing";
+    private static final String USER = "MyFairLady";
+    private static final String OTHER_USER = "HerFairLord";
+    private static final long RETENTION = 1000L;
+    private static final long TIMEOUT = 5000L;
+    private static final CalculationPeriod PERIOD = new CalculationPeriod(LocalDate.of(2017, 3, 1),
+            LocalDate.of(2017, 4, 1));
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicLong clock = new AtomicLong();
+    private DataAnalysisService analysisService;
+    private AnalysisJobService testee;
+
+    private AnalysisResult awaitRelease(final CalculationPeriod period, final String user) {
+        try {
+            release.await(TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return newAnalysisResult()
+                .addColumn("User", CellType.TEXT)
+                .addColumn("First Day", CellType.DATE)
+                .addRow(user, period.firstDay())
+                .build();
+    }
+
+    @Before
+    public void before() {
+        Analysis progressAnalysis = new Analysis() {
+            @Override
+            public AnalysisResult analyze(final CalculationPeriod period, final String user) {
+                return awaitRelease(period, user);
+            }
+
+            @Override
+            public AnalysisResult analyze(final CalculationPeriod period, final String user,
+                    final IntConsumer progress) {
+                progress.accept(40);
+                return awaitRelease(period, user);
+            }
+        };
+        analysisService = new DataAnalysisService()
+                .addAnalysis(ANALYSISID, this::awaitRelease)
+                .addAnalysis(PROGRESS_ANALYSISID, progressAnalysis)
+                .addAnalysis(ERROR_ANALYSISID, (period, user) -> {
+                    throw new AssertionError("Broken analysis");
+                })
+                .addAnalysis(FAILING_ANALYSISID, (period, user) -> {
+                    throw new IllegalStateException();
+                });
+        testee = new AnalysisJobService(analysisService, 2, 1, 2, 3, RETENTION, clock::get);
+    }
+
+    @After
+    public void after() {
+        testee.shutdown();
+    }
+
+    private AnalysisJobStatus submit(final String user) {
+        return testee.submit(user, new AnalysisRequest(ANALYSISID, PERIOD));
+    }
+
+    private State awaitState(final String user, final Long id, final State expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        State state = testee.getStatus(user, id).get().state;
+        while (state != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+            state = testee.getStatus(user, id).get().state;
+        }
+        return state;
+    }
+
+    @Test
+    public void testJobLifecycle() throws InterruptedException {
+        AnalysisJobStatus submitted = submit(USER);
+        assertEquals(ANALYSISID, submitted.analyzerId);
+        assertEquals(State.RUNNING, awaitState(USER, submitted.id, State.RUNNING));
+        assertEquals(State.RUNNING, testee.awaitStatus(USER, submitted.id, 10L).get().state);
+
+        release.countDown();
+        assertEquals(State.DONE, testee.awaitStatus(USER, submitted.id, TIMEOUT).get().state);
+        assertEquals(asList(asList(USER, PERIOD.firstDay())), testee.getResult(USER, submitted.id).get().getRows());
+    }
+
+    @Test
+    public void testJobsOnlyVisibleForSubmittingUser() {
+        AnalysisJobStatus submitted = submit(USER);
+        assertFalse(testee.getStatus(OTHER_USER, submitted.id).isPresent());
+        assertFalse(testee.awaitStatus(OTHER_USER, submitted.id, 10L).isPresent());
+        assertFalse(testee.getResult(OTHER_USER, submitted.id).isPresent());
+        assertFalse(testee.getStatus(USER, submitted.id + 1).isPresent());
+    }
+
+    @Test
+    public void testRunningJobsLimitedPerUser() throws InterruptedException {
+        AnalysisJobStatus first = submit(USER);
+        AnalysisJobStatus second = submit(USER);
+        AnalysisJobStatus other = submit(OTHER_USER);
+        assertEquals(State.RUNNING, awaitState(USER, first.id, State.RUNNING));
+        assertEquals(State.RUNNING, awaitState(OTHER_USER, other.id, State.RUNNING));
+        assertEquals(State.QUEUED, testee.getStatus(USER, second.id).get().state);
+
+        release.countDown();
+        assertEquals(State.DONE, testee.awaitStatus(USER, second.id, TIMEOUT).get().state);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnfinishedJobsLimited() {
+        submit(USER);
+        submit(USER);
+        submit(OTHER_USER);
+        submit(OTHER_USER);
+    }
+
+    @Test
+    public void testQueuedJobsLimitedPerUser() {
+        testee.shutdown();
+        testee = new AnalysisJobService(analysisService, 2, 1, 1, 10, RETENTION, clock::get);
+        submit(USER);
+        submit(USER);
+        try {
+            submit(USER);
+            fail("Third job of the user accepted");
+        } catch (IllegalStateException e) {
+            // expected, the user has a running and a waiting job
+        }
+        assertEquals(State.QUEUED, submit(OTHER_USER).state);
+    }
+
+    @Test
+    public void testProgressReported() throws InterruptedException {
+        AnalysisJobStatus submitted = testee.submit(USER, new AnalysisRequest(PROGRESS_ANALYSISID, PERIOD));
+        assertEquals(0, submitted.progress);
+        assertEquals(State.RUNNING, awaitState(USER, submitted.id, State.RUNNING));
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (testee.getStatus(USER, submitted.id).get().progress == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(40, testee.getStatus(USER, submitted.id).get().progress);
+
+        release.countDown();
+        assertEquals(100, testee.awaitStatus(USER, submitted.id, TIMEOUT).get().progress);
+    }
+
+    @Test
+    public void testErrorFailsJobAndFreesSlot() {
+        AnalysisJobStatus broken = testee.submit(USER, new AnalysisRequest(ERROR_ANALYSISID, PERIOD));
+        AnalysisJobStatus failed = testee.awaitStatus(USER, broken.id, TIMEOUT).get();
+        assertEquals(State.FAILED, failed.state);
+        assertTrue(failed.error.contains("Broken analysis"));
+
+        release.countDown();
+        AnalysisJobStatus next = submit(USER);
+        assertEquals(State.DONE, testee.awaitStatus(USER, next.id, TIMEOUT).get().state);
+    }
+
+    @Test
+    public void testFailedJob() {
+        AnalysisJobStatus submitted = testee.submit(USER, new AnalysisRequest(FAILING_ANALYSISID, PERIOD));
+        AnalysisJobStatus failed = testee.awaitStatus(USER, submitted.id, TIMEOUT).get();
+        assertEquals(State.FAILED, failed.state);
+        assertTrue(failed.error.contains(IllegalStateException.class.getName()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownAnalysisRejected() {
+        testee.submit(USER, new AnalysisRequest("unknown", PERIOD));
+    }
+
+    @Test
+    public void testShutdownFailsJobsNotStarted() throws InterruptedException {
+        AnalysisJobStatus running = submit(USER);
+        AnalysisJobStatus waiting = submit(USER);
+        assertEquals(State.RUNNING, awaitState(USER, running.id, State.RUNNING));
+        testee.shutdown();
+
+        AnalysisJobStatus stopped = testee.awaitStatus(USER, waiting.id, TIMEOUT).get();
+        assertEquals(State.FAILED, stopped.state);
+        assertEquals("Analysis service stopped", stopped.error);
+        // The interrupted job finishes without starting further jobs
+        assertTrue(testee.awaitStatus(USER, running.id, TIMEOUT).get().state.isFinished());
+        try {
+            submit(OTHER_USER);
+            fail("Job accepted after shutdown");
+        } catch (IllegalStateException e) {
+            // expected, the service is stopped
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testResultOfUnfinishedJob() {
+        testee.getResult(USER, submit(USER).id);
+    }
+
+    @Test
+    public void testFinishedJobsRetained() {
+        release.countDown();
+        AnalysisJobStatus submitted = submit(USER);
+        assertEquals(State.DONE, testee.awaitStatus(USER, submitted.id, TIMEOUT).get().state);
+
+        clock.addAndGet(RETENTION);
+        assertTrue(testee.getResult(USER, submitted.id).isPresent());
+        clock.incrementAndGet();
+        assertFalse(testee.getStatus(USER, submitted.id).isPresent());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.time.LocalDate;
+
+import org.junit.Test;
+
+public class AnalysisResultCacheTest {
+    private static final String ANALYSIS = "analysis";
+    private static final String USER = "MyFairLady";
+    private static final String OTHER_USER = "OtherUser";
+    private static final LocalDate DAY = LocalDate.of(2017, 3, 8);
+    private static final CalculationPeriod PERIOD = new CalculationPeriod(DAY, DAY.plusDays(1L));
+
+    private final AnalysisResultCache testee = new AnalysisResultCache(AnalysisResultCache.DEFAULT_SIZE);
+
+    private static AnalysisResult result(final String text) {
+        return newAnalysisResult().addColumn("Text", CellType.TEXT).addRow(text).build();
+    }
+
+    private AnalysisResult computeWhile(final Runnable write) {
+        return testee.get(ANALYSIS, USER, PERIOD, () -> {
+            write.run();
+            return result("computed");
+        });
+    }
+
+    @Test
+    public void testWriteOfOtherUserKeepsResultCached() {
+        AnalysisResult computed = computeWhile(() -> testee.invalidate(OTHER_USER, DAY));
+        assertSame(computed, testee.get(ANALYSIS, USER, PERIOD, () -> result("recomputed")));
+        assertEquals(1L, testee.hits());
+        assertEquals(1L, testee.misses());
+    }
+
+    @Test
+    public void testWriteOfSameUserDiscardsResult() {
+        computeWhile(() -> testee.invalidate(USER, DAY.plusDays(7L)));
+        assertEquals("recomputed", testee.get(ANALYSIS, USER, PERIOD, () -> result("recomputed"))
+                .getRows().get(0).get(0));
+        assertEquals(0L, testee.hits());
+        assertEquals(2L, testee.misses());
+    }
+
+    @Test
+    public void testClearDiscardsResultOfAnyUser() {
+        testee.invalidate(USER, DAY);
+        computeWhile(testee::clear);
+        testee.get(ANALYSIS, USER, PERIOD, () -> result("recomputed"));
+        assertEquals(0L, testee.hits());
+        assertEquals(2L, testee.misses());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static de.lgblaumeiser.ptm.analysis.AnalysisResultFormatter.toTable;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class AnalysisResultTest {
+    private static final LocalDate DAY = LocalDate.of(2020, 5, 4);
+
+    private static AnalysisResult testResult() {
+        return newAnalysisResult()
+                .addColumn("Day", CellType.DATE)
+                .addColumn("Start", CellType.TIME)
+                .addColumn("Hours", CellType.MINUTES)
+                .addColumn("%", CellType.PERCENTAGE)
+                .addColumn("Comment", CellType.TEXT)
+                .addRow(DAY, LocalTime.of(8, 5), 510, 62.5, "Fine")
+                .addRow(DAY.plusDays(1), null, -75, null, "")
+                .setTotals(null, null, 435, 100.0, null)
+                .build();
+    }
+
+    @Test
+    public void testFormattedTable() {
+        assertEquals(asList(
+                asList("Day", "Start", "Hours", "%", "Comment"),
+                asList("2020-05-04", "08:05", " 08:30", String.format("%2.1f", 62.5) + "%", "Fine"),
+                asList("2020-05-05", "", "-01:15", "", ""),
+                asList("", "", " 07:15", String.format("%2.1f", 100.0) + "%", "")),
+                new ArrayList<>(toTable(testResult())));
+    }
+
+    @Test
+    public void testCompactRoundTrip() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String json = mapper.writeValueAsString(CompactAnalysisResult.of(testResult()));
+        assertTrue(json.contains("[\"2020-05-04\",\"08:05\",510,62.5,\"Fine\"]"));
+
+        AnalysisResult result = mapper.readValue(json, CompactAnalysisResult.class).toAnalysisResult();
+        assertEquals(testResult().getRows(), result.getRows());
+        assertEquals(testResult().getTotals(), result.getTotals());
+        assertEquals(CellType.PERCENTAGE, result.getColumns().get(3).getType());
+    }
+
+    @Test
+    public void testCompactWithoutTotals() throws Exception {
+        AnalysisResult withoutTotals = newAnalysisResult().addColumn("Day", CellType.DATE).addRow(DAY).build();
+        ObjectMapper mapper = new ObjectMapper();
+        CompactAnalysisResult compact = mapper.readValue(
+                mapper.writeValueAsString(CompactAnalysisResult.of(withoutTotals)), CompactAnalysisResult.class);
+        assertNull(compact.totals);
+        assertFalse(compact.toAnalysisResult().hasTotals());
+        assertEquals(2, toTable(withoutTotals).size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCellTypeChecked() {
+        newAnalysisResult().addColumn("Hours", CellType.MINUTES).addRow("08:30");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCellCountChecked() {
+        newAnalysisResult().addColumn("Hours", CellType.MINUTES).addRow(30, 40);
+    }
+}
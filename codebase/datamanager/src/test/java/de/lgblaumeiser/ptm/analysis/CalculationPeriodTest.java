@@ -0,0 +1,75 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.junit.Test;
+
+public class CalculationPeriodTest {
+    private static final LocalDate FIRSTDAY = LocalDate.of(2020, 2, 27);
+    private static final LocalDate FIRSTDAYAFTER = LocalDate.of(2020, 3, 2);
+
+    private final CalculationPeriod testee = new CalculationPeriod(FIRSTDAY, FIRSTDAYAFTER);
+
+    @Test
+    public void testDays() {
+        Collection<LocalDate> days = testee.days();
+        assertEquals(4, days.size());
+        assertEquals(asList(FIRSTDAY, FIRSTDAY.plusDays(1), FIRSTDAY.plusDays(2), FIRSTDAY.plusDays(3)),
+                new ArrayList<>(days));
+        assertTrue(days.contains(LocalDate.of(2020, 2, 29)));
+        assertFalse(days.contains(FIRSTDAYAFTER));
+    }
+
+    @Test
+    public void testIsInPeriod() {
+        assertTrue(testee.isInPeriod(FIRSTDAY));
+        assertTrue(testee.isInPeriod(FIRSTDAYAFTER.minusDays(1)));
+        assertFalse(testee.isInPeriod(FIRSTDAY.minusDays(1)));
+        assertFalse(testee.isInPeriod(FIRSTDAYAFTER));
+    }
+
+    @Test
+    public void testIsDayPeriod() {
+        assertFalse(testee.isDayPeriod());
+        assertTrue(new CalculationPeriod(FIRSTDAY, FIRSTDAY.plusDays(1)).isDayPeriod());
+    }
+
+    @Test
+    public void testMultiYearPeriod() {
+        CalculationPeriod period = new CalculationPeriod(LocalDate.of(1900, 1, 1), LocalDate.of(2100, 1, 1));
+        assertEquals(73049, period.days().size());
+        assertTrue(period.isInPeriod(LocalDate.of(2000, 2, 29)));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testDaysUnmodifiable() {
+        testee.days().add(FIRSTDAYAFTER);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testEmptyPeriod() {
+        new CalculationPeriod(FIRSTDAY, FIRSTDAY);
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(testee, new CalculationPeriod(FIRSTDAY, FIRSTDAYAFTER));
+        assertEquals(testee.hashCode(), new CalculationPeriod(FIRSTDAY, FIRSTDAYAFTER).hashCode());
+        assertNotEquals(testee, new CalculationPeriod(FIRSTDAY, FIRSTDAYAFTER.plusDays(1)));
+    }
+}
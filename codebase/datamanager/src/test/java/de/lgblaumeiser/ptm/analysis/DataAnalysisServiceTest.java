@@ -7,20 +7,44 @@
  */
 package de.lgblaumeiser.ptm.analysis;
 
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static de.lgblaumeiser.ptm.datamanager.model.Activity.newActivity;
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
 import static de.lgblaumeiser.ptm.util.Utils.emptyString;
-import static de.lgblaumeiser.ptm.util.Utils.getFirstFromCollection;
 import static java.util.Arrays.asList;
-import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import de.lgblaumeiser.ptm.analysis.AnalysisResult.AnalysisResultBuilder;
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.store.BookingStore;
+import de.lgblaumeiser.ptm.store.DayRollup;
+import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.store.ObservableStore;
+import de.lgblaumeiser.ptm.store.StoreListener;
+
 public class DataAnalysisServiceTest {
     private DataAnalysisService testee;
 
@@ -33,39 +57,40 @@ public class DataAnalysisServiceTest {
     private static final String DATESTRINGDAYFIRST = "2017-03-06";
     private static final String DATESTRINGDAYFIRSTAFTER = "2017-03-13";
     private static final String USER = "MyFairLady";
+    private static final String OTHER_USER = "HerFairLord";
+    private static final String BOOKING_ANALYSIS = "bookinganalysis";
 
     @Before
     public void before() {
-        DataAnalysisService testSetup = new DataAnalysisService().addAnalysis(ANALYSISID, new Analysis() {
+        DataAnalysisService testSetup = new DataAnalysisService().addAnalysis(ANALYSISID, dayListAnalysis());
+        testee = testSetup;
+    }
+
+    private static Analysis dayListAnalysis() {
+        return new Analysis() {
             @Override
-            public Collection<Collection<String>> analyze(final CalculationPeriod period, final String user) {
-                Collection<String> returnParam = new ArrayList<>(period
-                        .days()
-                        .stream()
-                        .map(date -> date.format(DateTimeFormatter.ISO_LOCAL_DATE))
-                        .collect(toList()));
-                return asList(returnParam);
+            public AnalysisResult analyze(final CalculationPeriod period, final String user) {
+                AnalysisResultBuilder result = newAnalysisResult().addColumn("Day", CellType.DATE);
+                period.days().forEach(result::addRow);
+                return result.build();
             }
-        });
-        testee = testSetup;
+        };
     }
 
     @Test
     public void testDataAnalysisServicePeriod() {
-        Collection<Collection<String>> result = testee.analyze(ANALYSISID, USER,
+        AnalysisResult result = testee.analyze(ANALYSISID, USER,
                 new CalculationPeriod(LocalDate.parse(DATESTRINGDAYFIRST), LocalDate.parse(DATESTRINGDAYFIRSTAFTER)));
-        assertEquals(1, result.size());
-        Collection<String> content = getFirstFromCollection(result);
-        assertEquals(7, content.size());
+        assertEquals(1, result.getColumns().size());
+        assertEquals(7, result.getRows().size());
     }
 
     @Test
     public void testDataAnalysisServiceDay() {
-        Collection<Collection<String>> result = testee.analyze(ANALYSISID, USER,
+        AnalysisResult result = testee.analyze(ANALYSISID, USER,
                 new CalculationPeriod(LocalDate.parse(DATESTRINGDAY), LocalDate.parse(DATESTRINGDAY).plusDays(1L)));
-        assertEquals(1, result.size());
-        Collection<String> content = getFirstFromCollection(result);
-        assertEquals(1, content.size());
+        assertEquals(1, result.getColumns().size());
+        assertEquals(asList(asList(LocalDate.parse(DATESTRINGDAY))), result.getRows());
     }
 
     @Test(expected = IllegalStateException.class)
@@ -91,4 +116,322 @@ public class DataAnalysisServiceTest {
         testee.analyze(ANALYSISID, USER,
                 new CalculationPeriod(LocalDate.parse(DATESTRINGDAY), LocalDate.parse(DATESTRINGDAY)));
     }
+
+    @Test
+    public void testResultCache() {
+        TestObservable<Activity> activities = new TestObservable<>();
+        TestObservable<Booking> bookings = new TestObservable<>();
+        AtomicInteger bookingAnalyses = new AtomicInteger();
+        AtomicInteger activityAnalyses = new AtomicInteger();
+        DataAnalysisService cached = new DataAnalysisService()
+                .addAnalysis(BOOKING_ANALYSIS, countingAnalysis(bookingAnalyses, false))
+                .addAnalysis(ANALYSISID, countingAnalysis(activityAnalyses, true))
+                .enableResultCache(activities, bookings, 10);
+        CalculationPeriod week = new CalculationPeriod(LocalDate.parse(DATESTRINGDAYFIRST),
+                LocalDate.parse(DATESTRINGDAYFIRSTAFTER));
+
+        AnalysisResult first = cached.analyze(BOOKING_ANALYSIS, USER, week);
+        assertEquals(first, cached.analyze(BOOKING_ANALYSIS, USER, week));
+        cached.analyze(ANALYSISID, USER, week);
+        assertEquals(1, bookingAnalyses.get());
+        assertEquals(1L, cached.getCacheHits());
+        assertEquals(2L, cached.getCacheMisses());
+
+        bookings.change(booking(USER, LocalDate.parse(DATESTRINGDAYFIRSTAFTER)));
+        bookings.change(booking(OTHER_USER, LocalDate.parse(DATESTRINGDAY)));
+        cached.analyze(BOOKING_ANALYSIS, USER, week);
+        assertEquals(1, bookingAnalyses.get());
+
+        bookings.change(booking(USER, LocalDate.parse(DATESTRINGDAY)));
+        cached.analyze(BOOKING_ANALYSIS, USER, week);
+        cached.analyze(ANALYSISID, USER, week);
+        assertEquals(2, bookingAnalyses.get());
+        assertEquals(2, activityAnalyses.get());
+
+        activities.change(newActivity().setUser(USER).setProjectName("p").setActivityName("a").setProjectId("1")
+                .setActivityId("2").build());
+        cached.analyze(BOOKING_ANALYSIS, USER, week);
+        cached.analyze(ANALYSISID, USER, week);
+        assertEquals(2, bookingAnalyses.get());
+        assertEquals(3, activityAnalyses.get());
+
+        bookings.replaced = true;
+        cached.analyze(BOOKING_ANALYSIS, USER, week);
+        assertEquals(3, bookingAnalyses.get());
+    }
+
+    @Test
+    public void testResultCacheEvictsLeastRecentlyUsed() {
+        AtomicInteger analyses = new AtomicInteger();
+        DataAnalysisService cached = new DataAnalysisService()
+                .addAnalysis(ANALYSISID, countingAnalysis(analyses, true))
+                .enableResultCache(new TestObservable<>(), new TestObservable<>(), 2);
+        LocalDate day = LocalDate.parse(DATESTRINGDAY);
+        CalculationPeriod period1 = new CalculationPeriod(day, day.plusDays(1L));
+        CalculationPeriod period2 = new CalculationPeriod(day, day.plusDays(2L));
+        CalculationPeriod period3 = new CalculationPeriod(day, day.plusDays(3L));
+        cached.analyze(ANALYSISID, USER, period1);
+        cached.analyze(ANALYSISID, USER, period2);
+        cached.analyze(ANALYSISID, USER, period1);
+        cached.analyze(ANALYSISID, USER, period3);
+        assertEquals(3, analyses.get());
+        cached.analyze(ANALYSISID, USER, period1);
+        assertEquals(3, analyses.get());
+        cached.analyze(ANALYSISID, USER, period2);
+        assertEquals(4, analyses.get());
+    }
+
+    @Test
+    public void testConcurrentIdenticalRequestsShareComputation() throws Exception {
+        AtomicInteger analyses = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Analysis blockingAnalysis = (period, user) -> {
+            analyses.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return newAnalysisResult().addColumn("User", CellType.TEXT).addRow(user).build();
+        };
+        DataAnalysisService coalescing = new DataAnalysisService().addAnalysis(ANALYSISID, blockingAnalysis);
+        CalculationPeriod period = new CalculationPeriod(LocalDate.parse(DATESTRINGDAY),
+                LocalDate.parse(DATESTRINGDAY).plusDays(1L));
+        List<CompletableFuture<AnalysisResult>> requests = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                requests.add(CompletableFuture.supplyAsync(() -> coalescing.analyze(ANALYSISID, USER, period),
+                        executor));
+            }
+            long deadline = System.currentTimeMillis() + 5000L;
+            while (coalescing.getCoalescedRequests() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1L);
+            }
+            release.countDown();
+            AnalysisResult result = requests.get(0).get(5, TimeUnit.SECONDS);
+            for (CompletableFuture<AnalysisResult> request : requests) {
+                assertSame(result, request.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, analyses.get());
+        assertEquals(3L, coalescing.getCoalescedRequests());
+        coalescing.analyze(ANALYSISID, USER, period);
+        assertEquals(2, analyses.get());
+    }
+
+    @Test
+    public void testBatchSharesRollupRetrieval() {
+        List<String> retrievals = new ArrayList<>();
+        BookingStore bookings = new BookingStore() {
+            @Override
+            public SortedMap<LocalDate, DayRollup> retrieveRollupsByUserAndRange(final String user,
+                    final LocalDate firstDay, final LocalDate firstDayAfter) {
+                retrievals.add(firstDay + "/" + firstDayAfter);
+                SortedMap<LocalDate, DayRollup> result = new TreeMap<>();
+                new CalculationPeriod(firstDay, firstDayAfter).days()
+                        .forEach(day -> result.put(day, DayRollup.of(day, new ArrayList<>())));
+                return result;
+            }
+
+            @Override
+            public Collection<Booking> retrieveAll() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public Optional<Booking> retrieveById(final Long id) {
+                return Optional.empty();
+            }
+
+            @Override
+            public Booking store(final Booking object) {
+                return object;
+            }
+
+            @Override
+            public void deleteById(final Long id) {
+                // Not needed for test
+            }
+        };
+        RollupAnalysis dayCounter = new RollupAnalysis() {
+            @Override
+            public AnalysisResult analyze(final CalculationPeriod period, final String user) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public AnalysisResult analyze(final CalculationPeriod period,
+                    final SortedMap<LocalDate, DayRollup> rollups) {
+                return newAnalysisResult()
+                        .addColumn("First Day", CellType.DATE)
+                        .addColumn("Days", CellType.TEXT)
+                        .addRow(rollups.firstKey(), String.valueOf(rollups.size()))
+                        .build();
+            }
+        };
+        DataAnalysisService batchService = new DataAnalysisService()
+                .addAnalysis(ANALYSISID, dayListAnalysis())
+                .addAnalysis(BOOKING_ANALYSIS, dayCounter)
+                .setBookingStore(bookings);
+        LocalDate day = LocalDate.parse(DATESTRINGDAY);
+        CalculationPeriod dayPeriod = new CalculationPeriod(day, day.plusDays(1L));
+        CalculationPeriod month = new CalculationPeriod(LocalDate.parse(DATESTRINGMONTH + "-01"),
+                LocalDate.parse(DATESTRINGMONTH + "-01").plusMonths(1L));
+
+        List<AnalysisResult> results = batchService.analyze(USER, asList(
+                new AnalysisRequest(BOOKING_ANALYSIS, dayPeriod),
+                new AnalysisRequest(ANALYSISID, dayPeriod),
+                new AnalysisRequest(BOOKING_ANALYSIS, month)));
+        assertEquals(asList("2017-03-01/2017-04-01"), retrievals);
+        assertEquals(3, results.size());
+        assertEquals(asList(asList(day, "1")), results.get(0).getRows());
+        assertEquals(asList(asList(day)), results.get(1).getRows());
+        assertEquals(asList(asList(LocalDate.parse("2017-03-01"), "31")), results.get(2).getRows());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBatchUnknownAnalysis() {
+        testee.analyze(USER, asList(new AnalysisRequest("unknown",
+                new CalculationPeriod(LocalDate.parse(DATESTRINGDAY), LocalDate.parse(DATESTRINGDAY).plusDays(1L)))));
+    }
+
+    @Test
+    public void testTeamAnalysisRunsUsersInParallel() {
+        List<Booking> stored = new ArrayList<>();
+        LocalDate day = LocalDate.parse(DATESTRINGDAY);
+        asList(USER, OTHER_USER, "ThirdUser", "FourthUser").forEach(user -> {
+            stored.add(booking(user, day));
+            stored.add(booking(user, day.plusDays(1L)));
+        });
+        stored.add(booking(USER, day.plusMonths(1L)));
+        BookingStore bookings = BookingStore.asBookingStore(new TestBookings(stored));
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch allStarted = new CountDownLatch(4);
+        RollupAnalysis dayCounter = new RollupAnalysis() {
+            @Override
+            public AnalysisResult analyze(final CalculationPeriod period, final String user) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public AnalysisResult analyze(final CalculationPeriod period,
+                    final SortedMap<LocalDate, DayRollup> rollups) {
+                threads.add(Thread.currentThread().getName());
+                allStarted.countDown();
+                try {
+                    allStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return newAnalysisResult()
+                        .addColumn("Days", CellType.TEXT)
+                        .addRow(String.valueOf(rollups.size()))
+                        .build();
+            }
+        };
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            DataAnalysisService teamService = new DataAnalysisService()
+                    .addAnalysis(ANALYSISID, dayListAnalysis())
+                    .addAnalysis(BOOKING_ANALYSIS, dayCounter)
+                    .setBookingStore(bookings)
+                    .setAnalysisPool(pool);
+            AnalysisResult summary = teamService.analyzeTeam(BOOKING_ANALYSIS,
+                    new CalculationPeriod(LocalDate.parse(DATESTRINGMONTH + "-01"),
+                            LocalDate.parse(DATESTRINGMONTH + "-01").plusMonths(1L)));
+            assertEquals(asList(
+                    asList("FourthUser", "2"),
+                    asList(OTHER_USER, "2"),
+                    asList(USER, "2"),
+                    asList("ThirdUser", "2")),
+                    summary.getRows());
+            assertEquals(4, threads.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTeamAnalysisNeedsRollupAnalysis() {
+        testee.setBookingStore(BookingStore.asBookingStore(new TestBookings(new ArrayList<>())))
+                .analyzeTeam(ANALYSISID, new CalculationPeriod(LocalDate.parse(DATESTRINGDAY),
+                        LocalDate.parse(DATESTRINGDAY).plusDays(1L)));
+    }
+
+    private static Analysis countingAnalysis(final AtomicInteger counter, final boolean usesActivities) {
+        return new Analysis() {
+            @Override
+            public AnalysisResult analyze(final CalculationPeriod period, final String user) {
+                counter.incrementAndGet();
+                return newAnalysisResult()
+                        .addColumn("User", CellType.TEXT)
+                        .addColumn("First Day", CellType.DATE)
+                        .addRow(user, period.firstDay())
+                        .build();
+            }
+
+            @Override
+            public boolean usesActivities() {
+                return usesActivities;
+            }
+        };
+    }
+
+    private static Booking booking(final String user, final LocalDate day) {
+        return newBooking().setUser(user).setBookingday(day).setActivity(1L).setStarttime(LocalTime.of(8, 0))
+                .build();
+    }
+
+    private static class TestObservable<T> implements ObservableStore<T> {
+        private final List<StoreListener<T>> listeners = new ArrayList<>();
+        private boolean replaced = false;
+
+        @Override
+        public void addStoreListener(final StoreListener<T> listener) {
+            listeners.add(listener);
+        }
+
+        @Override
+        public void checkForReplacedContent() {
+            if (replaced) {
+                replaced = false;
+                listeners.forEach(StoreListener::contentReplaced);
+            }
+        }
+
+        void change(final T object) {
+            listeners.forEach(l -> l.objectChanged(Optional.empty(), Optional.of(object)));
+        }
+    }
+
+    private static class TestBookings implements ObjectStore<Booking> {
+        private final Collection<Booking> bookings;
+
+        TestBookings(final Collection<Booking> bookings) {
+            this.bookings = bookings;
+        }
+
+        @Override
+        public Collection<Booking> retrieveAll() {
+            return bookings;
+        }
+
+        @Override
+        public Optional<Booking> retrieveById(final Long id) {
+            return Optional.empty();
+        }
+
+        @Override
+        public Booking store(final Booking object) {
+            return object;
+        }
+
+        @Override
+        public void deleteById(final Long id) {
+            // Not needed for test
+        }
+    }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis;
+
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class InFlightAnalysesTest {
+    private static final LocalDate DAY = LocalDate.of(2017, 3, 8);
+    private static final AnalysisKey KEY = new AnalysisKey("analysis", "MyFairLady",
+            new CalculationPeriod(DAY, DAY.plusDays(1L)));
+    private static final long TIMEOUT = 5L;
+
+    private final InFlightAnalyses testee = new InFlightAnalyses();
+
+    private static AnalysisResult result(final String text) {
+        return newAnalysisResult().addColumn("Text", CellType.TEXT).addRow(text).build();
+    }
+
+    private CompletableFuture<AnalysisResult> computeBlocked(final CountDownLatch started,
+            final CountDownLatch release, final AnalysisResult result) {
+        return CompletableFuture.supplyAsync(() -> testee.compute(KEY, () -> {
+            started.countDown();
+            try {
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }));
+    }
+
+    private void awaitCoalesced(final long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while (testee.coalesced() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1L);
+        }
+    }
+
+    @Test
+    public void testWaitingCallerSharesResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AnalysisResult shared = result("shared");
+        CompletableFuture<AnalysisResult> first = computeBlocked(started, release, shared);
+        started.await(TIMEOUT, TimeUnit.SECONDS);
+        CompletableFuture<AnalysisResult> second = CompletableFuture.supplyAsync(() -> testee.compute(KEY, () -> {
+            fail("Computation must be shared");
+            return null;
+        }));
+        awaitCoalesced(1L);
+        release.countDown();
+
+        assertSame(shared, first.get(TIMEOUT, TimeUnit.SECONDS));
+        assertSame(shared, second.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1L, testee.coalesced());
+        assertNotSame(shared, testee.compute(KEY, () -> result("later")));
+    }
+
+    @Test
+    public void testWaitingCallerReceivesException() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<AnalysisResult> first = CompletableFuture.supplyAsync(() -> testee.compute(KEY, () -> {
+            started.countDown();
+            try {
+                release.await(TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("failed");
+        }));
+        started.await(TIMEOUT, TimeUnit.SECONDS);
+        CompletableFuture<Throwable> second = CompletableFuture.supplyAsync(() -> {
+            try {
+                testee.compute(KEY, () -> result("unexpected"));
+                return null;
+            } catch (IllegalStateException e) {
+                return e;
+            }
+        });
+        awaitCoalesced(1L);
+        release.countDown();
+
+        assertEquals("failed", second.get(TIMEOUT, TimeUnit.SECONDS).getMessage());
+        assertEquals("failed", first.handle((r, e) -> e.getCause().getMessage()).get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testForgottenComputationNotShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AnalysisResult outdated = result("outdated");
+        CompletableFuture<AnalysisResult> first = computeBlocked(started, release, outdated);
+        started.await(TIMEOUT, TimeUnit.SECONDS);
+
+        testee.forget(key -> key.isForUserAndDay("MyFairLady", DAY));
+        AnalysisResult current = result("current");
+        assertSame(current, testee.compute(KEY, () -> current));
+        release.countDown();
+        assertSame(outdated, first.get(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(0L, testee.coalesced());
+    }
+}
@@ -153,6 +153,8 @@ public abstract class AbstractComputerTest {
 
     private static Collection<Activity> testAStore = Arrays.asList(ACTIVITY1, ACTIVITY2, ACTIVITY3);
 
+    protected int activityLookups;
+
     @Before
     public void before() {
         ObjectStore<Booking> testdataB = new ObjectStore<Booking>() {
@@ -193,6 +195,7 @@ public abstract class AbstractComputerTest {
 
             @Override
             public Optional<Activity> retrieveById(final Long id) {
+                activityLookups++;
                 switch (id.intValue()) {
                 case 1:
                     return Optional.of(ACTIVITY1);
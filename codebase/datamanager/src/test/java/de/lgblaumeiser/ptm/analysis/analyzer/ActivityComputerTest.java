@@ -7,6 +7,7 @@
  */
 package de.lgblaumeiser.ptm.analysis.analyzer;
 
+import static de.lgblaumeiser.ptm.analysis.AnalysisResultFormatter.toTable;
 import static org.junit.Assert.assertEquals;
 
 import java.util.Collection;
@@ -27,25 +28,31 @@ public class ActivityComputerTest extends AbstractComputerTest {
 
     @Test
     public void testActivityComputerFixed() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-01", "2017-04-01"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-01", "2017-04-01"), USERNAME));
         assertEquals(5, analysisResults.size());
         assertEquals(200.0, sumPercentages(analysisResults), DOUBLE_COMPARISON_DELTA);
     }
 
     @Test
     public void testActivityComputerDay() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-15", "2017-04-16"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-15", "2017-04-16"), USERNAME));
         assertEquals(4, analysisResults.size());
         assertEquals(200.0, sumPercentages(analysisResults), DOUBLE_COMPARISON_DELTA);
     }
 
     @Test
     public void testActivityComputerWeek() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-06", "2017-03-13"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-06", "2017-03-13"), USERNAME));
         assertEquals(5, analysisResults.size());
         assertEquals(200.0, sumPercentages(analysisResults), DOUBLE_COMPARISON_DELTA);
     }
+
+    @Test
+    public void testActivitiesLoadedOncePerAnalysis() {
+        testee.analyze(createPeriod("2017-03-01", "2017-04-01"), USERNAME);
+        assertEquals(3, activityLookups);
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis.analyzer;
+
+import static de.lgblaumeiser.ptm.analysis.analyzer.SyntheticData.FIRST_DAY;
+
+import java.time.LocalDate;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.RollupAnalysis;
+import de.lgblaumeiser.ptm.store.DayRollup;
+import de.lgblaumeiser.ptm.store.IndexedBookingStore;
+
+/**
+ * Benchmark of the aggregation of the analyses on the rollups of one and of
+ * four years of bookings. The main method runs with the gc profiler, the
+ * gc.alloc.rate.norm values of both periods show the allocation per analysis,
+ * their difference divided by the additional bookings is the allocation per
+ * booking. Run with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnalysisAggregationBenchmark {
+    @Param({ "hours", "activities", "projects" })
+    public String analyzer;
+
+    @Param({ "1", "4" })
+    public int years;
+
+    private RollupAnalysis analysis;
+    private CalculationPeriod period;
+    private SortedMap<LocalDate, DayRollup> rollups;
+
+    @Setup
+    public void setUp() {
+        SyntheticData data = new SyntheticData(4, 1, 10);
+        if ("hours".equals(analyzer)) {
+            analysis = new HourComputer(data.bookings());
+        } else if ("activities".equals(analyzer)) {
+            analysis = new ActivityComputer(data.bookings(), data.activities());
+        } else {
+            analysis = new ProjectComputer(data.bookings(), data.activities());
+        }
+        period = new CalculationPeriod(FIRST_DAY, FIRST_DAY.plusYears(years));
+        rollups = new IndexedBookingStore(data.bookings(), () -> "benchmark")
+                .retrieveRollupsByUserAndRange(SyntheticData.user(0), period.firstDay(), period.firstDayAfter());
+    }
+
+    @Benchmark
+    public AnalysisResult aggregate() {
+        return analysis.analyze(period, rollups);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AnalysisAggregationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis.analyzer;
+
+import static de.lgblaumeiser.ptm.analysis.analyzer.SyntheticData.FIRST_DAY;
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.RollupAnalysis;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.store.DayRollup;
+import de.lgblaumeiser.ptm.store.IndexedBookingStore;
+
+/**
+ * Checks the allocation of the project and activity aggregation. The bookings
+ * are aggregated into day rollups when they are written, so the analyses only
+ * visit one rollup per day. The allocation of an analysis over one year is
+ * compared with an analysis over four years, both produce the same result
+ * lines, so the analysis does not allocate per additional booking. The per
+ * booking work on the write path, the rollup of a day computed from its
+ * bookings, is checked to allocate a bounded amount per booking of the day by
+ * comparing days with different numbers of bookings.
+ */
+public class AnalysisAllocationTest {
+    private static final int RUNS = 20;
+    private static final double MAX_BYTES_PER_BOOKING = 1.0;
+    private static final double MAX_ROLLUP_BYTES_PER_BOOKING = 128.0;
+    private static final int FEW_BOOKINGS = 16;
+    private static final int MANY_BOOKINGS = 64;
+
+    private SyntheticData data;
+    private IndexedBookingStore store;
+    private com.sun.management.ThreadMXBean threadBean;
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        data = new SyntheticData(4, 1, 10);
+        store = new IndexedBookingStore(data.bookings(), () -> "allocation");
+    }
+
+    @Test
+    public void testActivityAggregation() {
+        assertNoAllocationPerBooking(new ActivityComputer(data.bookings(), data.activities()));
+    }
+
+    @Test
+    public void testProjectAggregation() {
+        assertNoAllocationPerBooking(new ProjectComputer(data.bookings(), data.activities()));
+    }
+
+    @Test
+    public void testRollupAllocationPerBooking() {
+        List<Booking> fewBookings = dayBookings(FEW_BOOKINGS);
+        List<Booking> manyBookings = dayBookings(MANY_BOOKINGS);
+        assertEquals(MANY_BOOKINGS * 10, DayRollup.of(FIRST_DAY, manyBookings).getTotalMinutes());
+
+        long additionalBytes = minimalAllocation(() -> DayRollup.of(FIRST_DAY, manyBookings))
+                - minimalAllocation(() -> DayRollup.of(FIRST_DAY, fewBookings));
+        double bytesPerBooking = (double) additionalBytes / (MANY_BOOKINGS - FEW_BOOKINGS);
+        assertTrue("Allocated " + bytesPerBooking + " bytes per booking of a day",
+                bytesPerBooking < MAX_ROLLUP_BYTES_PER_BOOKING);
+    }
+
+    private static List<Booking> dayBookings(final int count) {
+        List<Booking> bookings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalTime start = LocalTime.MIDNIGHT.plusMinutes(10L * i);
+            bookings.add(newBooking()
+                    .setUser(SyntheticData.user(0))
+                    .setBookingday(FIRST_DAY)
+                    .setActivity((long) (i % 10))
+                    .setStarttime(start)
+                    .setEndtime(start.plusMinutes(10L))
+                    .setComment("Comment" + i % 5)
+                    .build());
+        }
+        return bookings;
+    }
+
+    private void assertNoAllocationPerBooking(final RollupAnalysis analysis) {
+        CalculationPeriod oneYear = new CalculationPeriod(FIRST_DAY, FIRST_DAY.plusYears(1));
+        CalculationPeriod fourYears = new CalculationPeriod(FIRST_DAY, FIRST_DAY.plusYears(4));
+        SortedMap<LocalDate, DayRollup> oneYearRollups = rollups(oneYear);
+        SortedMap<LocalDate, DayRollup> fourYearRollups = rollups(fourYears);
+        assertEquals(analysis.analyze(oneYear, oneYearRollups).getRows().size(),
+                analysis.analyze(fourYears, fourYearRollups).getRows().size());
+
+        long additionalBookings = bookingCount(fourYears) - bookingCount(oneYear);
+        long additionalBytes = minimalAllocation(() -> analysis.analyze(fourYears, fourYearRollups))
+                - minimalAllocation(() -> analysis.analyze(oneYear, oneYearRollups));
+        double bytesPerBooking = (double) additionalBytes / additionalBookings;
+        assertTrue("Allocated " + bytesPerBooking + " bytes per booking", bytesPerBooking < MAX_BYTES_PER_BOOKING);
+    }
+
+    private SortedMap<LocalDate, DayRollup> rollups(final CalculationPeriod period) {
+        return store.retrieveRollupsByUserAndRange(SyntheticData.user(0), period.firstDay(), period.firstDayAfter());
+    }
+
+    private long bookingCount(final CalculationPeriod period) {
+        return store.retrieveMatching(bookingsOf(SyntheticData.user(0), period.firstDay(), period.firstDayAfter()))
+                .size();
+    }
+
+    private long minimalAllocation(final Runnable operation) {
+        long threadId = Thread.currentThread().getId();
+        long minimum = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            operation.run();
+            minimum = Math.min(minimum, threadBean.getThreadAllocatedBytes(threadId) - before);
+        }
+        return minimum;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis.analyzer;
+
+import static de.lgblaumeiser.ptm.analysis.analyzer.SyntheticData.FIRST_DAY;
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
+import static java.util.stream.Collectors.toList;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.store.BookingStore;
+import de.lgblaumeiser.ptm.store.IndexedBookingStore;
+
+/**
+ * Benchmark of a yearly hour analysis on five years of bookings of ten users.
+ * The single pass analysis is compared with the former access pattern, which
+ * queried the store once for every day of the period. The plain store answers
+ * queries by a scan, like the uncached file store, the indexed store is the
+ * cached store. Run with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HourComputerBenchmark {
+    @Param({ "plain", "indexed" })
+    public String storeType;
+
+    private BookingStore store;
+    private CalculationPeriod period;
+    private String user;
+
+    @Setup
+    public void setUp() {
+        SyntheticData data = new SyntheticData(5, 10, 10);
+        store = "plain".equals(storeType) ? asBookingStore(data.bookings())
+                : new IndexedBookingStore(data.bookings(), () -> "benchmark");
+        LocalDate firstDay = FIRST_DAY.plusYears(2);
+        period = new CalculationPeriod(firstDay, firstDay.plusYears(1));
+        user = SyntheticData.user(3);
+    }
+
+    @Benchmark
+    public AnalysisResult singlePass() {
+        return new HourComputer(store).analyze(period, user);
+    }
+
+    @Benchmark
+    public Collection<Collection<Booking>> queryPerDay() {
+        Collection<Collection<Booking>> result = new ArrayList<>();
+        for (LocalDate day : period.days()) {
+            result.add(store.retrieveByUserAndDay(user, day).stream()
+                    .sorted(Comparator.comparing(Booking::getStarttime))
+                    .collect(toList()));
+        }
+        return result;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(HourComputerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -7,14 +7,30 @@
  */
 package de.lgblaumeiser.ptm.analysis.analyzer;
 
+import static de.lgblaumeiser.ptm.analysis.AnalysisResultFormatter.toTable;
 import static de.lgblaumeiser.ptm.util.Utils.getIndexFromCollection;
 import static de.lgblaumeiser.ptm.util.Utils.getLastFromCollection;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult.Column;
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.CellType;
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
 import de.lgblaumeiser.ptm.store.ObjectStore;
@@ -31,20 +47,71 @@ public class HourComputerTest extends AbstractComputerTest {
 
     @Test
     public void testHourComputerMonth() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-01", "2017-04-01"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-01", "2017-04-01"), USERNAME));
         assertEquals(7, analysisResults.size());
         assertEquals("-07:30", getAccumulatedHoursOfResult(analysisResults));
     }
 
+    @Test
+    public void testProgressReportedInSteps() {
+        CalculationPeriod period = createPeriod("2016-03-01", "2018-03-01");
+        List<Integer> progress = new ArrayList<>();
+        AnalysisResult result = testee.analyze(period, USERNAME, progress::add);
+        assertEquals(toTable(testee.analyze(period, USERNAME)), toTable(result));
+        assertTrue(progress.size() > 2);
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i - 1) < progress.get(i));
+        }
+        assertEquals(Integer.valueOf(100), getLastFromCollection(progress));
+    }
+
     @Test
     public void testHourComputerWeek() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-06", "2017-03-13"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-06", "2017-03-13"), USERNAME));
         assertEquals(3, analysisResults.size());
         assertEquals("-05:04", getAccumulatedHoursOfResult(analysisResults));
     }
 
+    @Test
+    public void testHourComputerTypedCells() {
+        AnalysisResult result = testee.analyze(createPeriod("2017-03-01", "2017-04-01"), USERNAME);
+        assertEquals(9, result.getColumns().size());
+        assertEquals(CellType.DATE, result.getColumns().get(0).getType());
+        assertEquals(CellType.MINUTES, result.getColumns().get(ACCUMULATED_HOURS_COLUMN).getType());
+        assertFalse(result.hasTotals());
+        assertEquals(6, result.getRows().size());
+        List<Object> lastRow = result.getRows().get(5);
+        assertEquals(LocalDate.of(2017, 3, 28), lastRow.get(0));
+        assertEquals(LocalTime.of(9, 42), lastRow.get(1));
+        assertEquals(-450, lastRow.get(ACCUMULATED_HOURS_COLUMN));
+        List<Object> unfinishedDay = result.getRows().get(4);
+        assertEquals(LocalDate.of(2017, 3, 24), unfinishedDay.get(0));
+        assertNull(unfinishedDay.get(1));
+        assertEquals("Day has unfinished bookings!", unfinishedDay.get(8));
+    }
+
+    @Test
+    public void testTeamSummary() {
+        CalculationPeriod month = createPeriod("2017-03-01", "2017-04-01");
+        CalculationPeriod week = createPeriod("2017-03-06", "2017-03-13");
+        Map<String, AnalysisResult> userResults = new LinkedHashMap<>();
+        userResults.put(USERNAME, testee.analyze(month, USERNAME));
+        userResults.put("Other", testee.analyze(week, USERNAME));
+
+        AnalysisResult summary = testee.summarize(month, userResults);
+        assertEquals(asList("User", "Worktime", "Overtime", "Comment"),
+                summary.getColumns().stream().map(Column::getName).collect(toList()));
+        List<Object> monthTotals = userResults.get(USERNAME).getRows().get(5);
+        List<Object> weekTotals = userResults.get("Other").getRows().get(1);
+        assertEquals(asList(USERNAME, monthTotals.get(6), -450, "1 day(s) with invalid bookings!"),
+                summary.getRows().get(0));
+        assertEquals(asList("Other", weekTotals.get(6), -304, ""), summary.getRows().get(1));
+        assertEquals(asList("Total", (Integer) monthTotals.get(6) + (Integer) weekTotals.get(6), -754, ""),
+                summary.getTotals());
+    }
+
     private String getAccumulatedHoursOfResult(final Collection<Collection<String>> analysisResults) {
         return getIndexFromCollection(getLastRow(analysisResults), ACCUMULATED_HOURS_COLUMN);
     }
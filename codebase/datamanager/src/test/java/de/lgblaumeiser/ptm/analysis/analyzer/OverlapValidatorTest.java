@@ -0,0 +1,82 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis.analyzer;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.SortedMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+
+public class OverlapValidatorTest {
+    private static final String USER = "overlapper";
+    private static final String OTHER_USER = "other";
+    private static final LocalDate DAY1 = LocalDate.of(2020, 5, 4);
+    private static final LocalDate DAY2 = LocalDate.of(2020, 5, 5);
+    private static final CalculationPeriod WEEK = new CalculationPeriod(DAY1, DAY1.plusDays(7));
+
+    private SyntheticData.MemoryStore<Booking> store;
+    private OverlapValidator testee;
+
+    @Before
+    public void before() {
+        store = new SyntheticData.MemoryStore<>(Booking::getId);
+        testee = new OverlapValidator(store);
+    }
+
+    @Test
+    public void testNoOverlaps() {
+        book(USER, DAY1, 8, 0, 10, 0);
+        book(USER, DAY1, 10, 0, 12, 0);
+        book(USER, DAY1, 13, 0, 14, 0);
+        assertTrue(testee.findOverlaps(WEEK, USER).isEmpty());
+    }
+
+    @Test
+    public void testOpenBookingsAreIgnored() {
+        book(USER, DAY1, 8, 0, 10, 0);
+        store.store(newBooking().setUser(USER).setBookingday(DAY1).setActivity(1L)
+                .setStarttime(LocalTime.of(9, 0)).build());
+        assertTrue(testee.findOverlaps(WEEK, USER).isEmpty());
+    }
+
+    @Test
+    public void testFindOverlapsPerDayAndUser() {
+        Booking first = book(USER, DAY1, 8, 0, 10, 0);
+        Booking second = book(USER, DAY1, 9, 30, 11, 0);
+        book(USER, DAY2, 8, 0, 10, 0);
+        book(OTHER_USER, DAY2, 9, 0, 11, 0);
+        book(USER, DAY2.plusDays(7), 8, 0, 10, 0);
+        book(USER, DAY2.plusDays(7), 9, 0, 11, 0);
+
+        SortedMap<LocalDate, List<Long>> result = testee.findOverlaps(WEEK, USER);
+        assertEquals(1, result.size());
+        assertEquals(asList(first.getId(), second.getId()), result.get(DAY1));
+    }
+
+    private Booking book(final String user, final LocalDate day, final int startHour, final int startMinute,
+            final int endHour, final int endMinute) {
+        return store.store(newBooking()
+                .setUser(user)
+                .setBookingday(day)
+                .setActivity(1L)
+                .setStarttime(LocalTime.of(startHour, startMinute))
+                .setEndtime(LocalTime.of(endHour, endMinute))
+                .build());
+    }
+}
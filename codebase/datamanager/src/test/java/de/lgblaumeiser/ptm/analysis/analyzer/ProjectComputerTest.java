@@ -7,12 +7,25 @@
  */
 package de.lgblaumeiser.ptm.analysis.analyzer;
 
+import static de.lgblaumeiser.ptm.analysis.AnalysisResult.newAnalysisResult;
+import static de.lgblaumeiser.ptm.analysis.AnalysisResultFormatter.toTable;
+import static de.lgblaumeiser.ptm.datamanager.model.Activity.newActivity;
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static de.lgblaumeiser.ptm.util.Utils.getIndexFromCollection;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.junit.Test;
 
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.CellType;
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
 import de.lgblaumeiser.ptm.store.ObjectStore;
@@ -27,25 +40,100 @@ public class ProjectComputerTest extends AbstractComputerTest {
 
     @Test
     public void testProjectComputerFixed() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-01", "2017-04-01"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-01", "2017-04-01"), USERNAME));
         assertEquals(4, analysisResults.size());
         assertEquals(200.0, sumPercentages(analysisResults), DOUBLE_COMPARISON_DELTA);
     }
 
     @Test
     public void testProjectComputerDay() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-15", "2017-04-16"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-15", "2017-04-16"), USERNAME));
         assertEquals(4, analysisResults.size());
         assertEquals(200.0, sumPercentages(analysisResults), DOUBLE_COMPARISON_DELTA);
     }
 
     @Test
     public void testProjectComputerWeek() {
-        Collection<Collection<String>> analysisResults = testee.analyze(createPeriod("2017-03-06", "2017-03-13"),
-                USERNAME);
+        Collection<Collection<String>> analysisResults = toTable(
+                testee.analyze(createPeriod("2017-03-06", "2017-03-13"), USERNAME));
         assertEquals(4, analysisResults.size());
         assertEquals(200.0, sumPercentages(analysisResults), DOUBLE_COMPARISON_DELTA);
     }
+
+    @Test
+    public void testActivitiesLoadedOncePerAnalysis() {
+        testee.analyze(createPeriod("2017-03-01", "2017-04-01"), USERNAME);
+        assertEquals(3, activityLookups);
+    }
+
+    @Test
+    public void testCommentsCollectedInBookingOrder() {
+        SyntheticData.MemoryStore<Activity> activities = new SyntheticData.MemoryStore<>(Activity::getId);
+        SyntheticData.MemoryStore<Booking> bookings = new SyntheticData.MemoryStore<>(Booking::getId);
+        Long first = activities.store(newActivity().setUser(USERNAME).setProjectName("P").setProjectId("P1")
+                .setActivityName("A").setActivityId("A1").build()).getId();
+        Long second = activities.store(newActivity().setUser(USERNAME).setProjectName("P").setProjectId("P1")
+                .setActivityName("B").setActivityId("B1").build()).getId();
+        LocalDate day = LocalDate.of(2020, 5, 4);
+        String[] comments = { "Review code", "Review", "", "Fix", "Review code" };
+        for (int i = 0; i < comments.length; i++) {
+            bookings.store(newBooking().setUser(USERNAME).setBookingday(day).setActivity(i % 2 == 0 ? first : second)
+                    .setStarttime(LocalTime.of(8 + i, 0)).setEndtime(LocalTime.of(9 + i, 0))
+                    .setComment(comments[i]).build());
+        }
+        Collection<Collection<String>> analysisResults = toTable(new ProjectComputer(bookings, activities)
+                .analyze(new CalculationPeriod(day, day.plusDays(1)), USERNAME));
+        assertEquals(3, analysisResults.size());
+        Collection<String> projectLine = getIndexFromCollection(analysisResults, 1);
+        assertEquals(" 05:00", getIndexFromCollection(projectLine, 2));
+        assertEquals("Review code, Review, Fix", getIndexFromCollection(projectLine, 4));
+    }
+
+    @Test
+    public void testTeamSummary() {
+        SyntheticData.MemoryStore<Activity> activities = new SyntheticData.MemoryStore<>(Activity::getId);
+        SyntheticData.MemoryStore<Booking> bookings = new SyntheticData.MemoryStore<>(Booking::getId);
+        Long shared = activities.store(newActivity().setUser(USERNAME).setProjectName("P").setProjectId("P1")
+                .setActivityName("A").setActivityId("A1").build()).getId();
+        Long other = activities.store(newActivity().setUser("Other").setProjectName("Q").setProjectId("q2")
+                .setActivityName("B").setActivityId("B1").build()).getId();
+        LocalDate day = LocalDate.of(2020, 5, 4);
+        bookings.store(newBooking().setUser(USERNAME).setBookingday(day).setActivity(shared)
+                .setStarttime(LocalTime.of(8, 0)).setEndtime(LocalTime.of(11, 0)).build());
+        bookings.store(newBooking().setUser("Other").setBookingday(day).setActivity(shared)
+                .setStarttime(LocalTime.of(8, 0)).setEndtime(LocalTime.of(9, 0)).build());
+        bookings.store(newBooking().setUser("Other").setBookingday(day).setActivity(other)
+                .setStarttime(LocalTime.of(9, 0)).setEndtime(LocalTime.of(13, 0)).build());
+        ProjectComputer computer = new ProjectComputer(bookings, activities);
+        CalculationPeriod period = new CalculationPeriod(day, day.plusDays(1));
+        Map<String, AnalysisResult> userResults = new LinkedHashMap<>();
+        userResults.put("Other", computer.analyze(period, "Other"));
+        userResults.put(USERNAME, computer.analyze(period, USERNAME));
+
+        AnalysisResult summary = computer.summarize(period, userResults);
+        assertEquals(asList(
+                asList("P", "P1", 240, 50.0, "Other, " + USERNAME),
+                asList("Q", "q2", 240, 50.0, "Other")),
+                summary.getRows());
+        assertEquals(asList("Total", "", 480, 100.0, ""), summary.getTotals());
+    }
+
+    @Test
+    public void testTeamSummaryWithoutMinutes() {
+        CalculationPeriod period = new CalculationPeriod(LocalDate.of(2020, 5, 4), LocalDate.of(2020, 5, 5));
+        Map<String, AnalysisResult> userResults = new LinkedHashMap<>();
+        userResults.put(USERNAME, newAnalysisResult()
+                .addColumn("Project", CellType.TEXT)
+                .addColumn("Project Id", CellType.TEXT)
+                .addColumn("Hours", CellType.MINUTES)
+                .addColumn("%", CellType.PERCENTAGE)
+                .addRow("P", "P1", 0, 0.0)
+                .build());
+
+        AnalysisResult summary = testee.summarize(period, userResults);
+        assertEquals(asList(asList("P", "P1", 0, 0.0, USERNAME)), summary.getRows());
+        assertEquals(asList("Total", "", 0, 100.0, ""), summary.getTotals());
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.analysis.analyzer;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Activity.newActivity;
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+
+import java.lang.reflect.Field;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.store.StoreBackupRestore;
+
+/**
+ * Synthetic bookings for benchmarks, every user books four bookings with a
+ * random activity on each work day
+ */
+class SyntheticData {
+    static final LocalDate FIRST_DAY = LocalDate.of(2015, 1, 1);
+
+    private final MemoryStore<Activity> activities = new MemoryStore<>(Activity::getId);
+    private final MemoryStore<Booking> bookings = new MemoryStore<>(Booking::getId);
+
+    SyntheticData(final int years, final int users, final int activitiesPerUser) {
+        Random random = new Random(42);
+        for (int u = 0; u < users; u++) {
+            String user = user(u);
+            Long[] activityIds = new Long[activitiesPerUser];
+            for (int a = 0; a < activitiesPerUser; a++) {
+                activityIds[a] = activities.store(newActivity()
+                        .setUser(user)
+                        .setProjectName("Project" + a % 3)
+                        .setProjectId("P" + a % 3)
+                        .setActivityName("Activity" + a)
+                        .setActivityId("A" + a)
+                        .build()).getId();
+            }
+            for (LocalDate day = FIRST_DAY; day.isBefore(FIRST_DAY.plusYears(years)); day = day.plusDays(1)) {
+                if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                    continue;
+                }
+                LocalTime start = LocalTime.of(8, random.nextInt(30));
+                for (int b = 0; b < 4; b++) {
+                    LocalTime end = start.plusMinutes(90 + random.nextInt(60));
+                    bookings.store(newBooking()
+                            .setUser(user)
+                            .setBookingday(day)
+                            .setActivity(activityIds[random.nextInt(activitiesPerUser)])
+                            .setStarttime(start)
+                            .setEndtime(end)
+                            .setComment("Comment" + random.nextInt(5))
+                            .build());
+                    start = end.plusMinutes(b == 1 ? 45 : 0);
+                }
+            }
+        }
+    }
+
+    static String user(final int index) {
+        return "User" + index;
+    }
+
+    MemoryStore<Activity> activities() {
+        return activities;
+    }
+
+    MemoryStore<Booking> bookings() {
+        return bookings;
+    }
+
+    /**
+     * Simple in memory store without any indexes
+     */
+    static class MemoryStore<T> implements ObjectStore<T>, StoreBackupRestore<T> {
+        private final Map<Long, T> content = new HashMap<>();
+        private final Function<T, Long> idGetter;
+        private long nextId = 1L;
+
+        MemoryStore(final Function<T, Long> idGetter) {
+            this.idGetter = idGetter;
+        }
+
+        @Override
+        public Collection<T> retrieveAll() {
+            return new ArrayList<>(content.values());
+        }
+
+        @Override
+        public Optional<T> retrieveById(final Long id) {
+            return Optional.ofNullable(content.get(id));
+        }
+
+        @Override
+        public T store(final T object) {
+            if (idGetter.apply(object) == -1) {
+                try {
+                    Field f = object.getClass().getDeclaredField("id");
+                    f.setAccessible(true);
+                    f.set(object, nextId++);
+                } catch (IllegalAccessException | NoSuchFieldException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            content.put(idGetter.apply(object), object);
+            return object;
+        }
+
+        @Override
+        public void deleteById(final Long id) {
+            content.remove(id);
+        }
+
+        @Override
+        public Map<String, String> backup() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public void restore(final Map<String, String> filenameToContentMap) {
+            // Not needed for benchmarks
+        }
+
+        @Override
+        public void delete() {
+            content.clear();
+        }
+    }
+}
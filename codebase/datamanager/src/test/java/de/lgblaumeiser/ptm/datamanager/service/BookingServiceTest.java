@@ -8,9 +8,12 @@
 package de.lgblaumeiser.ptm.datamanager.service;
 
 import static de.lgblaumeiser.ptm.datamanager.model.Activity.newActivity;
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
 import static de.lgblaumeiser.ptm.datamanager.model.User.newUser;
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
 import static de.lgblaumeiser.ptm.util.Utils.getFirstFromCollection;
 import static de.lgblaumeiser.ptm.util.Utils.getIndexFromCollection;
+import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableCollection;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
@@ -23,6 +26,7 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.Before;
@@ -31,7 +35,9 @@ import org.junit.Test;
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
 import de.lgblaumeiser.ptm.datamanager.model.User;
+import de.lgblaumeiser.ptm.store.ConcurrentBookingStore;
 import de.lgblaumeiser.ptm.store.ObjectStore;
+import de.lgblaumeiser.ptm.store.StoreBackupRestore;
 
 /**
  * Tests for the DayBookings service
@@ -72,6 +78,7 @@ public class BookingServiceTest {
     private static final Integer BREAKDURATION = 45;
     private BookingService testee;
     private ObjectStore<Booking> mockStore;
+    private int scans;
 
     @Before
     public void before() {
@@ -83,6 +90,7 @@ public class BookingServiceTest {
 
             @Override
             public Collection<Booking> retrieveAll() {
+                scans++;
                 return unmodifiableCollection(storedBookings);
             }
 
@@ -121,11 +129,7 @@ public class BookingServiceTest {
 
             @Override
             public void deleteById(final Long id) {
-                storedBookings
-                        .stream()
-                        .filter(b -> id == b.getId())
-                        .findFirst()
-                        .ifPresent(storedBookings::remove);
+                storedBookings.removeIf(b -> id.equals(b.getId()));
             }
         };
         testee = new BookingService(mockStore);
@@ -158,6 +162,37 @@ public class BookingServiceTest {
         assertEquals(TIME2, getFirstFromCollection(mockStore.retrieveAll()).getEndtime());
     }
 
+    @Test
+    public void testAddBookingEndsOnlyOwnOpenBooking() {
+        User otherUser = USER.changeUser().setUsername("UserY").build();
+        Booking otherBooking = testee.addBooking(DATE1, otherUser, ACTIVITY1, TIME3, empty(), empty());
+        Booking ownBooking = testee.addBooking(DATE1, USER, ACTIVITY1, TIME1, empty(), empty());
+        testee.addBooking(DATE1, USER, ACTIVITY2, TIME2, empty(), empty());
+        assertFalse(mockStore.retrieveById(otherBooking.getId()).get().hasEndtime());
+        assertEquals(TIME2, mockStore.retrieveById(ownBooking.getId()).get().getEndtime());
+    }
+
+    @Test
+    public void testAddBookingEndsBookingStoredWithoutService() {
+        Booking stored = mockStore.store(Booking.newBooking()
+                .setBookingday(DATE1)
+                .setUser(USERNAME)
+                .setActivity(1L)
+                .setStarttime(TIME1)
+                .build());
+        testee.addBooking(DATE1, USER, ACTIVITY2, TIME2, empty(), empty());
+        assertEquals(TIME2, mockStore.retrieveById(stored.getId()).get().getEndtime());
+    }
+
+    @Test
+    public void testAddBookingAfterOpenBookingDeleted() {
+        Booking first = testee.addBooking(DATE1, USER, ACTIVITY1, TIME1, empty(), empty());
+        mockStore.deleteById(first.getId());
+        Booking second = testee.addBooking(DATE1, USER, ACTIVITY2, TIME2, empty(), empty());
+        assertEquals(1, mockStore.retrieveAll().size());
+        assertFalse(second.hasEndtime());
+    }
+
     @Test
     public void testEndBooking() {
         Booking booking = testee.addBooking(DATE1, USER, ACTIVITY1, TIME1, empty(), of(COMMENT1));
@@ -250,6 +285,57 @@ public class BookingServiceTest {
         assertEquals(TIME2, beforeBreak.getEndtime());
     }
 
+    private ConcurrentBookingStore observedStore() {
+        return new ConcurrentBookingStore(asBookingStore(mockStore), new StoreBackupRestore<Booking>() {
+            @Override
+            public Map<String, String> backup() {
+                return emptyMap();
+            }
+
+            @Override
+            public void restore(final Map<String, String> filenameToContentMap) {
+                // Not needed
+            }
+
+            @Override
+            public void delete() {
+                // Not needed
+            }
+        });
+    }
+
+    @Test
+    public void testOpenBookingForgottenOnDelete() {
+        ConcurrentBookingStore observedStore = observedStore();
+        testee = new BookingService(observedStore);
+        Booking booking = testee.addBooking(DATE1, USER, ACTIVITY1, TIME1, empty(), empty());
+        assertEquals(1, testee.knownOpenBookings());
+        observedStore.deleteById(booking.getId());
+        assertEquals(0, testee.knownOpenBookings());
+        testee.addBooking(DATE1, USER, ACTIVITY1, TIME2, empty(), empty());
+        assertEquals(1, testee.knownOpenBookings());
+        observedStore.delete();
+        assertEquals(0, testee.knownDays());
+    }
+
+    @Test
+    public void testDayWithoutOpenBookingSearchedOnce() {
+        ConcurrentBookingStore observedStore = observedStore();
+        testee = new BookingService(observedStore);
+        testee.addBooking(DATE1, USER, ACTIVITY1, TIME1, of(TIME2), empty());
+        assertEquals(1, scans);
+        testee.addBooking(DATE1, USER, ACTIVITY2, TIME2, of(TIME3), empty());
+        assertEquals(1, scans);
+
+        // An open booking stored without the service is found without a search
+        Booking external = observedStore.store(newBooking().setUser(USERNAME).setBookingday(DATE1)
+                .setActivity(ACTIVITY1.getId()).setStarttime(TIME3).build());
+        LocalTime later = TIME3.plusHours(1L);
+        testee.addBooking(DATE1, USER, ACTIVITY2, later, empty(), empty());
+        assertEquals(1, scans);
+        assertEquals(later, mockStore.retrieveById(external.getId()).get().getEndtime());
+    }
+
     @Test(expected = IllegalStateException.class)
     public void testAddBreakWithoutEndtime() {
         Booking booking = testee.addBooking(DATE1, USER, ACTIVITY1, TIME1, empty(), of(COMMENT1));
@@ -0,0 +1,113 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.util.MinuteCounter;
+
+public class ActivityMinuteIndexTest {
+    private static final String USER = "UserM";
+    private static final LocalDate FIRST_DAY = LocalDate.of(1969, 11, 3);
+    private static final int DAYS = 3 * 365;
+
+    private final ActivityMinuteIndex testee = new ActivityMinuteIndex();
+    private final NavigableMap<LocalDate, DayRollup> rollups = new TreeMap<>();
+
+    private static DayRollup rollup(final LocalDate day, final long... activities) {
+        List<Booking> bookings = new ArrayList<>();
+        for (int i = 0; i < activities.length; i++) {
+            bookings.add(newBooking().setUser(USER).setBookingday(day).setActivity(activities[i])
+                    .setStarttime(LocalTime.of(8 + i, 0)).setEndtime(LocalTime.of(8 + i, 10 * (i + 1))).build());
+        }
+        return DayRollup.of(day, bookings);
+    }
+
+    private void replace(final LocalDate day, final DayRollup current) {
+        DayRollup previous = current != null ? rollups.put(day, current) : rollups.remove(day);
+        if (previous != null || current != null) {
+            testee.replace(previous, current);
+        }
+    }
+
+    private Map<Long, Integer> asMap(final MinuteCounter counter) {
+        Map<Long, Integer> result = new HashMap<>();
+        for (int i = 0; i < counter.size(); i++) {
+            result.put(counter.idAt(i), counter.minutesAt(i));
+        }
+        return result;
+    }
+
+    private Map<Long, Integer> scan(final LocalDate firstDay, final LocalDate firstDayAfter) {
+        Map<Long, Integer> result = new HashMap<>();
+        rollups.subMap(firstDay, true, firstDayAfter, false).values().forEach(rollup -> {
+            for (int i = 0; i < rollup.getActivityCount(); i++) {
+                result.merge(rollup.getActivityId(i), rollup.getActivityMinutes(i), Integer::sum);
+            }
+        });
+        return result;
+    }
+
+    @Test
+    public void testRangesMatchScan() {
+        Random random = new Random(4711L);
+        for (int i = 0; i < 2000; i++) {
+            LocalDate day = FIRST_DAY.plusDays(random.nextInt(DAYS));
+            if (random.nextInt(4) == 0) {
+                replace(day, null);
+            } else {
+                replace(day, rollup(day, 1L + random.nextInt(5), 1L + random.nextInt(5)));
+            }
+        }
+        for (int i = 0; i < 500; i++) {
+            LocalDate firstDay = FIRST_DAY.plusDays(random.nextInt(DAYS) - 10L);
+            LocalDate firstDayAfter = firstDay.plusDays(random.nextInt(DAYS));
+            assertEquals(scan(firstDay, firstDayAfter), asMap(testee.minutes(firstDay, firstDayAfter)));
+        }
+    }
+
+    @Test
+    public void testReplacedActivitiesRemoved() {
+        replace(FIRST_DAY, rollup(FIRST_DAY, 1L, 2L));
+        Map<Long, Integer> expected = new HashMap<>();
+        expected.put(1L, 10);
+        expected.put(2L, 20);
+        assertEquals(expected, asMap(testee.minutes(FIRST_DAY, FIRST_DAY.plusYears(1L))));
+
+        replace(FIRST_DAY, rollup(FIRST_DAY, 2L));
+        assertEquals(1, testee.minutes(FIRST_DAY, FIRST_DAY.plusDays(1L)).size());
+        assertEquals(10, testee.minutes(FIRST_DAY, FIRST_DAY.plusDays(1L)).minutesFor(2L));
+    }
+
+    @Test
+    public void testEmptyAfterRemoval() {
+        replace(FIRST_DAY, rollup(FIRST_DAY, 1L, 2L));
+        replace(FIRST_DAY.plusDays(40L), rollup(FIRST_DAY.plusDays(40L), 3L));
+        assertFalse(testee.isEmpty());
+        replace(FIRST_DAY, null);
+        replace(FIRST_DAY.plusDays(40L), null);
+        assertTrue(testee.isEmpty());
+        assertEquals(0, testee.minutes(FIRST_DAY, FIRST_DAY.plusYears(1L)).size());
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Activity.newActivity;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+
+public class CachingObjectStoreTest {
+    private static final String USERNAME = "UserX";
+
+    private TestObjectStore<Activity> delegate;
+    private String location;
+    private CachingObjectStore<Activity> testee;
+
+    @Before
+    public void setUp() {
+        delegate = new TestObjectStore<>(Activity::getId);
+        delegate.setRestoreContent(asList(createActivity("restored")));
+        location = "first";
+        testee = new CachingObjectStore<>(delegate, Activity::getId, () -> location);
+    }
+
+    private static Activity createActivity(final String name) {
+        return newActivity()
+                .setProjectName(name)
+                .setActivityName(name)
+                .setProjectId(name)
+                .setActivityId(name)
+                .setUser(USERNAME)
+                .build();
+    }
+
+    @Test
+    public void testReadsServedFromMemory() {
+        Activity stored = testee.store(createActivity("a"));
+        testee.store(createActivity("b"));
+        assertEquals(2, testee.retrieveAll().size());
+        assertEquals(2, testee.retrieveAll().size());
+        assertEquals(stored, testee.retrieveById(stored.getId()).get());
+        assertEquals(1, delegate.getRetrieveAllCalls());
+        assertEquals(0, delegate.getRetrieveByIdCalls());
+    }
+
+    @Test
+    public void testWriteThrough() {
+        Activity stored = testee.store(createActivity("a"));
+        assertTrue(delegate.getContent().containsKey(stored.getId()));
+        Activity changed = testee.store(stored.changeActivity().setActivityName("changed").build());
+        assertEquals("changed", delegate.getContent().get(stored.getId()).getActivityName());
+        assertEquals("changed", testee.retrieveById(stored.getId()).get().getActivityName());
+        assertEquals(1, testee.retrieveAll().size());
+        testee.deleteById(changed.getId());
+        assertFalse(delegate.getContent().containsKey(stored.getId()));
+        assertFalse(testee.retrieveById(stored.getId()).isPresent());
+        assertTrue(testee.retrieveAll().isEmpty());
+    }
+
+    @Test
+    public void testReloadOnLocationChange() {
+        testee.store(createActivity("a"));
+        assertEquals(1, testee.retrieveAll().size());
+        location = "second";
+        delegate.getContent().clear();
+        assertTrue(testee.retrieveAll().isEmpty());
+        assertEquals(2, delegate.getRetrieveAllCalls());
+    }
+
+    @Test
+    public void testReloadAfterRestore() {
+        assertTrue(testee.retrieveAll().isEmpty());
+        testee.restore(new HashMap<>());
+        assertEquals(1, testee.retrieveAll().size());
+        testee.delete();
+        assertTrue(testee.retrieveAll().isEmpty());
+    }
+}
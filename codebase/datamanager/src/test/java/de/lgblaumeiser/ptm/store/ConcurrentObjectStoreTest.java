@@ -0,0 +1,277 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Activity.newActivity;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+
+public class ConcurrentObjectStoreTest {
+    private static final int THREADS = 8;
+    private static final int OBJECTS_PER_THREAD = 20;
+    private static final int ITERATIONS = 2000;
+
+    private CheckingStore delegate;
+    private ConcurrentObjectStore<Activity> testee;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        delegate = new CheckingStore();
+        testee = new ConcurrentObjectStore<>(delegate, Activity::getId);
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static Activity createActivity(final String name) {
+        return newActivity()
+                .setProjectName(name)
+                .setActivityName(name)
+                .setProjectId(name)
+                .setActivityId(name)
+                .setUser("UserX")
+                .build();
+    }
+
+    @Test
+    public void testStress() throws Exception {
+        List<Future<Map<Long, String>>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            results.add(executor.submit(() -> hammer(thread)));
+        }
+        Map<Long, String> expected = new HashMap<>();
+        for (Future<Map<Long, String>> result : results) {
+            expected.putAll(result.get(60, SECONDS));
+        }
+        assertEquals(0, delegate.violations.get());
+        assertEquals(THREADS * OBJECTS_PER_THREAD, testee.retrieveAll().size());
+        expected.forEach((id, name) -> assertEquals(name, testee.retrieveById(id).get().getActivityName()));
+    }
+
+    private Map<Long, String> hammer(final int thread) {
+        Random random = new Random(thread);
+        List<Activity> own = new ArrayList<>();
+        for (int i = 0; i < OBJECTS_PER_THREAD; i++) {
+            own.add(testee.store(createActivity(thread + "_" + i)));
+        }
+        for (int i = 0; i < ITERATIONS; i++) {
+            int index = random.nextInt(own.size());
+            Activity current = own.get(index);
+            switch (random.nextInt(10)) {
+            case 0:
+                testee.retrieveAll();
+                break;
+            case 1:
+                testee.deleteById(current.getId());
+                own.set(index, testee.store(createActivity(thread + "_" + i)));
+                break;
+            case 2:
+            case 3:
+            case 4:
+                own.set(index, testee.store(current.changeActivity().setActivityName(thread + "_" + i).build()));
+                break;
+            default:
+                testee.retrieveById(random.nextLong() % (THREADS * OBJECTS_PER_THREAD) + 1);
+            }
+        }
+        Map<Long, String> result = new HashMap<>();
+        own.forEach(a -> result.put(a.getId(), a.getActivityName()));
+        return result;
+    }
+
+    @Test
+    public void testUnrelatedReadNotBlockedByWrite() throws Exception {
+        Activity blocked = testee.store(createActivity("blocked"));
+        Activity other = testee.store(createActivity("other"));
+        delegate.blockWritesOf(blocked.getId());
+        Future<?> write = executor.submit(() -> testee.store(blocked.changeActivity().setActivityName("x").build()));
+        assertTrue(delegate.writeBlocked.await(10, SECONDS));
+        Future<Optional<Activity>> read = executor.submit(() -> testee.retrieveById(other.getId()));
+        assertEquals("other", read.get(10, SECONDS).get().getActivityName());
+        delegate.release.countDown();
+        write.get(10, SECONDS);
+        assertEquals("x", testee.retrieveById(blocked.getId()).get().getActivityName());
+    }
+
+    @Test
+    public void testScansNotBlockedByWrite() throws Exception {
+        Activity blocked = testee.store(createActivity("blocked"));
+        testee.store(createActivity("other"));
+        delegate.blockWritesOf(blocked.getId());
+        Future<?> write = executor.submit(() -> testee.store(blocked.changeActivity().setActivityName("x").build()));
+        assertTrue(delegate.writeBlocked.await(10, SECONDS));
+        Future<Collection<Activity>> first = executor.submit(testee::retrieveAll);
+        Future<Collection<Activity>> second = executor.submit(testee::retrieveAll);
+        assertEquals(2, first.get(10, SECONDS).size());
+        assertEquals(2, second.get(10, SECONDS).size());
+        delegate.release.countDown();
+        write.get(10, SECONDS);
+    }
+
+    /**
+     * A store that is safe for concurrent access to different objects and counts
+     * accesses the concurrency layer should have prevented
+     */
+    private static class CheckingStore implements ObjectStore<Activity>, StoreBackupRestore<Activity> {
+        private final Map<Long, Activity> content = new ConcurrentHashMap<>();
+        private final Map<Long, AtomicInteger> writers = new ConcurrentHashMap<>();
+        private final AtomicLong nextId = new AtomicLong(1);
+        private final AtomicInteger violations = new AtomicInteger();
+        private final CountDownLatch writeBlocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile Long blockedId;
+
+        void blockWritesOf(final Long id) {
+            blockedId = id;
+        }
+
+        @Override
+        public Collection<Activity> retrieveAll() {
+            Thread.yield();
+            return new ArrayList<>(content.values());
+        }
+
+        @Override
+        public Optional<Activity> retrieveById(final Long id) {
+            check(writers.computeIfAbsent(id, i -> new AtomicInteger()).get() == 0);
+            return Optional.ofNullable(content.get(id));
+        }
+
+        @Override
+        public Activity store(final Activity object) {
+            boolean isNew = object.getId() == -1;
+            if (isNew) {
+                setId(object, nextId.getAndIncrement());
+            }
+            write(object.getId(), isNew, () -> {
+                if (object.getId().equals(blockedId)) {
+                    writeBlocked.countDown();
+                    await(release);
+                }
+                content.put(object.getId(), object);
+            });
+            return object;
+        }
+
+        @Override
+        public void deleteById(final Long id) {
+            write(id, false, () -> content.remove(id));
+        }
+
+        @Override
+        public Map<String, String> backup() {
+            return new HashMap<>();
+        }
+
+        @Override
+        public void restore(final Map<String, String> filenameToContentMap) {
+            // Not needed
+        }
+
+        @Override
+        public void delete() {
+            content.clear();
+        }
+
+        private void write(final Long id, final boolean isNew, final Runnable action) {
+            // New objects are not locked per id, nobody else knows their id yet
+            AtomicInteger idWriters = isNew ? new AtomicInteger()
+                    : writers.computeIfAbsent(id, i -> new AtomicInteger());
+            check(idWriters.incrementAndGet() == 1);
+            try {
+                Thread.yield();
+                action.run();
+            } finally {
+                idWriters.decrementAndGet();
+            }
+        }
+
+        private void check(final boolean condition) {
+            if (!condition) {
+                violations.incrementAndGet();
+            }
+        }
+
+        private static void await(final CountDownLatch latch) {
+            try {
+                latch.await(10, SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void setId(final Activity object, final Long id) {
+            try {
+                Field f = Activity.class.getDeclaredField("id");
+                f.setAccessible(true);
+                f.set(object, id);
+            } catch (IllegalAccessException | NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Test
+    public void testListenersInformedAboutChanges() {
+        List<String> events = new ArrayList<>();
+        AtomicReference<String> location = new AtomicReference<>("first");
+        ConcurrentObjectStore<Activity> observed = new ConcurrentObjectStore<>(delegate, Activity::getId,
+                location::get);
+        observed.addStoreListener(new StoreListener<Activity>() {
+            @Override
+            public void objectChanged(final Optional<Activity> previous, final Optional<Activity> current) {
+                events.add(previous.map(Activity::getProjectName).orElse("-") + ">"
+                        + current.map(Activity::getProjectName).orElse("-"));
+            }
+
+            @Override
+            public void contentReplaced() {
+                events.add("replaced");
+            }
+        });
+        Activity activity = observed.store(createActivity("a"));
+        observed.store(activity.changeActivity().setProjectName("b").build());
+        observed.deleteById(activity.getId());
+        observed.deleteById(activity.getId());
+        observed.checkForReplacedContent();
+        observed.checkForReplacedContent();
+        location.set("second");
+        observed.checkForReplacedContent();
+        assertEquals(Arrays.asList("->a", "a>b", "b>-", "replaced", "replaced"), events);
+    }
+}
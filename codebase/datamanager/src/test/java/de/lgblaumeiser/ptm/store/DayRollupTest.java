@@ -0,0 +1,116 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Field;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+
+public class DayRollupTest {
+    private static final String USER = "UserR";
+    private static final LocalDate DAY = LocalDate.of(2020, 5, 4);
+
+    private long nextId = 1L;
+
+    @Test
+    public void testAggregation() {
+        Booking first = booking(1L, 8, 0, 10, 0, "a");
+        Booking second = booking(2L, 10, 30, 12, 0, "b");
+        Booking third = booking(1L, 13, 0, 14, 15, "a");
+        DayRollup testee = DayRollup.of(DAY, asList(third, second, first));
+        assertEquals(DAY, testee.getDay());
+        assertEquals(LocalTime.of(8, 0), testee.getFirstStart());
+        assertEquals(LocalTime.of(14, 15), testee.getLastEnd());
+        assertEquals(285, testee.getTotalMinutes());
+        assertEquals(195, testee.getMinutesForActivity(1L));
+        assertEquals(90, testee.getMinutesForActivity(2L));
+        assertEquals(0, testee.getMinutesForActivity(3L));
+        assertEquals(2, testee.getActivityCount());
+        assertEquals(1L, testee.getActivityId(0));
+        assertEquals(195, testee.getActivityMinutes(0));
+        assertEquals(2L, testee.getActivityId(1));
+        assertEquals(asList("a"), testee.getActivityComments(0));
+        assertEquals(asList("b"), testee.getActivityComments(1));
+        assertFalse(testee.hasUnfinishedBookings());
+        assertTrue(testee.getOverlappingBookings().isEmpty());
+    }
+
+    @Test
+    public void testCommentsInBookingOrderWithoutDuplicates() {
+        DayRollup testee = DayRollup.of(DAY, asList(booking(1L, 11, 0, 12, 0, "c"), booking(1L, 8, 0, 9, 0, "b"),
+                booking(1L, 9, 0, 10, 0, "a"), booking(1L, 10, 0, 11, 0, "b")));
+        assertEquals(asList("b", "a", "c"), testee.getActivityComments(0));
+    }
+
+    @Test
+    public void testUnfinishedBookingsOnlyFlagged() {
+        Booking finished = booking(1L, 8, 0, 10, 0, "");
+        Booking open = newBooking().setUser(USER).setBookingday(DAY).setActivity(2L)
+                .setStarttime(LocalTime.of(9, 0)).build();
+        DayRollup testee = DayRollup.of(DAY, asList(finished, open));
+        assertTrue(testee.hasUnfinishedBookings());
+        assertEquals(120, testee.getTotalMinutes());
+        assertEquals(1, testee.getActivityCount());
+        assertEquals(0, testee.getMinutesForActivity(2L));
+        assertEquals(emptyList(), testee.getActivityComments(0));
+        assertTrue(testee.getOverlappingBookings().isEmpty());
+
+        DayRollup onlyOpen = DayRollup.of(DAY, asList(open));
+        assertNull(onlyOpen.getFirstStart());
+        assertNull(onlyOpen.getLastEnd());
+    }
+
+    @Test
+    public void testTouchingBookingsDoNotOverlap() {
+        DayRollup testee = DayRollup.of(DAY, asList(booking(1L, 13, 0, 14, 0, ""), booking(1L, 8, 0, 10, 0, ""),
+                booking(1L, 10, 0, 13, 0, "")));
+        assertTrue(testee.getOverlappingBookings().isEmpty());
+    }
+
+    @Test
+    public void testContainedBookingReportsAllInvolved() {
+        Booking outer = booking(1L, 8, 0, 17, 0, "");
+        Booking inner = booking(1L, 12, 0, 13, 0, "");
+        Booking later = booking(1L, 14, 0, 15, 0, "");
+        Booking separate = booking(1L, 17, 0, 18, 0, "");
+        DayRollup testee = DayRollup.of(DAY, asList(separate, later, inner, outer));
+        assertEquals(asList(outer.getId(), inner.getId(), later.getId()), testee.getOverlappingBookings());
+    }
+
+    private Booking booking(final Long activity, final int startHour, final int startMinute, final int endHour,
+            final int endMinute, final String comment) {
+        Booking booking = newBooking()
+                .setUser(USER)
+                .setBookingday(DAY)
+                .setActivity(activity)
+                .setStarttime(LocalTime.of(startHour, startMinute))
+                .setEndtime(LocalTime.of(endHour, endMinute))
+                .setComment(comment)
+                .build();
+        try {
+            Field id = Booking.class.getDeclaredField("id");
+            id.setAccessible(true);
+            id.set(booking, nextId++);
+        } catch (IllegalAccessException | NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+        return booking;
+    }
+}
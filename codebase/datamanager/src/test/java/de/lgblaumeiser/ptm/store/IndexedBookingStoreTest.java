@@ -0,0 +1,188 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static de.lgblaumeiser.ptm.store.BookingStore.asBookingStore;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.util.MinuteCounter;
+
+public class IndexedBookingStoreTest {
+    private static final String USER1 = "UserX";
+    private static final String USER2 = "UserY";
+    private static final LocalDate DAY1 = LocalDate.of(2019, 2, 27);
+    private static final LocalDate DAY2 = LocalDate.of(2019, 2, 28);
+    private static final LocalDate DAY3 = LocalDate.of(2019, 3, 1);
+
+    private TestObjectStore<Booking> delegate;
+    private IndexedBookingStore testee;
+    private BookingStore scanningStore;
+
+    @Before
+    public void setUp() {
+        delegate = new TestObjectStore<>(Booking::getId);
+        testee = new IndexedBookingStore(delegate, () -> "location");
+        scanningStore = asBookingStore(delegate);
+        testee.store(createBooking(USER1, DAY1, 8));
+        testee.store(createBooking(USER1, DAY1, 10));
+        testee.store(createBooking(USER1, DAY2, 8));
+        testee.store(createBooking(USER1, DAY3, 8));
+        testee.store(createBooking(USER2, DAY1, 9));
+        testee.store(createBooking(USER2, DAY3, 9));
+    }
+
+    private static Booking createBooking(final String user, final LocalDate day, final int hour) {
+        return newBooking()
+                .setUser(user)
+                .setBookingday(day)
+                .setStarttime(LocalTime.of(hour, 0))
+                .setActivity(1L)
+                .build();
+    }
+
+    private static Set<Long> ids(final Collection<Booking> bookings) {
+        return bookings.stream().map(Booking::getId).collect(toSet());
+    }
+
+    @Test
+    public void testQueriesMatchScan() {
+        assertEquals(4, testee.retrieveByUser(USER1).size());
+        assertEquals(ids(scanningStore.retrieveByUser(USER1)), ids(testee.retrieveByUser(USER1)));
+        assertEquals(3, testee.retrieveByDay(DAY1).size());
+        assertEquals(ids(scanningStore.retrieveByDay(DAY1)), ids(testee.retrieveByDay(DAY1)));
+        assertEquals(2, testee.retrieveByUserAndDay(USER1, DAY1).size());
+        assertEquals(ids(scanningStore.retrieveByUserAndDay(USER1, DAY1)),
+                ids(testee.retrieveByUserAndDay(USER1, DAY1)));
+        assertEquals(3, testee.retrieveByUserAndRange(USER1, DAY1, DAY3).size());
+        assertEquals(ids(scanningStore.retrieveByUserAndRange(USER1, DAY1, DAY3)),
+                ids(testee.retrieveByUserAndRange(USER1, DAY1, DAY3)));
+        assertTrue(testee.retrieveByUser("unknown").isEmpty());
+        assertTrue(testee.retrieveByUserAndRange(USER2, DAY2, DAY3).isEmpty());
+    }
+
+    @Test
+    public void testIndexesFollowChanges() {
+        Booking booking = testee.retrieveByUserAndDay(USER2, DAY1).iterator().next();
+        testee.store(booking.changeBooking().setBookingday(DAY2).build());
+        assertTrue(testee.retrieveByUserAndDay(USER2, DAY1).isEmpty());
+        assertEquals(1, testee.retrieveByUserAndDay(USER2, DAY2).size());
+        assertEquals(2, testee.retrieveByDay(DAY1).size());
+        testee.deleteById(booking.getId());
+        assertTrue(testee.retrieveByUserAndDay(USER2, DAY2).isEmpty());
+        assertEquals(1, testee.retrieveByUser(USER2).size());
+    }
+
+    @Test
+    public void testIndexesBuiltOnLoad() {
+        IndexedBookingStore reloaded = new IndexedBookingStore(delegate, () -> "location");
+        assertEquals(ids(testee.retrieveByUser(USER1)), ids(reloaded.retrieveByUser(USER1)));
+        assertEquals(ids(testee.retrieveByDay(DAY3)), ids(reloaded.retrieveByDay(DAY3)));
+    }
+
+    @Test
+    public void testRollupsFollowChanges() {
+        Booking first = testee.retrieveByUserAndDay(USER1, DAY1).stream()
+                .filter(b -> b.getStarttime().getHour() == 8)
+                .findFirst()
+                .get();
+        Booking second = testee.retrieveByUserAndDay(USER1, DAY1).stream()
+                .filter(b -> b.getStarttime().getHour() == 10)
+                .findFirst()
+                .get();
+        assertTrue(testee.retrieveRollupsByUserAndRange(USER1, DAY1, DAY2).get(DAY1).hasUnfinishedBookings());
+
+        testee.store(first.changeBooking().setEndtime(LocalTime.of(9, 30)).build());
+        testee.store(second.changeBooking().setEndtime(LocalTime.of(12, 0)).setActivity(2L).build());
+        DayRollup rollup = testee.retrieveRollupsByUserAndRange(USER1, DAY1, DAY2).get(DAY1);
+        assertFalse(rollup.hasUnfinishedBookings());
+        assertEquals(LocalTime.of(8, 0), rollup.getFirstStart());
+        assertEquals(LocalTime.of(12, 0), rollup.getLastEnd());
+        assertEquals(90, rollup.getMinutesForActivity(1L));
+        assertEquals(120, rollup.getMinutesForActivity(2L));
+
+        testee.store(second.changeBooking().setEndtime(LocalTime.of(12, 0)).setBookingday(DAY2).build());
+        assertEquals(90, testee.retrieveRollupsByUserAndRange(USER1, DAY1, DAY2).get(DAY1)
+                .getTotalMinutes());
+        testee.deleteById(first.getId());
+        assertTrue(testee.retrieveRollupsByUserAndRange(USER1, DAY1, DAY2).isEmpty());
+        assertEquals(2, testee.retrieveRollupsByUserAndRange(USER1, DAY1, DAY3.plusDays(1)).size());
+    }
+
+    @Test
+    public void testRollupsMatchScan() {
+        testee.store(createBooking(USER1, DAY2, 9).changeBooking().setEndtime(LocalTime.of(11, 0)).build());
+        SortedMap<LocalDate, DayRollup> indexed = testee.retrieveRollupsByUserAndRange(USER1, DAY1, DAY3);
+        SortedMap<LocalDate, DayRollup> scanned = scanningStore.retrieveRollupsByUserAndRange(USER1, DAY1, DAY3);
+        assertEquals(scanned.keySet(), indexed.keySet());
+        scanned.forEach((day, rollup) -> {
+            assertEquals(rollup.getTotalMinutes(), indexed.get(day).getTotalMinutes());
+            assertEquals(rollup.hasUnfinishedBookings(), indexed.get(day).hasUnfinishedBookings());
+            assertEquals(rollup.getActivityCount(), indexed.get(day).getActivityCount());
+            for (int i = 0; i < rollup.getActivityCount(); i++) {
+                assertEquals(rollup.getActivityId(i), indexed.get(day).getActivityId(i));
+                assertEquals(rollup.getActivityMinutes(i), indexed.get(day).getActivityMinutes(i));
+            }
+        });
+        IndexedBookingStore reloaded = new IndexedBookingStore(delegate, () -> "location");
+        assertEquals(indexed.keySet(), reloaded.retrieveRollupsByUserAndRange(USER1, DAY1, DAY3).keySet());
+    }
+
+    @Test
+    public void testRollupsByRangeMatchScan() {
+        Map<String, SortedMap<LocalDate, DayRollup>> indexed = testee.retrieveRollupsByRange(DAY2, DAY3.plusDays(1));
+        Map<String, SortedMap<LocalDate, DayRollup>> scanned = scanningStore.retrieveRollupsByRange(DAY2,
+                DAY3.plusDays(1));
+        assertEquals(scanned.keySet(), indexed.keySet());
+        assertEquals(asList(DAY2, DAY3), new ArrayList<>(indexed.get(USER1).keySet()));
+        assertEquals(asList(DAY3), new ArrayList<>(indexed.get(USER2).keySet()));
+        scanned.forEach((user, days) -> assertEquals(days.keySet(), indexed.get(user).keySet()));
+        assertEquals(indexed.get(USER1).keySet(),
+                testee.retrieveRollupsByUserAndRange(USER1, DAY2, DAY3.plusDays(1)).keySet());
+        assertTrue(testee.retrieveRollupsByRange(DAY1, DAY1).isEmpty());
+    }
+
+    @Test
+    public void testMinutesFollowChanges() {
+        Booking finished = testee.store(createBooking(USER1, DAY2, 9).changeBooking()
+                .setEndtime(LocalTime.of(11, 0)).build());
+        testee.store(createBooking(USER1, DAY3, 12).changeBooking().setEndtime(LocalTime.of(12, 45))
+                .setActivity(2L).build());
+        MinuteCounter minutes = testee.retrieveMinutesByUserAndRange(USER1, DAY1, DAY3.plusDays(1));
+        assertEquals(120, minutes.minutesFor(1L));
+        assertEquals(45, minutes.minutesFor(2L));
+        assertEquals(120, testee.retrieveMinutesByUserAndRange(USER1, DAY2, DAY3).minutesFor(1L));
+        assertEquals(-1, testee.retrieveMinutesByUserAndRange(USER1, DAY2, DAY3).indexOf(2L));
+
+        testee.deleteById(finished.getId());
+        assertEquals(0, testee.retrieveMinutesByUserAndRange(USER1, DAY1, DAY3.plusDays(1)).minutesFor(1L));
+        assertEquals(0, testee.retrieveMinutesByUserAndRange(USER2, DAY1, DAY3.plusDays(1)).minutesFor(1L));
+        assertEquals(0, testee.retrieveMinutesByUserAndRange("unknown", DAY1, DAY3).size());
+
+        IndexedBookingStore reloaded = new IndexedBookingStore(delegate, () -> "location");
+        assertEquals(45, reloaded.retrieveMinutesByUserAndRange(USER1, DAY1, DAY3.plusDays(1)).minutesFor(2L));
+        assertEquals(scanningStore.retrieveMinutesByUserAndRange(USER1, DAY1, DAY3.plusDays(1)).size(),
+                reloaded.retrieveMinutesByUserAndRange(USER1, DAY1, DAY3.plusDays(1)).size());
+    }
+}
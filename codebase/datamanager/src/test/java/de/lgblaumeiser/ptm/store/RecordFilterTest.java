@@ -0,0 +1,65 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsIn;
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsOf;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+
+public class RecordFilterTest {
+    private static final String USER = "UserF";
+    private static final LocalDate DAY = LocalDate.of(2019, 2, 28);
+
+    private static Booking booking(final String user, final LocalDate day) {
+        return newBooking().setUser(user).setBookingday(day).setActivity(1L).setStarttime(LocalTime.of(8, 0))
+                .build();
+    }
+
+    @Test
+    public void testUserFilter() {
+        RecordFilter<Booking> testee = bookingsOf(USER);
+        assertTrue(testee.matches(booking(USER, DAY)));
+        assertTrue(testee.matches(booking(USER, DAY.plusYears(10L))));
+        assertFalse(testee.matches(booking("Other", DAY)));
+        assertFalse(testee.matchesUser(null));
+        assertTrue(testee.matchesDay(null));
+    }
+
+    @Test
+    public void testRangeBoundaries() {
+        RecordFilter<Booking> testee = bookingsIn(DAY, DAY.plusDays(2L));
+        assertFalse(testee.matches(booking(USER, DAY.minusDays(1L))));
+        assertTrue(testee.matches(booking(USER, DAY)));
+        assertTrue(testee.matches(booking("Other", DAY.plusDays(1L))));
+        assertFalse(testee.matches(booking(USER, DAY.plusDays(2L))));
+        assertFalse(testee.matchesDay(null));
+    }
+
+    @Test
+    public void testUserAndRangeFilter() {
+        RecordFilter<Booking> testee = bookingsOf(USER, DAY, DAY.plusDays(1L));
+        assertTrue(testee.matches(booking(USER, DAY)));
+        assertFalse(testee.matches(booking("Other", DAY)));
+        assertFalse(testee.matches(booking(USER, DAY.plusDays(1L))));
+        assertTrue("user".equals(testee.getUserField()) && "bookingday".equals(testee.getDayField()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRangeNeedsBothDays() {
+        bookingsIn(DAY, null);
+    }
+}
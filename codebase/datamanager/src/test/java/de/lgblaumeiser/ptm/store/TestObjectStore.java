@@ -0,0 +1,95 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+class TestObjectStore<T> implements ObjectStore<T>, StoreBackupRestore<T> {
+    private static final String ID = "id";
+
+    private final Map<Long, T> content = new HashMap<>();
+    private final Function<T, Long> idGetter;
+    private long nextId = 1L;
+    private int retrieveAllCalls = 0;
+    private int retrieveByIdCalls = 0;
+    private Collection<T> restoreContent = new ArrayList<>();
+
+    TestObjectStore(final Function<T, Long> idGetter) {
+        this.idGetter = idGetter;
+    }
+
+    @Override
+    public Collection<T> retrieveAll() {
+        retrieveAllCalls++;
+        return new ArrayList<>(content.values());
+    }
+
+    @Override
+    public Optional<T> retrieveById(final Long id) {
+        retrieveByIdCalls++;
+        return Optional.ofNullable(content.get(id));
+    }
+
+    @Override
+    public T store(final T object) {
+        if (idGetter.apply(object) == -1) {
+            try {
+                Field f = object.getClass().getDeclaredField(ID);
+                f.setAccessible(true);
+                f.set(object, nextId++);
+                f.setAccessible(false);
+            } catch (IllegalAccessException | NoSuchFieldException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        content.put(idGetter.apply(object), object);
+        return object;
+    }
+
+    @Override
+    public void deleteById(final Long id) {
+        content.remove(id);
+    }
+
+    @Override
+    public Map<String, String> backup() {
+        return new HashMap<>();
+    }
+
+    @Override
+    public void restore(final Map<String, String> filenameToContentMap) {
+        restoreContent.forEach(this::store);
+    }
+
+    @Override
+    public void delete() {
+        content.clear();
+    }
+
+    Map<Long, T> getContent() {
+        return content;
+    }
+
+    int getRetrieveAllCalls() {
+        return retrieveAllCalls;
+    }
+
+    int getRetrieveByIdCalls() {
+        return retrieveByIdCalls;
+    }
+
+    void setRestoreContent(final Collection<T> restoreContent) {
+        this.restoreContent = restoreContent;
+    }
+}
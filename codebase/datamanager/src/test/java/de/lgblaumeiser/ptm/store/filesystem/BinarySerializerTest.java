@@ -0,0 +1,152 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsOf;
+import static de.lgblaumeiser.ptm.store.filesystem.StoreSupport.getOrAssignId;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.datamanager.model.User;
+
+public class BinarySerializerTest {
+    private final ObjectSerializer<Booking> bookings = BinarySerializer.forBookings();
+    private final JsonSerializer<Booking> jsonBookings = new JsonSerializer<>(() -> Booking.class);
+
+    private static <T> T withId(final T object, final long id) {
+        getOrAssignId(object, () -> id);
+        return object;
+    }
+
+    private static Booking booking(final LocalTime endtime) {
+        return withId(Booking.newBooking()
+                .setUser("UserX")
+                .setBookingday(LocalDate.of(2018, 9, 3))
+                .setStarttime(LocalTime.of(8, 15))
+                .setEndtime(endtime)
+                .setActivity(105L)
+                .setComment("Kommentar ä€")
+                .build(), 4711L);
+    }
+
+    private static <T> T roundTrip(final ObjectSerializer<T> serializer, final T object) {
+        byte[] content = serializer.serialize(object);
+        assertEquals(BinarySerializer.VERSION, content[0]);
+        byte[] padded = new byte[content.length + 4];
+        System.arraycopy(content, 0, padded, 2, content.length);
+        return serializer.deserialize(padded, 2, content.length);
+    }
+
+    private static <T> void assertSameData(final JsonSerializer<T> json, final T expected, final T actual) {
+        assertEquals(new String(json.serialize(expected), UTF_8), new String(json.serialize(actual), UTF_8));
+    }
+
+    @Test
+    public void testBookingRoundTrip() {
+        Booking booking = booking(LocalTime.of(17, 0));
+        assertSameData(jsonBookings, booking, roundTrip(bookings, booking));
+        Booking openBooking = booking(null);
+        assertSameData(jsonBookings, openBooking, roundTrip(bookings, openBooking));
+        Booking oldBooking = withId(booking.changeBooking().setBookingday(LocalDate.of(1969, 12, 1)).build(), 1L);
+        assertSameData(jsonBookings, oldBooking, roundTrip(bookings, oldBooking));
+    }
+
+    @Test
+    public void testActivityRoundTrip() {
+        Activity activity = withId(Activity.newActivity()
+                .setUser("UserX")
+                .setProjectName("Project")
+                .setActivityName("Activity")
+                .setProjectId("0815")
+                .setActivityId("4711")
+                .setHidden(true)
+                .build(), 300L);
+        assertSameData(new JsonSerializer<>(() -> Activity.class), activity,
+                roundTrip(BinarySerializer.forActivities(), activity));
+    }
+
+    @Test
+    public void testUserRoundTrip() {
+        User user = withId(User.newUser()
+                .setUsername("UserX")
+                .setPassword("Secret")
+                .setEmail("userx@somewhere.com")
+                .setQuestion("Question")
+                .setAnswer("Answer")
+                .setAdmin(true)
+                .build(), 2L);
+        assertSameData(new JsonSerializer<>(() -> User.class), user, roundTrip(BinarySerializer.forUsers(), user));
+    }
+
+    @Test
+    public void testBinaryIsSmallerThanJson() {
+        Booking booking = booking(LocalTime.of(17, 0));
+        assertTrue(bookings.serialize(booking).length * 3 < jsonBookings.serialize(booking).length);
+    }
+
+    @Test
+    public void testJsonContentRead() {
+        Booking booking = booking(LocalTime.of(17, 0));
+        byte[] json = jsonBookings.serialize(booking);
+        assertSameData(jsonBookings, booking, bookings.deserialize(json, 0, json.length));
+        assertTrue(bookings.matches(json, 0, json.length, bookingsOf("UserX")));
+        assertFalse(bookings.matches(json, 0, json.length, bookingsOf("UserY")));
+    }
+
+    @Test
+    public void testMatches() {
+        byte[] content = bookings.serialize(booking(LocalTime.of(17, 0)));
+        assertTrue(bookings.matches(content, 0, content.length, bookingsOf("UserX")));
+        assertFalse(bookings.matches(content, 0, content.length, bookingsOf("UserY")));
+        assertTrue(bookings.matches(content, 0, content.length,
+                bookingsOf("UserX", LocalDate.of(2018, 9, 1), LocalDate.of(2018, 10, 1))));
+        assertFalse(bookings.matches(content, 0, content.length,
+                bookingsOf("UserX", LocalDate.of(2018, 10, 1), LocalDate.of(2018, 11, 1))));
+    }
+
+    @Test
+    public void testTimesWithSecondsWrittenAsJson() {
+        Booking booking = booking(LocalTime.of(17, 0, 30));
+        byte[] content = bookings.serialize(booking);
+        assertEquals('{', content[0]);
+        assertSameData(jsonBookings, booking, bookings.deserialize(content, 0, content.length));
+    }
+
+    @Test
+    public void testBackupIsJson() {
+        Booking booking = booking(LocalTime.of(17, 0));
+        byte[] content = bookings.serialize(booking);
+        String backup = bookings.toBackup(content, 0, content.length);
+        assertEquals(new String(jsonBookings.serialize(booking), UTF_8), backup);
+        assertArrayEquals(content, bookings.fromBackup(backup));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnknownVersionFails() {
+        byte[] content = bookings.serialize(booking(LocalTime.of(17, 0)));
+        content[0] = 2;
+        bookings.deserialize(content, 0, content.length);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTruncatedContentFails() {
+        byte[] content = bookings.serialize(booking(LocalTime.of(17, 0)));
+        bookings.deserialize(Arrays.copyOf(content, content.length - 3), 0, content.length - 3);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static java.nio.charset.Charset.defaultCharset;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+
+/**
+ * Benchmark of reading and binding a year of booking files from disk. The
+ * string path reads each file into a string and binds the string, the byte path
+ * reads into the pooled buffer of the filesystem abstraction and binds the
+ * bytes. The files stay in the page cache, so the benchmark shows the copying
+ * and decoding cost. Run with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileReadBenchmark {
+    private final FilesystemAbstraction filesystemAccess = new FilesystemAbstractionImpl();
+    private final ObjectMapper jsonUtil = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final List<File> files = new ArrayList<>();
+    private File folder;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("ptm").toFile();
+        LocalDate firstDay = LocalDate.of(2015, 1, 1);
+        for (int i = 0; i < 1000; i++) {
+            Booking booking = newBooking()
+                    .setUser("User0")
+                    .setBookingday(firstDay.plusDays(i / 4))
+                    .setActivity(1L + i % 10)
+                    .setStarttime(LocalTime.of(8 + i % 4, 0))
+                    .setEndtime(LocalTime.of(9 + i % 4, 0))
+                    .setComment("Comment" + i % 5)
+                    .build();
+            File file = new File(folder, i + ".booking");
+            filesystemAccess.storeToFile(file, jsonUtil.writeValueAsString(booking));
+            files.add(file);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Benchmark
+    public List<Booking> readStrings() throws IOException {
+        List<Booking> result = new ArrayList<>();
+        for (File file : files) {
+            result.add(jsonUtil.readValue(FileUtils.readFileToString(file, defaultCharset()), Booking.class));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Booking> readBytes() {
+        List<Booking> result = new ArrayList<>();
+        for (File file : files) {
+            result.add(filesystemAccess.readFromFile(file,
+                    (content, offset, length) -> jsonUtil.readValue(content, offset, length, Booking.class)));
+        }
+        return result;
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FileReadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -7,7 +7,11 @@
  */
 package de.lgblaumeiser.ptm.store.filesystem;
 
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsIn;
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsOf;
 import static de.lgblaumeiser.ptm.util.Utils.getOnlyFromCollection;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.commons.io.FilenameUtils.getExtension;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -17,6 +21,8 @@ import static org.junit.Assert.assertTrue;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -78,6 +84,54 @@ public class FileStoreBookingTest {
         assertEquals(testData, foundObj);
     }
 
+    @Test
+    public void testRetrieveMatching() {
+        Long sameDay = testee.store(booking(USERNAME, TESTDATE)).getId();
+        Long nextDay = testee.store(booking(USERNAME, TESTDATE.plusDays(1L))).getId();
+        Long otherUser = testee.store(booking("UserY", TESTDATE)).getId();
+        assertEquals(ids(sameDay, nextDay), ids(testee.retrieveMatching(bookingsOf(USERNAME))));
+        assertEquals(ids(sameDay),
+                ids(testee.retrieveMatching(bookingsOf(USERNAME, TESTDATE, TESTDATE.plusDays(1L)))));
+        assertEquals(ids(sameDay, otherUser),
+                ids(testee.retrieveMatching(bookingsIn(TESTDATE.minusDays(1L), TESTDATE.plusDays(1L)))));
+        assertEquals(ids(), ids(testee.retrieveMatching(bookingsOf("UserZ"))));
+        assertEquals(TESTCOMMENT, getOnlyFromCollection(testee.retrieveMatching(bookingsOf("UserY"))).getComment());
+    }
+
+    @Test
+    public void testBinaryFormatReadsJsonFiles() {
+        Long jsonId = testee.store(booking(USERNAME, TESTDATE)).getId();
+        FileStore<Booking> binaryStore = new FileStore<>(stubAccess, () -> Booking.class,
+                BinarySerializer.forBookings());
+        Long binaryId = binaryStore.store(booking("UserY", TESTDATE)).getId();
+        assertEquals(BinarySerializer.VERSION, stubAccess.getStorageBytes()[0]);
+        assertEquals(TESTCOMMENT, binaryStore.retrieveById(jsonId).get().getComment());
+        assertEquals(TESTSTARTTIME, binaryStore.retrieveById(binaryId).get().getStarttime());
+        assertEquals(ids(jsonId, binaryId), ids(binaryStore.retrieveMatching(bookingsIn(TESTDATE,
+                TESTDATE.plusDays(1L)))));
+        assertEquals(ids(binaryId), ids(binaryStore.retrieveMatching(bookingsOf("UserY"))));
+        assertTrue(binaryStore.backup().values().stream().allMatch(c -> c.contains(TESTCOMMENT)));
+    }
+
+    private static Booking booking(final String user, final LocalDate day) {
+        return Booking.newBooking()
+                .setActivity(TESTACTID)
+                .setBookingday(day)
+                .setComment(TESTCOMMENT)
+                .setEndtime(TESTENDTIME)
+                .setStarttime(TESTSTARTTIME)
+                .setUser(user)
+                .build();
+    }
+
+    private static Set<Long> ids(final Long... ids) {
+        return new HashSet<>(asList(ids));
+    }
+
+    private static Set<Long> ids(final Collection<Booking> bookings) {
+        return bookings.stream().map(Booking::getId).collect(toSet());
+    }
+
     @Test
     public void testDeleteById() {
         Booking returnedObject = testee.store(testData);
@@ -0,0 +1,153 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsIn;
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+
+public class FileStorePartitionedTest {
+    private static final LocalDate TESTDATE = LocalDate.of(2018, 9, 3);
+    private static final String USERNAME = "UserX";
+
+    private final CountingFilesystemAbstraction stubAccess = new CountingFilesystemAbstraction();
+    private FileStore<Booking> testee;
+
+    private static class CountingFilesystemAbstraction extends TestFilesystemAbstraction {
+        private int reads;
+
+        @Override
+        public <R> R readFromFile(final File source, final ContentReader<R> reader) {
+            reads++;
+            return super.readFromFile(source, reader);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        testee = partitionedStore();
+    }
+
+    private FileStore<Booking> partitionedStore() {
+        return new FileStore<>(stubAccess, () -> Booking.class, Booking::getUser, Booking::getBookingday);
+    }
+
+    private static Booking booking(final String user, final LocalDate day) {
+        return Booking.newBooking()
+                .setActivity(1L)
+                .setBookingday(day)
+                .setStarttime(LocalTime.of(8, 15))
+                .setEndtime(LocalTime.of(17, 0))
+                .setUser(user)
+                .build();
+    }
+
+    private File expectedFile(final String userFolder, final String year, final String month, final Long id) {
+        return new File(new File(new File(new File(new File(testee.getStore(), "booking"), userFolder), year), month),
+                id + ".booking");
+    }
+
+    @Test
+    public void testFilesPlacedByUserAndMonth() {
+        Long id = testee.store(booking(USERNAME, TESTDATE)).getId();
+        assertEquals(expectedFile("_user_x", "2018", "09", id), stubAccess.getStorageFile());
+        assertEquals(USERNAME, testee.retrieveById(id).get().getUser());
+    }
+
+    @Test
+    public void testChangedDayMovesFile() {
+        Booking stored = testee.store(booking(USERNAME, TESTDATE));
+        testee.store(stored.changeBooking().setBookingday(TESTDATE.plusMonths(4L)).build());
+        assertFalse(stubAccess.dataAvailable(expectedFile("_user_x", "2018", "09", stored.getId())));
+        assertTrue(stubAccess.dataAvailable(expectedFile("_user_x", "2019", "01", stored.getId())));
+        assertEquals(TESTDATE.plusMonths(4L), testee.retrieveById(stored.getId()).get().getBookingday());
+        assertEquals(1, testee.retrieveAll().size());
+
+        testee.deleteById(stored.getId());
+        assertFalse(testee.retrieveById(stored.getId()).isPresent());
+        assertNull(stubAccess.getStorageContent());
+    }
+
+    @Test
+    public void testFilteredRetrievalReadsMatchingFoldersOnly() {
+        for (int i = 0; i < 12; i++) {
+            testee.store(booking(USERNAME, TESTDATE.plusMonths(i)));
+            testee.store(booking("UserY", TESTDATE.plusMonths(i)));
+        }
+        stubAccess.reads = 0;
+        assertEquals(1, testee.retrieveMatching(bookingsOf(USERNAME, TESTDATE, TESTDATE.plusDays(1L))).size());
+        assertEquals(1, stubAccess.reads);
+
+        stubAccess.reads = 0;
+        assertEquals(2, testee.retrieveMatching(bookingsIn(LocalDate.of(2018, 11, 1), LocalDate.of(2018, 12, 1)))
+                .size());
+        assertEquals(2, stubAccess.reads);
+
+        stubAccess.reads = 0;
+        assertEquals(12, testee.retrieveMatching(bookingsOf("UserY")).size());
+        assertEquals(12, stubAccess.reads);
+    }
+
+    @Test
+    public void testFlatStoreConvertedInPlace() {
+        FileStore<Booking> flatStore = new FileStore<>(stubAccess, () -> Booking.class);
+        Long first = flatStore.store(booking(USERNAME, TESTDATE)).getId();
+        Long second = flatStore.store(booking("user.y", TESTDATE.plusYears(1L))).getId();
+        File flatFile = new File(testee.getStore(), first + ".booking");
+        assertTrue(stubAccess.dataAvailable(flatFile));
+
+        assertEquals(2, testee.retrieveAll().size());
+        assertFalse(stubAccess.dataAvailable(flatFile));
+        assertTrue(stubAccess.dataAvailable(expectedFile("_user_x", "2018", "09", first)));
+        assertTrue(stubAccess.dataAvailable(expectedFile("user%2ey", "2019", "09", second)));
+        assertEquals(USERNAME, testee.retrieveById(first).get().getUser());
+
+        FileStore<Booking> convertedBack = new FileStore<>(stubAccess, () -> Booking.class);
+        assertEquals(2, convertedBack.retrieveAll().size());
+        assertTrue(stubAccess.dataAvailable(flatFile));
+        assertFalse(stubAccess.dataAvailable(expectedFile("_user_x", "2018", "09", first)));
+    }
+
+    @Test
+    public void testBackupRestore() {
+        Long id = testee.store(booking(USERNAME, TESTDATE)).getId();
+        Map<String, String> backup = testee.backup();
+        assertEquals(1, backup.size());
+        assertTrue(backup.containsKey(id + ".booking"));
+
+        testee.delete();
+        assertEquals(0, testee.retrieveAll().size());
+        testee.restore(backup);
+        assertTrue(stubAccess.dataAvailable(expectedFile("_user_x", "2018", "09", id)));
+        assertEquals(TESTDATE, testee.retrieveById(id).get().getBookingday());
+    }
+
+    @Test
+    public void testUserFolderNames() {
+        for (String user : new String[] { USERNAME, "user.y", "a_b%c", "Ünïcode 1", "-" }) {
+            assertEquals(user, PartitionedFileLayout.decodeUser(PartitionedFileLayout.encodeUser(user)));
+        }
+        assertFalse(PartitionedFileLayout.encodeUser("User")
+                .equalsIgnoreCase(PartitionedFileLayout.encodeUser("user")));
+        assertNull(PartitionedFileLayout.decodeUser("User"));
+        assertNull(PartitionedFileLayout.decodeUser("%zz"));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Booking.newBooking;
+import static de.lgblaumeiser.ptm.store.RecordFilter.bookingsOf;
+import static java.util.stream.Collectors.toList;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.lgblaumeiser.ptm.datamanager.model.Booking;
+import de.lgblaumeiser.ptm.store.RecordFilter;
+
+/**
+ * Benchmark of the retrieval of the bookings of one user in one month from a
+ * file store with one year of bookings of several users. The full bind path
+ * creates all bookings and filters them, the filtered path reads only user and
+ * day of each record and creates the matching bookings. The files are kept in
+ * memory, so the benchmark shows the parsing cost without disk access. Run with
+ * the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileStoreScanBenchmark {
+    private static final LocalDate FIRST_DAY = LocalDate.of(2015, 1, 1);
+    private static final String USER = "User0";
+
+    @Param({ "1", "10" })
+    public int users;
+
+    private FileStore<Booking> store;
+    private RecordFilter<Booking> filter;
+
+    @Setup
+    public void setUp() {
+        store = new FileStore<>(new TestFilesystemAbstraction(), () -> Booking.class);
+        Random random = new Random(42);
+        for (int u = 0; u < users; u++) {
+            for (LocalDate day = FIRST_DAY; day.isBefore(FIRST_DAY.plusYears(1L)); day = day.plusDays(1L)) {
+                if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                    continue;
+                }
+                LocalTime start = LocalTime.of(8, random.nextInt(30));
+                for (int b = 0; b < 4; b++) {
+                    LocalTime end = start.plusMinutes(90 + random.nextInt(60));
+                    store.store(newBooking()
+                            .setUser("User" + u)
+                            .setBookingday(day)
+                            .setActivity(1L + random.nextInt(10))
+                            .setStarttime(start)
+                            .setEndtime(end)
+                            .setComment("Comment" + random.nextInt(5))
+                            .build());
+                    start = end;
+                }
+            }
+        }
+        filter = bookingsOf(USER, FIRST_DAY.plusMonths(5L), FIRST_DAY.plusMonths(6L));
+    }
+
+    @Benchmark
+    public Collection<Booking> fullBind() {
+        return store.retrieveAll()
+                .stream()
+                .filter(filter::matches)
+                .collect(toList());
+    }
+
+    @Benchmark
+    public Collection<Booking> filtered() {
+        return store.retrieveMatching(filter);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FileStoreScanBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -8,6 +8,7 @@
 package de.lgblaumeiser.ptm.store.filesystem;
 
 import static de.lgblaumeiser.ptm.util.Utils.getOnlyFromCollection;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.commons.io.FileUtils.forceDelete;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -16,7 +17,12 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -37,12 +43,15 @@ public class FileSystemAbstractionTest {
             assertFalse(testee.folderAvailable(targetFile, false));
             assertFalse(testee.folderAvailable(new File(tempFolder, FOLDERNAME), false));
             assertTrue(testee.folderAvailable(new File(tempFolder, FOLDERNAME), true));
+            assertEquals(new File(tempFolder, FOLDERNAME), getOnlyFromCollection(testee.getAllFolders(tempFolder)));
             assertTrue(testee.dataAvailable(targetFile));
             Collection<File> files = testee.getAllFiles(tempFolder, "test");
             assertEquals(1, files.size());
             assertEquals(targetFile, getOnlyFromCollection(files));
             String content = testee.retrieveFromFile(targetFile);
             assertEquals(FILECONTENT, content);
+            testee.appendToFile(targetFile, FILECONTENT);
+            assertEquals(FILECONTENT + FILECONTENT, testee.retrieveFromFile(targetFile));
             testee.deleteFile(targetFile);
             assertFalse(targetFile.exists());
         } finally {
@@ -50,4 +59,67 @@ public class FileSystemAbstractionTest {
         }
         assertFalse(tempFolder.exists());
     }
+
+    @Test
+    public void testReadBytes() throws IOException {
+        File tempFolder = Files.createTempDirectory("ptm").toFile();
+        File smallFile = new File(tempFolder, FILENAME);
+        File largeFile = new File(tempFolder, "large.test");
+        StringBuilder largeContent = new StringBuilder();
+        while (largeContent.length() < 100000) {
+            largeContent.append(FILECONTENT).append(" \u00e4\u00f6\u00fc\u20ac ");
+        }
+        try {
+            testee.storeToFile(smallFile, "\u00c4rger \u20ac");
+            testee.storeToFile(largeFile, largeContent.toString());
+            assertEquals(largeContent.toString(), testee.retrieveFromFile(largeFile));
+            assertEquals("\u00c4rger \u20ac", testee.retrieveFromFile(smallFile));
+            assertEquals(10, testee.readFromFile(smallFile, (content, offset, length) -> length).intValue());
+            String nested = testee.readFromFile(smallFile,
+                    (content, offset, length) -> testee.retrieveFromFile(largeFile)
+                            + new String(content, offset, length, UTF_8));
+            assertEquals(largeContent + "\u00c4rger \u20ac", nested);
+        } finally {
+            forceDelete(tempFolder);
+        }
+    }
+
+    @Test
+    public void testTmpFilesOfInterruptedWritesRemoved() throws IOException {
+        File tempFolder = Files.createTempDirectory("ptm").toFile();
+        File leftover = new File(tempFolder, FILENAME + ".17.tmpstore");
+        try {
+            Files.write(leftover.toPath(), new byte[] { 1 });
+            testee.storeToFile(new File(tempFolder, FILENAME), FILECONTENT);
+            assertFalse(leftover.exists());
+            assertEquals(1, tempFolder.list().length);
+        } finally {
+            forceDelete(tempFolder);
+        }
+    }
+
+    @Test
+    public void testConcurrentWritesWithSync() throws Exception {
+        FilesystemAbstraction syncing = new FilesystemAbstractionImpl(SyncPolicy.ALWAYS, 0L);
+        File tempFolder = Files.createTempDirectory("ptm").toFile();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writes = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                File target = new File(tempFolder, i % 16 + ".test");
+                String content = FILECONTENT + i % 16;
+                writes.add(executor.submit(() -> syncing.storeToFile(target, content)));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+            assertEquals(16, tempFolder.list().length);
+            for (int i = 0; i < 16; i++) {
+                assertEquals(FILECONTENT + i, syncing.retrieveFromFile(new File(tempFolder, i + ".test")));
+            }
+        } finally {
+            executor.shutdown();
+            forceDelete(tempFolder);
+        }
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmark of eight threads storing booking sized files into one folder with
+ * the different sync policies. With the policy always the writers share the
+ * syncs of the folder. Run with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class FileWriteBenchmark {
+    private static final String CONTENT = "{\"id\":1,\"bookingday\":[2015,1,1],\"starttime\":[8,0],"
+            + "\"endtime\":[9,0],\"activity\":1,\"user\":\"User0\",\"comment\":\"Comment\"}";
+
+    @Param({ "always", "batched", "never" })
+    public String policy;
+
+    private final AtomicLong ids = new AtomicLong();
+    private FilesystemAbstraction filesystemAccess;
+    private File folder;
+
+    @Setup
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("ptm").toFile();
+        filesystemAccess = new FilesystemAbstractionImpl(SyncPolicy.fromName(policy), 100L);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileUtils.deleteDirectory(folder);
+    }
+
+    @Benchmark
+    public void store() {
+        filesystemAccess.storeToFile(new File(folder, ids.incrementAndGet() % 1000 + ".booking"), CONTENT);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FileWriteBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class IdSequenceTest {
+    private static final File STORE = new File("store");
+    private static final int BLOCK_SIZE = 10;
+
+    private final TestFilesystemAbstraction stubAccess = new TestFilesystemAbstraction();
+    private final AtomicInteger scans = new AtomicInteger();
+    private long lastUsedId;
+
+    private IdSequence createSequence() {
+        return new IdSequence(stubAccess, () -> STORE, "booking", () -> {
+            scans.incrementAndGet();
+            return lastUsedId;
+        }, BLOCK_SIZE);
+    }
+
+    @Before
+    public void setUp() {
+        lastUsedId = 41L;
+    }
+
+    @Test
+    public void testStartsBehindLastUsedId() {
+        IdSequence testee = createSequence();
+        assertEquals(Long.valueOf(42L), testee.nextId());
+        assertEquals(Long.valueOf(43L), testee.nextId());
+        assertEquals(1, scans.get());
+        assertEquals("52", stubAccess.retrieveFromFile(new File(STORE, "booking.sequence")));
+    }
+
+    @Test
+    public void testNoReuseAfterRestart() {
+        IdSequence testee = createSequence();
+        for (int i = 0; i < 15; i++) {
+            testee.nextId();
+        }
+        IdSequence restarted = createSequence();
+        assertEquals(Long.valueOf(62L), restarted.nextId());
+        assertEquals(1, scans.get());
+    }
+
+    @Test
+    public void testNoOverlapBetweenInstances() {
+        IdSequence first = createSequence();
+        IdSequence second = createSequence();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 3 * BLOCK_SIZE; i++) {
+            assertTrue(ids.add(first.nextId()));
+            assertTrue(ids.add(second.nextId()));
+        }
+    }
+
+    @Test
+    public void testReset() {
+        IdSequence testee = createSequence();
+        testee.nextId();
+        lastUsedId = 100L;
+        testee.reset();
+        assertEquals(Long.valueOf(101L), testee.nextId());
+    }
+
+    @Test
+    public void testConcurrentAllocationIsUnique() throws Exception {
+        IdSequence testee = createSequence();
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        ids.add(testee.nextId());
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(8000, ids.size());
+    }
+}
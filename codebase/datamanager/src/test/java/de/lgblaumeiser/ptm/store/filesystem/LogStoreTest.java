@@ -0,0 +1,134 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static de.lgblaumeiser.ptm.datamanager.model.Activity.newActivity;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.lgblaumeiser.ptm.datamanager.model.Activity;
+
+public class LogStoreTest {
+    private static final String USERNAME = "UserX";
+
+    private final FilesystemAbstraction fileact = new FilesystemAbstractionImpl();
+    private File tempfolder;
+    private LogStore<Activity> testee;
+
+    @Before
+    public void setUp() throws IOException {
+        tempfolder = Files.createTempDirectory("ptm").toFile();
+        System.setProperty("ptm.filestore", tempfolder.getAbsolutePath());
+        testee = new LogStore<>(fileact, () -> Activity.class, 3);
+    }
+
+    @After
+    public void teardown() throws IOException {
+        FileUtils.deleteDirectory(tempfolder);
+    }
+
+    private static Activity createActivity(final String name) {
+        return newActivity()
+                .setProjectName(name)
+                .setActivityName(name)
+                .setProjectId(name)
+                .setActivityId(name)
+                .setUser(USERNAME)
+                .build();
+    }
+
+    private LogStore<Activity> reload() {
+        return new LogStore<>(fileact, () -> Activity.class, 3);
+    }
+
+    @Test
+    public void testStateRebuiltFromLog() {
+        Activity first = testee.store(createActivity("first"));
+        Activity second = testee.store(createActivity("second"));
+        testee.store(second.changeActivity().setActivityName("changed").build());
+        testee.deleteById(first.getId());
+        LogStore<Activity> reloaded = reload();
+        assertEquals(1, reloaded.retrieveAll().size());
+        assertFalse(reloaded.retrieveById(first.getId()).isPresent());
+        assertEquals("changed", reloaded.retrieveById(second.getId()).get().getActivityName());
+        assertTrue(reloaded.store(createActivity("third")).getId() > second.getId());
+    }
+
+    @Test
+    public void testIdsOfDeletedObjectsNotReused() {
+        testee.store(createActivity("first"));
+        Activity second = testee.store(createActivity("second"));
+        testee.deleteById(second.getId());
+        testee.compact();
+        LogStore<Activity> reloaded = reload();
+        assertTrue(reloaded.store(createActivity("third")).getId() > second.getId());
+    }
+
+    @Test
+    public void testCompaction() {
+        for (int i = 0; i < 10; i++) {
+            testee.store(createActivity("activity" + i));
+        }
+        assertEquals(1, fileact.getAllFiles(tempfolder, "activitysnapshot").size());
+        assertEquals(1, fileact.getAllFiles(tempfolder, "activitylog").size());
+        assertEquals(10, reload().retrieveAll().size());
+        testee.compact();
+        assertEquals(1, fileact.getAllFiles(tempfolder, "activitysnapshot").size());
+        assertEquals(0, fileact.getAllFiles(tempfolder, "activitylog").size());
+        assertEquals(10, reload().retrieveAll().size());
+    }
+
+    @Test
+    public void testIncompleteRecordIgnored() {
+        testee.store(createActivity("first"));
+        File segment = fileact.getAllFiles(tempfolder, "activitylog").iterator().next();
+        fileact.appendToFile(segment, "{\"op\":\"put\",\"id\":2,\"da");
+        LogStore<Activity> reloaded = reload();
+        assertEquals(1, reloaded.retrieveAll().size());
+        reloaded.store(createActivity("second"));
+        assertEquals(2, reload().retrieveAll().size());
+    }
+
+    @Test
+    public void testBackupRestore() {
+        Activity first = testee.store(createActivity("first"));
+        testee.store(createActivity("second"));
+        Map<String, String> backup = testee.backup();
+        assertTrue(backup.containsKey(first.getId() + ".activity"));
+        testee.delete();
+        assertTrue(testee.retrieveAll().isEmpty());
+        assertTrue(reload().retrieveAll().isEmpty());
+        testee.restore(backup);
+        LogStore<Activity> reloaded = reload();
+        assertEquals(2, reloaded.retrieveAll().size());
+        assertEquals("first", reloaded.retrieveById(first.getId()).get().getActivityName());
+    }
+
+    @Test
+    public void testObjectFilesImported() {
+        FileStore<Activity> fileStore = new FileStore<>(fileact, () -> Activity.class);
+        Activity first = fileStore.store(createActivity("first"));
+        Activity second = fileStore.store(createActivity("second"));
+        assertEquals(2, testee.retrieveAll().size());
+        assertEquals("first", testee.retrieveById(first.getId()).get().getActivityName());
+        assertTrue(fileact.getAllFiles(tempfolder, "activity").isEmpty());
+        assertTrue(testee.store(createActivity("third")).getId() > second.getId());
+        assertEquals(3, reload().retrieveAll().size());
+    }
+}
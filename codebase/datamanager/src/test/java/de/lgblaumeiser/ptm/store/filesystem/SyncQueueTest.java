@@ -0,0 +1,105 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.store.filesystem;
+
+import static org.apache.commons.io.FileUtils.forceDelete;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncQueueTest {
+    private static final long INTERVAL = 200L;
+    private static final long TIMEOUT = 5000L;
+
+    private Path folder;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        folder = Files.createTempDirectory("ptm");
+        file = Files.write(folder.resolve("1.test"), new byte[] { 1 });
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        forceDelete(folder.toFile());
+    }
+
+    private static void awaitBatches(final SyncQueue testee, final long batches) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (testee.syncedBatches() < batches && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+    }
+
+    @Test
+    public void testAlwaysSyncsBeforeReturning() {
+        SyncQueue testee = new SyncQueue(SyncPolicy.ALWAYS, 0L);
+        assertTrue(testee.forcesReplacedContent());
+        assertTrue(testee.forcesAppendedContent());
+        testee.changed(null, folder);
+        assertEquals(1L, testee.syncedBatches());
+        testee.changed(folder.resolve("deleted.test"), null);
+        assertEquals(2L, testee.syncedBatches());
+    }
+
+    @Test
+    public void testBatchedSyncsChangesTogether() throws InterruptedException {
+        SyncQueue testee = new SyncQueue(SyncPolicy.BATCHED, INTERVAL);
+        assertTrue(testee.forcesReplacedContent());
+        assertFalse(testee.forcesAppendedContent());
+        for (int i = 0; i < 5; i++) {
+            testee.changed(file, folder);
+        }
+        assertEquals(0L, testee.syncedBatches());
+        awaitBatches(testee, 1L);
+        assertEquals(1L, testee.syncedBatches());
+    }
+
+    @Test
+    public void testFailedBackgroundSyncRetried() throws IOException, InterruptedException {
+        SyncQueue testee = new SyncQueue(SyncPolicy.BATCHED, INTERVAL);
+        // A folder cannot be synced as a file
+        Path broken = Files.createDirectory(folder.resolve("2.test"));
+        testee.changed(broken, null);
+        awaitBatches(testee, 1L);
+        assertTrue(testee.failure().isPresent());
+        // Other writers are not affected by the failure
+        testee.changed(file, null);
+
+        Files.delete(broken);
+        Files.write(broken, new byte[] { 2 });
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (testee.failure().isPresent() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertFalse(testee.failure().isPresent());
+        assertTrue(testee.syncedBatches() >= 2L);
+    }
+
+    @Test
+    public void testNeverSyncs() {
+        SyncQueue testee = new SyncQueue(SyncPolicy.NEVER, 0L);
+        assertFalse(testee.forcesReplacedContent());
+        testee.changed(file, folder);
+        assertEquals(0L, testee.syncedBatches());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testBatchedNeedsInterval() {
+        new SyncQueue(SyncPolicy.BATCHED, 0L);
+    }
+}
@@ -7,53 +7,92 @@
  */
 package de.lgblaumeiser.ptm.store.filesystem;
 
-import static java.util.Arrays.asList;
-import static java.util.Collections.emptyList;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 class TestFilesystemAbstraction implements FilesystemAbstraction {
+    private final Map<File, byte[]> files = new HashMap<>();
     private File storageFile;
-    private String storageContent;
 
     @Override
     public void storeToFile(final File target, final String content) {
+        storeToFile(target, content.getBytes(UTF_8));
+    }
+
+    @Override
+    public void storeToFile(final File target, final byte[] content) {
+        files.put(target, content);
+        storageFile = target;
+    }
+
+    @Override
+    public void appendToFile(final File target, final String content) {
+        files.merge(target, content.getBytes(UTF_8), (previous, appended) -> {
+            byte[] merged = Arrays.copyOf(previous, previous.length + appended.length);
+            System.arraycopy(appended, 0, merged, previous.length, appended.length);
+            return merged;
+        });
         storageFile = target;
-        storageContent = content;
     }
 
     @Override
     public String retrieveFromFile(final File source) {
-        if (!source.equals(storageFile)) {
-            throw new IllegalStateException();
-        }
-        if (storageContent == null) {
-            throw new IllegalStateException();
+        return new String(content(source), UTF_8);
+    }
+
+    @Override
+    public <R> R readFromFile(final File source, final ContentReader<R> reader) {
+        byte[] content = content(source);
+        try {
+            return reader.read(content, 0, content.length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
         }
-        return storageContent;
     }
 
     @Override
     public boolean dataAvailable(final File source) {
-        return true;
+        return files.containsKey(source);
     }
 
     @Override
     public Collection<File> getAllFiles(final File folder, final String extension) {
-        return storageFile != null ? asList(storageFile) : emptyList();
+        return files.keySet()
+                .stream()
+                .filter(f -> folder.equals(f.getParentFile()) && f.getName().endsWith("." + extension))
+                .collect(toList());
+    }
+
+    @Override
+    public Collection<File> getAllFolders(final File folder) {
+        Set<File> folders = new HashSet<>();
+        for (File file : files.keySet()) {
+            for (File current = file.getParentFile(); current != null; current = current.getParentFile()) {
+                if (folder.equals(current.getParentFile())) {
+                    folders.add(current);
+                }
+            }
+        }
+        return folders;
     }
 
     @Override
     public void deleteFile(final File target) {
-        if (!target.equals(storageFile)) {
+        if (files.remove(target) == null) {
             throw new IllegalStateException();
         }
-        if (storageContent == null) {
-            throw new IllegalStateException();
+        if (target.equals(storageFile)) {
+            storageFile = null;
         }
-        storageContent = null;
-        storageFile = null;
     }
 
     @Override
@@ -61,11 +100,23 @@ class TestFilesystemAbstraction implements FilesystemAbstraction {
         return true;
     }
 
+    private byte[] content(final File source) {
+        byte[] content = files.get(source);
+        if (content == null) {
+            throw new IllegalStateException();
+        }
+        return content;
+    }
+
     public File getStorageFile() {
         return storageFile;
     }
 
     public String getStorageContent() {
-        return storageContent;
+        return storageFile != null ? new String(files.get(storageFile), UTF_8) : null;
+    }
+
+    public byte[] getStorageBytes() {
+        return storageFile != null ? files.get(storageFile) : null;
     }
 }
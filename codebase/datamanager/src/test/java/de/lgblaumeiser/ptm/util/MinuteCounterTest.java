@@ -0,0 +1,62 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.util;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MinuteCounterTest {
+    @Test
+    public void testSumsInInsertionOrder() {
+        MinuteCounter testee = new MinuteCounter();
+        assertEquals(0, testee.add(42L, 30));
+        assertEquals(1, testee.add(-7L, 15));
+        assertEquals(0, testee.add(42L, 45));
+        assertEquals(2, testee.size());
+        assertEquals(42L, testee.idAt(0));
+        assertEquals(75, testee.minutesAt(0));
+        assertEquals(-7L, testee.idAt(1));
+        assertEquals(15, testee.minutesFor(-7L));
+        assertEquals(-1, testee.indexOf(3L));
+        assertEquals(0, testee.minutesFor(3L));
+    }
+
+    @Test
+    public void testGrowsBeyondInitialCapacity() {
+        MinuteCounter testee = new MinuteCounter(1);
+        for (long id = 0; id < 1000; id++) {
+            testee.add(id << 32, 1);
+            testee.add(id << 32, (int) id);
+        }
+        assertEquals(1000, testee.size());
+        for (int index = 0; index < 1000; index++) {
+            assertEquals((long) index << 32, testee.idAt(index));
+            assertEquals(index + 1, testee.minutesAt(index));
+            assertEquals(index, testee.indexOf((long) index << 32));
+        }
+    }
+
+    @Test
+    public void testTrimmedCopy() {
+        MinuteCounter testee = new MinuteCounter(100);
+        testee.add(5L, 10);
+        testee.add(3L, 20);
+        MinuteCounter copy = testee.trimmedCopy();
+        testee.add(5L, 10);
+        assertEquals(2, copy.size());
+        assertEquals(5L, copy.idAt(0));
+        assertEquals(10, copy.minutesFor(5L));
+        assertEquals(20, copy.minutesAt(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testIndexOutOfRange() {
+        new MinuteCounter().minutesAt(0);
+    }
+}
@@ -28,8 +28,8 @@ public class SecurityConfiguration extends WebSecurityConfigurerAdapter {
 
 	protected void configure(HttpSecurity http) throws Exception {
 		http.authorizeRequests().antMatchers("/services/license", "/users/register", "/users/reset").permitAll()
-				.antMatchers("/services/backup", "/services/restore").hasAuthority("ADMIN").anyRequest()
-				.authenticated();
+				.antMatchers("/services/backup", "/services/restore", "/analysis/team/**").hasAuthority("ADMIN")
+				.anyRequest().authenticated();
 		http.httpBasic();
 		http.csrf().disable();
 	}
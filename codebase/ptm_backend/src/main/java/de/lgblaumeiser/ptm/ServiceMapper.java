@@ -12,19 +12,22 @@ import static java.lang.System.setProperty;
 
 import java.io.File;
 
+import javax.annotation.PreDestroy;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Component;
 
+import de.lgblaumeiser.ptm.analysis.AnalysisJobService;
 import de.lgblaumeiser.ptm.analysis.AnalysisProvider;
 import de.lgblaumeiser.ptm.analysis.DataAnalysisService;
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
-import de.lgblaumeiser.ptm.datamanager.model.Booking;
 import de.lgblaumeiser.ptm.datamanager.model.User;
 import de.lgblaumeiser.ptm.datamanager.service.BookingService;
 import de.lgblaumeiser.ptm.datamanager.service.BookingServiceProvider;
+import de.lgblaumeiser.ptm.store.BookingStore;
 import de.lgblaumeiser.ptm.store.FileStoreProvider;
 import de.lgblaumeiser.ptm.store.ObjectStore;
 import de.lgblaumeiser.ptm.store.ZipBackupRestore;
@@ -38,7 +41,7 @@ public class ServiceMapper {
 	private Logger logger = LoggerFactory.getLogger(getClass());
 
 	private final ObjectStore<Activity> activityStore;
-	private final ObjectStore<Booking> bookingStore;
+	private final BookingStore bookingStore;
 	private final ObjectStore<User> userStore;
 
 	private final BookingService bookingService;
@@ -47,6 +50,8 @@ public class ServiceMapper {
 
 	private final DataAnalysisService analysisService;
 
+	private final AnalysisJobService analysisJobService;
+
 	private final PasswordEncoder passwordEncoder;
 
 	public ServiceMapper() {
@@ -56,7 +61,9 @@ public class ServiceMapper {
 		bookingStore = storageProvider.getBookingFileStore();
 		bookingService = new BookingServiceProvider().getBookingService(bookingStore);
 		backupService = storageProvider.getZipBackupRestore();
-		analysisService = new AnalysisProvider().getAnalysisService(activityStore, bookingStore);
+		AnalysisProvider analysisProvider = new AnalysisProvider();
+		analysisService = analysisProvider.getAnalysisService(activityStore, bookingStore);
+		analysisJobService = analysisProvider.getAnalysisJobService(analysisService);
 		passwordEncoder = new BCryptPasswordEncoder();
 		logger.info("PTM services initialized");
 	}
@@ -69,7 +76,7 @@ public class ServiceMapper {
 		return activityStore;
 	}
 
-	public ObjectStore<Booking> bookingStore() {
+	public BookingStore bookingStore() {
 		return bookingStore;
 	}
 
@@ -85,7 +92,20 @@ public class ServiceMapper {
 		return analysisService;
 	}
 
+	public AnalysisJobService analysisJobService() {
+		return analysisJobService;
+	}
+
 	public PasswordEncoder passwordEncodingService() {
 		return passwordEncoder;
 	}
+
+	/**
+	 * Stop the threads of the analysis jobs when the application shuts down
+	 */
+	@PreDestroy
+	public void shutdown() {
+		analysisJobService.shutdown();
+		logger.info("PTM services stopped");
+	}
 }
@@ -7,6 +7,8 @@
  */
 package de.lgblaumeiser.ptm.html;
 
+import static de.lgblaumeiser.ptm.analysis.AnalysisResultFormatter.toTable;
+import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 
 import java.security.Principal;
@@ -15,7 +17,10 @@ import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.List;
 
+import de.lgblaumeiser.ptm.analysis.AnalysisRequest;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
 import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -97,9 +102,8 @@ public class OverviewController {
         model.addAttribute(BOOKINGSFORDAYATTRIBUTE,
                 services
                         .bookingStore()
-                        .retrieveAll()
+                        .retrieveByUserAndDay(username, dateToShow)
                         .stream()
-                        .filter(b -> b.getBookingday().equals(dateToShow) && b.getUser().equals(username))
                         .sorted(Comparator.comparing(Booking::getStarttime))
                         .map(b -> new BookingStruct(
                                 b.getId(),
@@ -109,17 +113,24 @@ public class OverviewController {
                                 b.getComment()))
                         .collect(toList()));
 
-        setAnalysisData(model, HOURSANALYSISHEADLINEATTRIBUTE, HOURSANALYSISATTRIBUTE, HOURANALYSISID,
-                getMonthPeriod(dateToShow), username);
+        List<AnalysisResult> analysisResults = services
+                .analysisService()
+                .analyze(username, asList(
+                        new AnalysisRequest(HOURANALYSISID, getMonthPeriod(dateToShow)),
+                        new AnalysisRequest(ACTIVITIESANALYSISID, getDayPeriod(dateToShow)),
+                        new AnalysisRequest(ACTIVITIESANALYSISID, getMonthPeriod(dateToShow)),
+                        new AnalysisRequest(PROJECTSANALYSISID, getMonthPeriod(dateToShow))));
+
+        setAnalysisData(model, HOURSANALYSISHEADLINEATTRIBUTE, HOURSANALYSISATTRIBUTE, analysisResults.get(0));
 
         setAnalysisData(model, ACTIVITIESANALYSISTODAYHEADLINEATTRIBUTE, ACTIVITIESANALYSISTODAYATTRIBUTE,
-                ACTIVITIESANALYSISID, getDayPeriod(dateToShow), username);
+                analysisResults.get(1));
 
         setAnalysisData(model, ACTIVITYANALYSISMONTHHEADLINEATTRIBUTE, ACTIVITYANALYSISMONTHATTRIBUTE,
-                ACTIVITIESANALYSISID, getMonthPeriod(dateToShow), username);
+                analysisResults.get(2));
 
-        setAnalysisData(model, PROJECTANALYSISMONTHHEADLINEATTRIBUTE, PROJECTANALYSISMONTHATTRIBUTE, PROJECTSANALYSISID,
-                getMonthPeriod(dateToShow), username);
+        setAnalysisData(model, PROJECTANALYSISMONTHHEADLINEATTRIBUTE, PROJECTANALYSISMONTHATTRIBUTE,
+                analysisResults.get(3));
 
         return TEMPLATENAME;
     }
@@ -142,12 +153,10 @@ public class OverviewController {
     }
 
     private void setAnalysisData(final Model model, final String headlineAttr, final String analysisAttr,
-            final String analysisId, final CalculationPeriod period, final String username) {
-        Collection<Collection<String>> analysisResult = services
-                .analysisService()
-                .analyze(analysisId, username, period);
-        Collection<String> headline = Utils.getFirstFromCollection(analysisResult);
-        Collection<Collection<String>> bodydata = analysisResult.stream().skip(1).collect(toList());
+            final AnalysisResult analysisResult) {
+        Collection<Collection<String>> table = toTable(analysisResult);
+        Collection<String> headline = Utils.getFirstFromCollection(table);
+        Collection<Collection<String>> bodydata = table.stream().skip(1).collect(toList());
         model.addAttribute(headlineAttr, headline);
         model.addAttribute(analysisAttr, bodydata);
     }
@@ -0,0 +1,107 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.rest;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
+
+import java.net.URI;
+import java.security.Principal;
+import java.time.LocalDate;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import de.lgblaumeiser.ptm.ServiceMapper;
+import de.lgblaumeiser.ptm.analysis.AnalysisJobStatus;
+import de.lgblaumeiser.ptm.analysis.AnalysisJobStatus.State;
+import de.lgblaumeiser.ptm.analysis.AnalysisRequest;
+import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.CompactAnalysisResult;
+import de.lgblaumeiser.ptm.rest.AnalysisRestController.AnalysisRequestBody;
+
+/**
+ * Rest controller for running analyses as background jobs. A job is submitted,
+ * its state is polled, optionally waiting for the job to finish, and the result
+ * is fetched when the job is done.
+ */
+@RestController
+@RequestMapping("/analysis/jobs")
+public class AnalysisJobRestController {
+	private static final long MAX_WAIT_SECONDS = 30L;
+
+	private Logger logger = LoggerFactory.getLogger(getClass());
+
+	@Autowired
+	private ServiceMapper services;
+
+	@PostMapping
+	ResponseEntity<AnalysisJobStatus> submitJob(Principal principal, @RequestBody final AnalysisRequestBody request) {
+		logger.info("Request: Submit Analysis Job for {} and user {}", String.valueOf(request.analyzerId)
+				.replaceAll("[\n|\r|\t]", "_"), principal.getName());
+		AnalysisJobStatus status = services.analysisJobService().submit(principal.getName(),
+				new AnalysisRequest(String.valueOf(request.analyzerId).toUpperCase(),
+						new CalculationPeriod(LocalDate.parse(request.start), LocalDate.parse(request.end))));
+		URI location = URI.create(ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString()
+				+ "/analysis/jobs/" + status.id);
+		logger.info("Result: Analysis Job created with Id " + status.id);
+		return ResponseEntity.created(location).body(status);
+	}
+
+	/**
+	 * The state of the job, if wait is given, the request waits up to this number
+	 * of seconds for the job to finish
+	 */
+	@GetMapping(value = "/{jobId}")
+	ResponseEntity<AnalysisJobStatus> getJobStatus(Principal principal, @PathVariable final Long jobId,
+			@RequestParam(defaultValue = "0") final long wait) {
+		logger.info("Request: Get State of Analysis Job {} for user {}", jobId, principal.getName());
+		long waitMillis = TimeUnit.SECONDS.toMillis(Math.min(Math.max(wait, 0L), MAX_WAIT_SECONDS));
+		Optional<AnalysisJobStatus> status = waitMillis > 0
+				? services.analysisJobService().awaitStatus(principal.getName(), jobId, waitMillis)
+				: services.analysisJobService().getStatus(principal.getName(), jobId);
+		return status.map(ResponseEntity::ok).orElseGet(() -> ResponseEntity.notFound().build());
+	}
+
+	@GetMapping(value = "/{jobId}/result")
+	ResponseEntity<?> getJobResult(Principal principal, @PathVariable final Long jobId) {
+		logger.info("Request: Get Result of Analysis Job {} for user {}", jobId, principal.getName());
+		Optional<AnalysisJobStatus> status = services.analysisJobService().getStatus(principal.getName(), jobId);
+		if (!status.isPresent()) {
+			return ResponseEntity.notFound().build();
+		}
+		if (status.get().state == State.FAILED) {
+			return ResponseEntity.status(BAD_REQUEST).body(status.get().error);
+		}
+		if (status.get().state != State.DONE) {
+			return ResponseEntity.status(CONFLICT).body(status.get());
+		}
+		return services.analysisJobService().getResult(principal.getName(), jobId)
+				.<ResponseEntity<?>>map(result -> ResponseEntity.ok(CompactAnalysisResult.of(result)))
+				.orElseGet(() -> ResponseEntity.notFound().build());
+	}
+
+	@ExceptionHandler(IllegalStateException.class)
+	public ResponseEntity<?> handleException(final IllegalStateException e) {
+		logger.error("Exception in Request", e);
+		return ResponseEntity.status(BAD_REQUEST).body(e.toString());
+	}
+}
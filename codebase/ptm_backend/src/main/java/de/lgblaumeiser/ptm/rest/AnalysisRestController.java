@@ -7,14 +7,22 @@
  */
 package de.lgblaumeiser.ptm.rest;
 
+import static de.lgblaumeiser.ptm.analysis.AnalysisResultFormatter.toTable;
+import static java.util.stream.Collectors.toList;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
 
 import java.security.Principal;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import de.lgblaumeiser.ptm.analysis.AnalysisRequest;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
 import de.lgblaumeiser.ptm.analysis.CalculationPeriod;
+import de.lgblaumeiser.ptm.analysis.CompactAnalysisResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,9 +42,24 @@ public class AnalysisRestController {
 	@Autowired
 	private ServiceMapper services;
 
+	/**
+	 * The analysis result formatted as table of strings, the first line is the
+	 * headline. Kept for clients that do not use the compact representation.
+	 */
 	@GetMapping(value = "/{analyzerId}/{start}/{end}")
 	Collection<Collection<String>> runAnalysis(Principal principal, @PathVariable final String analyzerId,
 			@PathVariable final String start, @PathVariable final String end) {
+		return toTable(analyze(principal, analyzerId, start, end));
+	}
+
+	@GetMapping(value = "/compact/{analyzerId}/{start}/{end}")
+	CompactAnalysisResult runCompactAnalysis(Principal principal, @PathVariable final String analyzerId,
+			@PathVariable final String start, @PathVariable final String end) {
+		return CompactAnalysisResult.of(analyze(principal, analyzerId, start, end));
+	}
+
+	private AnalysisResult analyze(final Principal principal, final String analyzerId, final String start,
+			final String end) {
 		LocalDate startdate = LocalDate.parse(start);
 		LocalDate enddate = LocalDate.parse(end);
 		logger.info("Request: Get Analysis Data for {} for time frame {} - {} and user {}",
@@ -48,6 +71,58 @@ public class AnalysisRestController {
 				new CalculationPeriod(startdate, enddate));
 	}
 
+	/**
+	 * The analysis summed up over all users, only available for administrators
+	 */
+	@GetMapping(value = "/team/{analyzerId}/{start}/{end}")
+	CompactAnalysisResult runTeamAnalysis(Principal principal, @PathVariable final String analyzerId,
+			@PathVariable final String start, @PathVariable final String end) {
+		LocalDate startdate = LocalDate.parse(start);
+		LocalDate enddate = LocalDate.parse(end);
+		logger.info("Request: Get Team Analysis Data for {} for time frame {} - {} by user {}",
+				removeTroubleCausingChars(analyzerId),
+				startdate.format(DateTimeFormatter.ISO_LOCAL_DATE),
+				enddate.format(DateTimeFormatter.ISO_LOCAL_DATE),
+				principal.getName());
+		return CompactAnalysisResult.of(services.analysisService().analyzeTeam(analyzerId.toUpperCase(),
+				new CalculationPeriod(startdate, enddate)));
+	}
+
+	public static class AnalysisRequestBody {
+		public String analyzerId;
+		public String start;
+		public String end;
+	}
+
+	@PostMapping(value = "/batch")
+	List<CompactAnalysisResult> runAnalyses(Principal principal,
+			@RequestBody final List<AnalysisRequestBody> requests) {
+		logger.info("Request: Get Analysis Data for {} analyses and user {}", requests.size(), principal.getName());
+		return services.analysisService().analyze(principal.getName(), requests.stream()
+				.map(r -> new AnalysisRequest(String.valueOf(r.analyzerId).toUpperCase(),
+						new CalculationPeriod(LocalDate.parse(r.start), LocalDate.parse(r.end))))
+				.collect(toList()))
+				.stream()
+				.map(CompactAnalysisResult::of)
+				.collect(toList());
+	}
+
+	@GetMapping(value = "/validation/{start}/{end}")
+	Map<String, List<Long>> findOverlappingBookings(Principal principal, @PathVariable final String start,
+			@PathVariable final String end) {
+		LocalDate startdate = LocalDate.parse(start);
+		LocalDate enddate = LocalDate.parse(end);
+		logger.info("Request: Get overlapping bookings for time frame {} - {} and user {}",
+				startdate.format(DateTimeFormatter.ISO_LOCAL_DATE),
+				enddate.format(DateTimeFormatter.ISO_LOCAL_DATE),
+				principal.getName());
+		Map<String, List<Long>> result = new LinkedHashMap<>();
+		services.analysisService().findOverlappingBookings(principal.getName(),
+				new CalculationPeriod(startdate, enddate))
+				.forEach((day, ids) -> result.put(day.format(DateTimeFormatter.ISO_LOCAL_DATE), ids));
+		return result;
+	}
+
 	private String removeTroubleCausingChars(String troubledString) {
 		return troubledString.replaceAll("[\n|\r|\t]", "_");
 	}
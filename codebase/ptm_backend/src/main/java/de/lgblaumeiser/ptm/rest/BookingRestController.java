@@ -51,16 +51,15 @@ public class BookingRestController {
     @RequestMapping(method = RequestMethod.GET)
     public Collection<String> getDaysForWhichBookingsExist(final Principal principal) {
         logger.info("Request: Get all days for which bookings exist for user " + principal.getName());
-        return services.bookingStore().retrieveAll().stream().filter(b -> b.getUser().equals(principal.getName()))
-                .map(Booking::getBookingday).distinct().map(d -> d.format(ISO_LOCAL_DATE)).sorted().collect(toList());
+        return services.bookingStore().retrieveByUser(principal.getName()).stream().map(Booking::getBookingday)
+                .distinct().map(d -> d.format(ISO_LOCAL_DATE)).sorted().collect(toList());
     }
 
     @RequestMapping(method = RequestMethod.GET, value = "/day/{dayString}")
     public Collection<Booking> getBookingsForDay(final Principal principal, @PathVariable final String dayString) {
         logger.info("Request: Get Bookings for Day " + dayString + " and user " + principal.getName());
         LocalDate day = LocalDate.parse(dayString);
-        return services.bookingStore().retrieveAll().stream().filter(b -> b.getBookingday().equals(day))
-                .filter(b -> checkUser(b.getUser(), principal.getName()))
+        return services.bookingStore().retrieveByUserAndDay(principal.getName(), day).stream()
                 .sorted(Comparator.comparing(Booking::getStarttime)).collect(toList());
     }
 
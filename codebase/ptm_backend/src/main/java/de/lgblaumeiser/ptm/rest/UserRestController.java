@@ -13,6 +13,7 @@ import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import java.net.URI;
 import java.security.Principal;
 import java.security.SecureRandom;
+import java.util.Collection;
 import java.util.List;
 import java.util.Random;
 import java.util.stream.Collectors;
@@ -105,8 +106,7 @@ public class UserRestController {
 		logger.info("Request: Delete User and all his data with username " + principal.getName());
 		User user = services.userStore().retrieveAll().stream().filter(u -> u.getUsername().equals(principal.getName()))
 				.findFirst().orElseThrow(IllegalStateException::new);
-		List<Booking> relatedBookings = services.bookingStore().retrieveAll().stream()
-				.filter(b -> b.getUser().equals(principal.getName())).collect(Collectors.toList());
+		Collection<Booking> relatedBookings = services.bookingStore().retrieveByUser(principal.getName());
 		for (Booking booking : relatedBookings) {
 			services.bookingStore().deleteById(booking.getId());
 		}
@@ -8,8 +8,10 @@
 package de.lgblaumeiser.ptm.rest;
 
 import static de.lgblaumeiser.ptm.util.Utils.emptyString;
+import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.containsString;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import org.junit.Test;
@@ -18,6 +20,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import de.lgblaumeiser.ptm.rest.AnalysisRestController.AnalysisRequestBody;
 import de.lgblaumeiser.ptm.rest.BookingRestController.BookingBody;
 
 import java.time.YearMonth;
@@ -33,6 +36,10 @@ public class AnalysisControllerTest extends ControllerTestSetupAndSupport {
     private static final String HUNDERT_PERCENT_STRING = "100.0%";
 
     private static String ANALYSIS_API_TEMPLATE = "/analysis/%s/%s/%s";
+    private static String ANALYSIS_VALIDATION = "validation";
+    private static String ANALYSIS_BATCH_API = "/analysis/batch";
+    private static String ANALYSIS_COMPACT = "compact/";
+    private static String ANALYSIS_TEAM = "team/";
     private static String ANALYSIS_HOURS = "hours";
     private static String ANALYSIS_PROJECTS = "projects";
     private static String ANALYSIS_ACTIVITIES = "activities";
@@ -72,6 +79,151 @@ public class AnalysisControllerTest extends ControllerTestSetupAndSupport {
                 .andExpect(content().string(containsString(HUNDERT_PERCENT_STRING)));
     }
 
+    @Test
+    public void testOverlapValidation() throws Exception {
+        createDefaultUser();
+
+        createDefaultActivity(false);
+
+        performGet(api(ANALYSIS_VALIDATION))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{}"));
+
+        BookingBody booking = new BookingBody();
+        booking.activityId = ACTIVITY_ID_1;
+        booking.starttime = createHourString(8, 15);
+        booking.endtime = createHourString(12, 0);
+        booking.comment = emptyString();
+        createBooking(DATE_STRING, booking, getUser1());
+
+        booking.starttime = createHourString(11, 30);
+        booking.endtime = createHourString(13, 0);
+        createBooking(DATE_STRING, booking, getUser1());
+
+        booking.starttime = createHourString(13, 0);
+        booking.endtime = createHourString(14, 0);
+        createBooking(DATE_STRING, booking, getUser1());
+
+        performGet(api(ANALYSIS_VALIDATION))
+                .andExpect(status().isOk())
+                .andExpect(content().json("{\"" + DATE_STRING + "\":[1,2]}", true));
+
+        performGet(api(ANALYSIS_HOURS))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Day has overlapping bookings! Ids: 1, 2")));
+    }
+
+    @Test
+    public void testCompactAnalysis() throws Exception {
+        createDefaultUser();
+
+        createDefaultActivity(false);
+
+        BookingBody booking = new BookingBody();
+        booking.activityId = ACTIVITY_ID_1;
+        booking.starttime = createHourString(8, 15);
+        booking.endtime = createHourString(16, 45);
+        booking.comment = emptyString();
+        createBooking(DATE_STRING, booking, getUser1());
+
+        performGet(api(ANALYSIS_COMPACT + ANALYSIS_HOURS))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.columns[0]").value("Work Day"))
+                .andExpect(jsonPath("$.types[1]").value("TIME"))
+                .andExpect(jsonPath("$.types[4]").value("MINUTES"))
+                .andExpect(jsonPath("$.rows[0][0]").value(DATE_STRING))
+                .andExpect(jsonPath("$.rows[0][1]").value(createHourString(8, 15)))
+                .andExpect(jsonPath("$.rows[0][4]").value(510))
+                .andExpect(jsonPath("$.totals").doesNotExist());
+
+        performGet(api(ANALYSIS_COMPACT + ANALYSIS_PROJECTS))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.types[3]").value("PERCENTAGE"))
+                .andExpect(jsonPath("$.rows[0][1]").value(TESTACT1_PRJ))
+                .andExpect(jsonPath("$.rows[0][2]").value(510))
+                .andExpect(jsonPath("$.totals[2]").value(510))
+                .andExpect(jsonPath("$.totals[3]").value(100.0));
+    }
+
+    @Test
+    public void testBatchAnalysis() throws Exception {
+        createDefaultUser();
+
+        createDefaultActivity(false);
+
+        BookingBody booking = new BookingBody();
+        booking.activityId = ACTIVITY_ID_1;
+        booking.starttime = createHourString(8, 15);
+        booking.endtime = createHourString(16, 45);
+        booking.comment = emptyString();
+        createBooking(DATE_STRING, booking, getUser1());
+
+        YearMonth analysisMonth = YearMonth.from(DATE);
+        AnalysisRequestBody hours = new AnalysisRequestBody();
+        hours.analyzerId = ANALYSIS_HOURS;
+        hours.start = analysisMonth.atDay(1).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        hours.end = analysisMonth.plusMonths(1L).atDay(1).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        AnalysisRequestBody projects = new AnalysisRequestBody();
+        projects.analyzerId = ANALYSIS_PROJECTS;
+        projects.start = DATE_STRING;
+        projects.end = DATE.plusDays(1L).format(DateTimeFormatter.ISO_LOCAL_DATE);
+
+        performPost(ANALYSIS_BATCH_API, asList(hours, projects), getUser1())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].rows[0][0]").value(DATE_STRING))
+                .andExpect(jsonPath("$[0].rows[0][4]").value(510))
+                .andExpect(jsonPath("$[1].rows[0][1]").value(TESTACT1_PRJ))
+                .andExpect(jsonPath("$[1].rows[0][3]").value(100.0));
+
+        AnalysisRequestBody unknown = new AnalysisRequestBody();
+        unknown.analyzerId = "unknown";
+        unknown.start = hours.start;
+        unknown.end = hours.end;
+        performPost(ANALYSIS_BATCH_API, asList(hours, unknown), getUser1())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testTeamAnalysis() throws Exception {
+        createDefaultUser();
+
+        createDefaultActivity(false);
+
+        BookingBody booking = new BookingBody();
+        booking.activityId = ACTIVITY_ID_1;
+        booking.starttime = createHourString(8, 15);
+        booking.endtime = createHourString(16, 45);
+        booking.comment = emptyString();
+        createBooking(DATE_STRING, booking, getUser1());
+
+        booking.activityId = ACTIVITY_ID_2;
+        booking.starttime = createHourString(8, 0);
+        booking.endtime = createHourString(12, 0);
+        createBooking(DATE_STRING, booking, getUser2());
+
+        performGet(api(ANALYSIS_TEAM + ANALYSIS_HOURS), getUser2())
+                .andExpect(status().isForbidden());
+
+        performGet(api(ANALYSIS_TEAM + ANALYSIS_HOURS), getUser1())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.columns[0]").value("User"))
+                .andExpect(jsonPath("$.rows[0][0]").value(TESTUSER2_USERNAME))
+                .andExpect(jsonPath("$.rows[0][1]").value(240))
+                .andExpect(jsonPath("$.rows[1][0]").value(TESTUSER_USERNAME))
+                .andExpect(jsonPath("$.rows[1][1]").value(510))
+                .andExpect(jsonPath("$.totals[1]").value(750));
+
+        performGet(api(ANALYSIS_TEAM + ANALYSIS_PROJECTS), getUser1())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows[0][1]").value(TESTACT1_PRJ))
+                .andExpect(jsonPath("$.rows[0][2]").value(510))
+                .andExpect(jsonPath("$.rows[0][4]").value(TESTUSER_USERNAME))
+                .andExpect(jsonPath("$.rows[1][1]").value(TESTACT2_PRJ))
+                .andExpect(jsonPath("$.rows[1][2]").value(240))
+                .andExpect(jsonPath("$.totals[2]").value(750));
+    }
+
     @Override
     protected String createHourString(final int hour, final int minute) {
         return super.createHourString(hour, minute).substring(0, 5);
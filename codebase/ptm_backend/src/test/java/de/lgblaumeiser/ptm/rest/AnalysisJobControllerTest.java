@@ -0,0 +1,94 @@
+/*
+ * Copyright by Lars Geyer-Blaumeiser <lars@lgblaumeiser.de>
+ *
+ * Licensed under MIT license
+ *
+ * SPDX-License-Identifier: MIT
+ */
+package de.lgblaumeiser.ptm.rest;
+
+import static de.lgblaumeiser.ptm.util.Utils.emptyString;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import de.lgblaumeiser.ptm.rest.AnalysisRestController.AnalysisRequestBody;
+import de.lgblaumeiser.ptm.rest.BookingRestController.BookingBody;
+
+/**
+ * Test of the analysis job controller
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class AnalysisJobControllerTest extends ControllerTestSetupAndSupport {
+    private static final String ANALYSIS_JOBS_API = "/analysis/jobs";
+    private static final String WAIT_PARAMETER = "?wait=10";
+    private static final String RESULT_SUFFIX = "/result";
+
+    @Test
+    public void testJobLifecycle() throws Exception {
+        createDefaultUser();
+
+        createDefaultActivity(false);
+
+        BookingBody booking = new BookingBody();
+        booking.activityId = ACTIVITY_ID_1;
+        booking.starttime = createHourString(8, 15);
+        booking.endtime = createHourString(16, 45);
+        booking.comment = emptyString();
+        createBooking(DATE_STRING, booking, getUser1());
+
+        String location = performPost(ANALYSIS_JOBS_API, request("hours"), getUser1())
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", containsString(ANALYSIS_JOBS_API + "/")))
+                .andExpect(jsonPath("$.analyzerId").value("HOURS"))
+                .andReturn().getResponse().getHeader("Location");
+        String job = location.substring(location.indexOf(ANALYSIS_JOBS_API));
+
+        performGet(job + WAIT_PARAMETER, getUser1())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("DONE"));
+
+        performGet(job + RESULT_SUFFIX, getUser1())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.columns[0]").value("Work Day"))
+                .andExpect(jsonPath("$.rows[0][0]").value(DATE_STRING))
+                .andExpect(jsonPath("$.rows[0][4]").value(510));
+
+        performGet(job, getUser2())
+                .andExpect(status().isNotFound());
+
+        performGet(job + RESULT_SUFFIX, getUser2())
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testUnknownAnalysisRejected() throws Exception {
+        createDefaultUser();
+
+        performPost(ANALYSIS_JOBS_API, request("unknown"), getUser1())
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("IllegalStateException")));
+    }
+
+    private AnalysisRequestBody request(final String analyzerId) {
+        YearMonth analysisMonth = YearMonth.from(DATE);
+        AnalysisRequestBody request = new AnalysisRequestBody();
+        request.analyzerId = analyzerId;
+        request.start = analysisMonth.atDay(1).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        request.end = analysisMonth.plusMonths(1L).atDay(1).format(DateTimeFormatter.ISO_LOCAL_DATE);
+        return request;
+    }
+}
@@ -7,6 +7,7 @@
  */
 package de.lgblaumeiser.ptm.cli.engine;
 
+import static de.lgblaumeiser.ptm.analysis.AnalysisResultFormatter.toTable;
 import static java.util.Arrays.asList;
 
 import java.time.format.DateTimeFormatter;
@@ -14,6 +15,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
 import de.lgblaumeiser.ptm.datamanager.model.Activity;
 import de.lgblaumeiser.ptm.datamanager.model.Booking;
 
@@ -48,6 +50,10 @@ public class PrettyPrinter {
         }
     }
 
+    public void analysisPrint(final AnalysisResult result) {
+        tablePrint(toTable(result));
+    }
+
     public void bookingPrint(final Collection<Booking> data) {
         Collection<Collection<String>> table = new ArrayList<>();
         table.add(asList("Activity", "Starttime", "Endtime", "Id", "Comment"));
@@ -8,6 +8,7 @@
 package de.lgblaumeiser.ptm.cli.engine.handler;
 
 import com.beust.jcommander.Parameter;
+import de.lgblaumeiser.ptm.analysis.AnalysisResult;
 import de.lgblaumeiser.ptm.cli.engine.AbstractCommandHandler;
 
 import java.time.DayOfWeek;
@@ -15,7 +16,6 @@ import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -53,8 +53,8 @@ abstract class AbstractRunAnalysis extends AbstractCommandHandler {
 	private void runAnalysis(final String command, List<String> period) {
 		getLogger().log("Run analysis " + command.toLowerCase() + " analysis for period " + period.get(0)
 				+ " until " + period.get(1) + " ...");
-		Collection<Collection<String>> result = getServices().getAnalysisService().analyze(command, period);
-		getPrinter().tablePrint(result);
+		AnalysisResult result = getServices().getAnalysisService().analyze(command, period);
+		getPrinter().analysisPrint(result);
 		getLogger().log("... analysis done");
 	}
 
@@ -22,6 +22,8 @@ import java.util.Optional;
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 
+import de.lgblaumeiser.ptm.analysis.CellType;
+import de.lgblaumeiser.ptm.analysis.CompactAnalysisResult;
 import de.lgblaumeiser.ptm.cli.CLI;
 import de.lgblaumeiser.ptm.cli.PTMCLIConfigurator;
 import de.lgblaumeiser.ptm.cli.engine.AbstractCommandHandler;
@@ -136,6 +138,12 @@ public abstract class AbstractHandlerTest {
             if (apiName.contains("bookings/id/10")) {
                 return returnClass.cast(BOOKING1);
             }
+            if (returnClass == CompactAnalysisResult.class) {
+                CompactAnalysisResult result = new CompactAnalysisResult();
+                result.columns.add("Work Day");
+                result.types.add(CellType.DATE);
+                return returnClass.cast(result);
+            }
             if (returnClass.isArray()) {
                 if (returnClass.getComponentType().getName().contains("Booking")) {
                     return (T) new Booking[] { BOOKING1 };
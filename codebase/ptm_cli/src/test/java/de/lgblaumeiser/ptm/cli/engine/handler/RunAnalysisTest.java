@@ -32,7 +32,7 @@ public class RunAnalysisTest extends AbstractHandlerTest {
 	private static final String STARTDATE_FOR_MONTH = "2018-04-01";
 	private static final String ENDDATE_FOR_MONTH = "2018-05-01";
 
-	private static final String ANALYSIS_API_TEMPLATE = "/analysis/%s/%s/%s";
+	private static final String ANALYSIS_API_TEMPLATE = "/analysis/compact/%s/%s/%s";
 
 	@Test
 	public void testRunHoursAnalysisThisMonth() {